@@ -0,0 +1,82 @@
+package edu.cnm.deepdive.animalsservice.benchmark;
+
+import edu.cnm.deepdive.animalsservice.controller.ContentWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Measures {@link ContentWriter#write} for full and single-range responses from file-backed
+ * content, across a range of content sizes. Run with {@code -prof gc} to compare allocation rates.
+ * (The response is buffered in memory, so the cost of the socket write isn't included.)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentWriterBenchmark {
+
+  private static final String RANGE = "bytes=1024-4095";
+
+  @Param({"65536", "4194304"})
+  private int size;
+
+  private Path file;
+  private Resource resource;
+  private ContentWriter writer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    byte[] content = new byte[size];
+    new Random(size).nextBytes(content);
+    file = Files.createTempFile("content-benchmark", ".jpg");
+    Files.write(file, content);
+    resource = new FileSystemResource(file);
+    writer = new ContentWriter();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public int full() throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    writer.write(new MockHttpServletRequest("GET", "/content"), response, size, () -> resource,
+        Fixtures.CONTENT_TYPE, null, null, 0);
+    return response.getContentAsByteArray().length;
+  }
+
+  @Benchmark
+  public int range() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/content");
+    request.addHeader(HttpHeaders.RANGE, RANGE);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    writer.write(request, response, size, () -> resource, Fixtures.CONTENT_TYPE, null, null, 0);
+    return response.getContentAsByteArray().length;
+  }
+
+}
@@ -0,0 +1,76 @@
+package edu.cnm.deepdive.animalsservice.benchmark;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.FilenameProperties;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.FilenameProperties.TimestampProperties;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.LocalFilesystemStorageService;
+import edu.cnm.deepdive.animalsservice.service.TimestampReferenceGenerator;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Builds the objects shared by several benchmarks, without starting a Spring application context.
+ */
+final class Fixtures {
+
+  static final String CONTENT_TYPE = "image/jpeg";
+
+  private static final String[] WORDS = {
+      "green", "frog", "donkey", "toad", "newt", "domesticated", "ass", "commonly", "found", "in",
+      "virginia", "another", "spotted", "salamander", "red", "eft", "lizard", "gecko", "mountain",
+      "river", "desert", "tortoise", "box", "turtle", "snapping", "bull", "heron", "owl"
+  };
+
+  private Fixtures() {
+  }
+
+  static UploadConfiguration uploadConfiguration(Path directory, String sharding) {
+    FilenameProperties filenameProperties = new FilenameProperties();
+    filenameProperties.setTimestamp(new TimestampProperties());
+    UploadConfiguration configuration = new UploadConfiguration();
+    configuration.setApplicationHome(false);
+    configuration.setDirectory(directory.toString());
+    configuration.setWhitelist(Set.of(CONTENT_TYPE));
+    configuration.setFilename(filenameProperties);
+    configuration.getSharding().setStrategy(sharding);
+    return configuration;
+  }
+
+  static LocalFilesystemStorageService storageService(Path directory, String sharding) {
+    UploadConfiguration configuration = uploadConfiguration(directory, sharding);
+    return new LocalFilesystemStorageService(
+        new TimestampReferenceGenerator(configuration), configuration, null);
+  }
+
+  static String phrase(Random rng, int words) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < words; i++) {
+      if (i > 0) {
+        builder.append(' ');
+      }
+      String word = WORDS[rng.nextInt(WORDS.length)];
+      builder.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+    }
+    return builder.toString();
+  }
+
+  static List<Image> images(int count, long seed) {
+    Random rng = new Random(seed);
+    List<Image> images = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Image image = new Image();
+      image.setTitle(phrase(rng, 1 + rng.nextInt(3)));
+      image.setDescription(phrase(rng, 5 + rng.nextInt(20)));
+      image.setName("image-" + i + ".jpg");
+      image.setContentType(CONTENT_TYPE);
+      image.setPath("2022/02/02/image-" + i + ".jpg");
+      images.add(image);
+    }
+    return images;
+  }
+
+}
@@ -0,0 +1,46 @@
+package edu.cnm.deepdive.animalsservice.benchmark;
+
+import edu.cnm.deepdive.animalsservice.service.ReferenceGenerator;
+import edu.cnm.deepdive.animalsservice.service.TimestampReferenceGenerator;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the aggregate throughput of {@link TimestampReferenceGenerator#newFilename(String)} with
+ * 64 concurrent callers, as when many uploads are stored at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class ReferenceGeneratorBenchmark {
+
+  private ReferenceGenerator generator;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    generator = new TimestampReferenceGenerator(
+        Fixtures.uploadConfiguration(Path.of("unused"), "pattern"));
+  }
+
+  @Benchmark
+  public String newFilename() {
+    return generator.newFilename("image.jpg");
+  }
+
+}
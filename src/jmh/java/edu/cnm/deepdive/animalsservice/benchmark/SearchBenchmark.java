@@ -0,0 +1,56 @@
+package edu.cnm.deepdive.animalsservice.benchmark;
+
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.ImageSearchIndex;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the in-memory part of {@link edu.cnm.deepdive.animalsservice.service.ImageService#search(String)}
+ * &mdash;the {@link ImageSearchIndex} query that selects and ranks matching ids&mdash;over generated
+ * datasets of different sizes, for common, rare, and absent fragments. (The subsequent fetch of the
+ * matching rows by primary key depends on the database, and isn't included.)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+  @Param({"1000", "100000"})
+  private int images;
+
+  @Param({"green", "virginia", "salamander gecko", "zebra"})
+  private String fragment;
+
+  private ImageSearchIndex index;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    index = new ImageSearchIndex(null);
+    for (Image image : Fixtures.images(images, images)) {
+      index.put(UUID.randomUUID(), image.getTitle(), image.getDescription());
+    }
+  }
+
+  @Benchmark
+  public List<UUID> search() {
+    return index.search(fragment);
+  }
+
+}
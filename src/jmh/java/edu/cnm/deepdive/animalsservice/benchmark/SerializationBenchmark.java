@@ -0,0 +1,57 @@
+package edu.cnm.deepdive.animalsservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.view.ImageView;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Measures Jackson serialization of lists of {@link Image} instances under the {@link
+ * ImageView.Partial} and {@link ImageView.Full} views, using an {@link
+ * com.fasterxml.jackson.databind.ObjectMapper} configured as Spring configures it for the service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+  @Param({"Partial", "Full"})
+  private String view;
+
+  @Param({"1", "100"})
+  private int images;
+
+  private ObjectWriter writer;
+  private List<Image> list;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Class<?> viewClass = "Full".equals(view) ? ImageView.Full.class : ImageView.Partial.class;
+    writer = Jackson2ObjectMapperBuilder.json().build().writerWithView(viewClass);
+    list = Fixtures.images(images, images);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return writer.writeValueAsBytes(list);
+  }
+
+}
@@ -0,0 +1,70 @@
+package edu.cnm.deepdive.animalsservice.benchmark;
+
+import edu.cnm.deepdive.animalsservice.service.LocalFilesystemStorageService;
+import edu.cnm.deepdive.animalsservice.service.ReferenceGenerator;
+import edu.cnm.deepdive.animalsservice.service.TimestampReferenceGenerator;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Measures the computation of the subdirectory in which a generated filename is stored, with the
+ * {@code pattern} (regular expression capture) and {@code hash} sharding strategies, via {@link
+ * LocalFilesystemStorageService#getShardedReference(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardingBenchmark {
+
+  private static final int FILENAMES = 1024;
+
+  @Param({"pattern", "hash"})
+  private String strategy;
+
+  private Path directory;
+  private LocalFilesystemStorageService storageService;
+  private String[] filenames;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("sharding-benchmark");
+    storageService = Fixtures.storageService(directory, strategy);
+    ReferenceGenerator generator =
+        new TimestampReferenceGenerator(Fixtures.uploadConfiguration(directory, strategy));
+    filenames = new String[FILENAMES];
+    for (int i = 0; i < FILENAMES; i++) {
+      filenames[i] = generator.newFilename("image.jpg");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    FileSystemUtils.deleteRecursively(directory);
+  }
+
+  @Benchmark
+  public String shardedReference() {
+    return storageService.getShardedReference(filenames[next++ & (FILENAMES - 1)]);
+  }
+
+}
@@ -0,0 +1,82 @@
+package edu.cnm.deepdive.animalsservice.benchmark;
+
+import edu.cnm.deepdive.animalsservice.service.LocalFilesystemStorageService;
+import edu.cnm.deepdive.animalsservice.service.StoredContent;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+
+/**
+ * Measures {@link LocalFilesystemStorageService#store(InputStream, String, String)} (each stored
+ * file is deleted in the same operation, so that the file store doesn't grow without bound) and
+ * {@link LocalFilesystemStorageService#retrieve(String)} (followed by a full read of the content),
+ * across a range of content sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+  @Param({"4096", "262144", "4194304"})
+  private int size;
+
+  private Path directory;
+  private LocalFilesystemStorageService storageService;
+  private byte[] content;
+  private String reference;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, HttpMediaTypeNotAcceptableException {
+    directory = Files.createTempDirectory("storage-benchmark");
+    storageService = Fixtures.storageService(directory, "pattern");
+    content = new byte[size];
+    new Random(size).nextBytes(content);
+    reference = storageService
+        .store(new ByteArrayInputStream(content), Fixtures.CONTENT_TYPE, "original.jpg")
+        .getReference();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    FileSystemUtils.deleteRecursively(directory);
+  }
+
+  @Benchmark
+  public String store() throws IOException, HttpMediaTypeNotAcceptableException {
+    StoredContent stored = storageService
+        .store(new ByteArrayInputStream(content), Fixtures.CONTENT_TYPE, "upload.jpg");
+    storageService.delete(stored.getReference());
+    return stored.getReference();
+  }
+
+  @Benchmark
+  public long retrieve() throws IOException {
+    try (InputStream input = storageService.retrieve(reference).getInputStream()) {
+      return input.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+}
@@ -0,0 +1,434 @@
+package edu.cnm.deepdive.animalsservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives a mix of upload, list, search, get, and content requests against the service, started on
+ * a random port with an in-memory database and a temporary upload directory, and reports the
+ * throughput and latency distribution of each kind of request. The run is controlled by these
+ * system properties (which may be given on the Maven command line):
+ * <ul>
+ *   <li>{@code load.concurrency}: number of concurrent clients (default 16).</li>
+ *   <li>{@code load.rate}: target aggregate request rate, in requests per second; 0 (the default)
+ *   sends each request as soon as the previous one from the same client completes. When a rate is
+ *   given, latency is measured from the scheduled start of each request, so that stalls aren't
+ *   hidden by the requests they delay.</li>
+ *   <li>{@code load.warmup}, {@code load.duration}: ISO-8601 durations of the unmeasured warmup
+ *   and the measured run (defaults {@code PT10S} and {@code PT30S}).</li>
+ *   <li>{@code load.mix}: relative weights of the request kinds (default
+ *   {@code upload=5,list=15,search=25,get=30,content=25}).</li>
+ *   <li>{@code load.preload}: number of images uploaded before the warmup (default 50).</li>
+ *   <li>{@code load.output}: directory to which the full percentile distribution of each request
+ *   kind is written, in HdrHistogram's {@code .hgrm} format (default {@code target/load-test}).</li>
+ *   <li>{@code load.slowClients}: number of additional clients that repeatedly download content while
+ *   reading it no faster than {@code load.slowRate} bytes per second each (defaults 0 and 65536),
+ *   as slow mobile clients do. Their downloads are reported as {@code slow}, but the point of
+ *   interest is their effect on the latency of the other requests.</li>
+ *   <li>{@code load.sendfile}: if {@code false}, the server's sendfile support is disabled, so that
+ *   every download (not only cached content) is written on a request thread (default
+ *   {@code true}).</li>
+ * </ul>
+ * To compare request execution on platform and virtual threads, run the same load with and without
+ * {@code -Dexecution.virtual-threads=true} (on Java 21 or later), e.g. with slow clients
+ * outnumbering {@code server.tomcat.threads.max}.
+ */
+@SpringBootTest(classes = AnimalsServiceApplication.class, webEnvironment = WebEnvironment.RANDOM_PORT)
+class LoadTest {
+
+    private static final String[] CONTENT = {"images/green-frog.jpg", "images/donkey.jpg"};
+    private static final String[] TERMS = {"frog", "donkey", "green", "toad", "virginia", "owl"};
+    private static final String IMAGES_PATH = "/images";
+    private static final String TITLE_FORMAT = "%s %s %d";
+    private static final String DESCRIPTION_FORMAT = "A %s %s, uploaded by load test client %d.";
+    private static final String ROW_FORMAT = "%-8s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n";
+    private static final String HEADER_FORMAT = "%-8s %9s %7s %10s %9s %9s %9s %9s%n";
+    private static final String HISTOGRAM_SUFFIX = ".hgrm";
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROSECONDS_PER_MILLISECOND = 1000.0;
+    private static final int SLOW_RECEIVE_BUFFER_SIZE = 4096;
+    private static final int SLOW_READ_SIZE = 8192;
+    private static final String SLOW_REQUEST_FORMAT =
+            "GET %s/%s/content HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+    private static final String OK_STATUS_LINE = "HTTP/1.1 200";
+
+    private static Path uploadDirectory;
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${server.servlet.context-path}")
+    private String contextPath;
+
+    @Value("${load.concurrency:16}")
+    private int concurrency;
+
+    @Value("${load.rate:0}")
+    private double rate;
+
+    @Value("${load.warmup:PT10S}")
+    private String warmup;
+
+    @Value("${load.duration:PT30S}")
+    private String duration;
+
+    @Value("${load.mix:upload=5,list=15,search=25,get=30,content=25}")
+    private String mix;
+
+    @Value("${load.preload:50}")
+    private int preload;
+
+    @Value("${load.output:target/load-test}")
+    private String output;
+
+    @Value("${load.slowClients:0}")
+    private int slowClients;
+
+    @Value("${load.slowRate:65536}")
+    private int slowRate;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    private final List<byte[]> contents = new ArrayList<>();
+    private final List<UUID> keys = new CopyOnWriteArrayList<>();
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> failures = new EnumMap<>(Operation.class);
+    private HttpClient client;
+    private URI base;
+
+    @DynamicPropertySource
+    static void uploadProperties(DynamicPropertyRegistry registry) throws IOException {
+        uploadDirectory = Files.createTempDirectory("load-test");
+        registry.add("spring.datasource.url", () -> "jdbc:h2:mem:load-test;DB_CLOSE_DELAY=-1");
+        registry.add("upload.applicationHome", () -> false);
+        registry.add("upload.directory", () -> uploadDirectory.toString());
+    }
+
+    @AfterAll
+    static void deleteUploads() throws IOException {
+        FileSystemUtils.deleteRecursively(uploadDirectory);
+    }
+
+    @TestConfiguration
+    static class Sendfile {
+
+        @Bean
+        public WebServerFactoryCustomizer<TomcatServletWebServerFactory> sendfileCustomizer(
+                @Value("${load.sendfile:true}") boolean sendfile) {
+            return (factory) -> factory.addConnectorCustomizers((connector) ->
+                    ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).setUseSendfile(sendfile));
+        }
+
+    }
+
+    @Test
+    void run() throws Exception {
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        base = URI.create("http://localhost:" + port + contextPath + IMAGES_PATH);
+        for (String path : CONTENT) {
+            try (InputStream input = new DefaultResourceLoader().getResource(path).getInputStream()) {
+                contents.add(input.readAllBytes());
+            }
+        }
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+            failures.put(operation, new LongAdder());
+        }
+        Random rng = new Random();
+        for (int i = 0; i < preload; i++) {
+            assertTrue(upload(rng, -1));
+        }
+
+        Operation[] schedule = schedule(mix);
+        long warmupNanos = Duration.parse(warmup).toNanos();
+        long measuredNanos = Duration.parse(duration).toNanos();
+        long interval = (rate > 0) ? Math.round(concurrency * TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        long measureStart = System.nanoTime() + warmupNanos;
+        long end = measureStart + measuredNanos;
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency + slowClients);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                int clientId = i;
+                futures.add(clients.submit(() ->
+                        drive(clientId, schedule, interval, measureStart, end)));
+            }
+            for (int i = 0; i < slowClients; i++) {
+                futures.add(clients.submit(() -> driveSlow(measureStart, end)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        Histogram total = report(measuredNanos);
+        assertTrue(total.getTotalCount() > 0);
+        assertEquals(0, failures.values().stream().mapToLong(LongAdder::sum).sum());
+    }
+
+    private void drive(int clientId, Operation[] schedule, long interval, long measureStart, long end) {
+        Random rng = ThreadLocalRandom.current();
+        long next = System.nanoTime() + ((interval > 0) ? rng.nextInt((int) Math.min(interval, Integer.MAX_VALUE)) : 0);
+        while (true) {
+            long intended;
+            if (interval > 0) {
+                intended = next;
+                next += interval;
+                long delay;
+                while ((delay = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            } else {
+                intended = System.nanoTime();
+            }
+            if (intended >= end) {
+                break;
+            }
+            Operation operation = schedule[rng.nextInt(schedule.length)];
+            boolean success;
+            try {
+                success = execute(operation, rng, clientId);
+            } catch (IOException e) {
+                success = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long latency = System.nanoTime() - intended;
+            if (intended >= measureStart) {
+                histograms.get(operation).recordValue(TimeUnit.NANOSECONDS.toMicros(latency));
+                if (!success) {
+                    failures.get(operation).increment();
+                }
+            }
+        }
+    }
+
+    private void driveSlow(long measureStart, long end) {
+        Random rng = ThreadLocalRandom.current();
+        long start;
+        while ((start = System.nanoTime()) < end) {
+            boolean success;
+            try {
+                success = downloadSlowly(rng);
+            } catch (IOException e) {
+                success = false;
+            }
+            if (start >= measureStart) {
+                histograms.get(Operation.SLOW)
+                        .recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                if (!success) {
+                    failures.get(Operation.SLOW).increment();
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Downloads the content of a random image over a raw socket with a small receive buffer, reading
+     * no faster than {@code load.slowRate} bytes per second, so that the server's write blocks.
+     */
+    private boolean downloadSlowly(Random rng) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(SLOW_RECEIVE_BUFFER_SIZE);
+            socket.connect(new InetSocketAddress(base.getHost(), base.getPort()));
+            OutputStream request = socket.getOutputStream();
+            request.write(String.format(SLOW_REQUEST_FORMAT, base.getPath(), randomKey(rng))
+                    .getBytes(StandardCharsets.US_ASCII));
+            request.flush();
+            InputStream response = socket.getInputStream();
+            byte[] buffer = new byte[SLOW_READ_SIZE];
+            long start = System.nanoTime();
+            long received = 0;
+            int read;
+            boolean ok = false;
+            while ((read = response.read(buffer)) >= 0) {
+                if (received == 0) {
+                    ok = new String(buffer, 0, Math.min(read, OK_STATUS_LINE.length()),
+                            StandardCharsets.US_ASCII).equals(OK_STATUS_LINE);
+                }
+                received += read;
+                long due = start + received * TimeUnit.SECONDS.toNanos(1) / slowRate;
+                long delay;
+                while ((delay = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            return ok;
+        }
+    }
+
+    private boolean execute(Operation operation, Random rng, int clientId)
+            throws IOException, InterruptedException {
+        switch (operation) {
+            case UPLOAD:
+                return upload(rng, clientId);
+            case LIST:
+                return get(URI.create(base + "?limit=100"));
+            case SEARCH:
+                return get(URI.create(base + "?stream=true&q="
+                        + URLEncoder.encode(TERMS[rng.nextInt(TERMS.length)], StandardCharsets.UTF_8)));
+            case GET:
+                return get(URI.create(base + "/" + randomKey(rng)));
+            case CONTENT:
+                return get(URI.create(base + "/" + randomKey(rng) + "/content"));
+            default:
+                throw new IllegalArgumentException(operation.toString());
+        }
+    }
+
+    private boolean upload(Random rng, int clientId) throws IOException, InterruptedException {
+        String adjective = TERMS[rng.nextInt(TERMS.length)];
+        String noun = TERMS[rng.nextInt(TERMS.length)];
+        String query = "title=" + URLEncoder.encode(String.format(TITLE_FORMAT, adjective, noun, clientId),
+                StandardCharsets.UTF_8)
+                + "&description=" + URLEncoder.encode(String.format(DESCRIPTION_FORMAT, adjective, noun, clientId),
+                StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "?" + query))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_JPEG_VALUE)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"load-test.jpg\"")
+                .POST(BodyPublishers.ofByteArray(contents.get(rng.nextInt(contents.size()))))
+                .build();
+        HttpResponse<byte[]> response = client.send(request, BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2) {
+            return false;
+        }
+        keys.add(UUID.fromString(mapper.readTree(response.body()).get("id").asText()));
+        return true;
+    }
+
+    private boolean get(URI uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        return client.send(request, BodyHandlers.discarding()).statusCode() / 100 == 2;
+    }
+
+    private UUID randomKey(Random rng) {
+        return keys.get(rng.nextInt(keys.size()));
+    }
+
+    private Histogram report(long measuredNanos) throws IOException {
+        Path directory = Path.of(output);
+        Files.createDirectories(directory);
+        double seconds = measuredNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        PrintStream out = System.out;
+        out.printf("%nLoad test: %d clients, %s, warmup %s, measured %s, mix %s, %d slow clients%n",
+                concurrency, (rate > 0) ? rate + " requests/s" : "closed loop", warmup, duration, mix,
+                slowClients);
+        out.printf(HEADER_FORMAT, "request", "count", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            if (operation != Operation.SLOW) {
+                total.add(histogram);
+            }
+            row(out, operation.name().toLowerCase(), histogram, failures.get(operation).sum(), seconds);
+            write(directory.resolve(operation.name().toLowerCase() + HISTOGRAM_SUFFIX), histogram);
+        }
+        row(out, "all", total, failures.entrySet().stream()
+                .filter((entry) -> entry.getKey() != Operation.SLOW)
+                .mapToLong((entry) -> entry.getValue().sum())
+                .sum(), seconds);
+        write(directory.resolve("all" + HISTOGRAM_SUFFIX), total);
+        return total;
+    }
+
+    private static void row(PrintStream out, String label, Histogram histogram, long errors, double seconds) {
+        out.printf(ROW_FORMAT, label, histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / MICROSECONDS_PER_MILLISECOND,
+                histogram.getValueAtPercentile(99) / MICROSECONDS_PER_MILLISECOND,
+                histogram.getValueAtPercentile(99.9) / MICROSECONDS_PER_MILLISECOND,
+                histogram.getMaxValue() / MICROSECONDS_PER_MILLISECOND);
+    }
+
+    private static void write(Path path, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(path), false, StandardCharsets.UTF_8)) {
+            histogram.outputPercentileDistribution(out, MICROSECONDS_PER_MILLISECOND);
+        }
+    }
+
+    private static Operation[] schedule(String mix) {
+        List<Operation> schedule = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split("=");
+            Operation operation = Operation.valueOf(pair[0].trim().toUpperCase());
+            if (operation == Operation.SLOW) {
+                throw new IllegalArgumentException("Slow downloads are set by load.slowClients, not the mix");
+            }
+            for (int i = Integer.parseInt(pair[1].trim()); i > 0; i--) {
+                schedule.add(operation);
+            }
+        }
+        if (schedule.isEmpty()) {
+            throw new IllegalArgumentException("Request mix must have at least one positive weight");
+        }
+        return schedule.toArray(new Operation[0]);
+    }
+
+    private enum Operation {
+        UPLOAD, LIST, SEARCH, GET, CONTENT, SLOW
+    }
+
+}
@@ -17,9 +17,15 @@ package edu.cnm.deepdive.animalsservice.configuration;
 
 import java.security.SecureRandom;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.apache.coyote.ProtocolHandler;
 import org.springframework.boot.system.ApplicationHome;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 /**
  * Implements methods to satisfy dependencies on classes implemented outside of Spring and this
@@ -46,4 +52,33 @@ public class Beans {
     return new ApplicationHome(this.getClass());
   }
 
+  /**
+   * Constructs and returns a bounded {@link ExecutorService}, used to write the files of a batch
+   * upload into the file store concurrently. If {@code execution.virtual-threads} is enabled, the
+   * pool's threads are virtual threads.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService storageExecutor(UploadConfiguration uploadConfiguration,
+      ExecutionConfiguration executionConfiguration) {
+    ThreadFactory threadFactory = executionConfiguration.isVirtualThreads()
+        ? VirtualThreads.newThreadFactory("storage-")
+        : new CustomizableThreadFactory("storage-");
+    return Executors.newFixedThreadPool(uploadConfiguration.getBatchThreads(), threadFactory);
+  }
+
+  /**
+   * Constructs and returns a {@link TomcatProtocolHandlerCustomizer} that, if {@code
+   * execution.virtual-threads} is enabled, replaces Tomcat's request thread pool with an executor
+   * that runs each request on a new virtual thread.
+   */
+  @Bean
+  public TomcatProtocolHandlerCustomizer<ProtocolHandler> requestExecutorCustomizer(
+      ExecutionConfiguration executionConfiguration) {
+    return (protocolHandler) -> {
+      if (executionConfiguration.isVirtualThreads()) {
+        protocolHandler.setExecutor(VirtualThreads.newThreadPerTaskExecutor("http-virtual-"));
+      }
+    };
+  }
+
 }
@@ -0,0 +1,207 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.configuration;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Declares a hierarchical set of properties, mapping to a corresponding hierarchy of application
+ * properties, all with the {@code "cache."} prefix. These properties bound the in-memory caches
+ * maintained by {@link edu.cnm.deepdive.animalsservice.service.ImageService} and {@link
+ * edu.cnm.deepdive.animalsservice.service.ContentCache}.
+ */
+@Component
+@ConfigurationProperties(prefix = "cache")
+public class CacheConfiguration {
+
+  /**
+   * Properties used to customize the cache of {@link edu.cnm.deepdive.animalsservice.model.entity.Image}
+   * metadata, keyed by external key.
+   */
+  private MetadataProperties metadata = new MetadataProperties();
+
+  /**
+   * Properties used to customize the in-memory cache of stored content.
+   */
+  private ContentProperties content = new ContentProperties();
+
+  /**
+   * Returns a {@link MetadataProperties} instance, used to customize the cache of image metadata.
+   */
+  public MetadataProperties getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * Sets the {@link MetadataProperties} instance used to customize the cache of image metadata.
+   */
+  public void setMetadata(MetadataProperties metadata) {
+    this.metadata = metadata;
+  }
+
+  /**
+   * Returns a {@link ContentProperties} instance, used to customize the in-memory cache of stored
+   * content.
+   */
+  public ContentProperties getContent() {
+    return content;
+  }
+
+  /**
+   * Sets the {@link ContentProperties} instance used to customize the in-memory cache of stored
+   * content.
+   */
+  public void setContent(ContentProperties content) {
+    this.content = content;
+  }
+
+  /**
+   * Encapsulates properties controlling the size and lifetime of entries in the cache of image
+   * metadata.
+   */
+  public static class MetadataProperties {
+
+    /**
+     * Maximum number of images in the cache; entries are evicted (approximately least frequently
+     * used first) when this number is exceeded.
+     */
+    private long maxSize = 10_000;
+
+    /**
+     * Time after which a cached entry expires, measured from when it was loaded.
+     */
+    private Duration timeToLive = Duration.ofMinutes(10);
+
+    /**
+     * Returns the maximum number of images in the cache.
+     */
+    public long getMaxSize() {
+      return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of images in the cache.
+     */
+    public void setMaxSize(long maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the time after which a cached entry expires.
+     */
+    public Duration getTimeToLive() {
+      return timeToLive;
+    }
+
+    /**
+     * Sets the time after which a cached entry expires.
+     */
+    public void setTimeToLive(Duration timeToLive) {
+      this.timeToLive = timeToLive;
+    }
+
+  }
+
+  /**
+   * Encapsulates properties controlling admission to, and the total size of, the in-memory cache of
+   * stored content.
+   */
+  public static class ContentProperties {
+
+    /**
+     * Flag indicating whether stored content is cached at all; if so, {@code maxSize} bytes of
+     * direct memory are allocated for it.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum total size of the cached content.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Maximum size of a single cached item; larger content is always read from the file store.
+     */
+    private DataSize maxEntrySize = DataSize.ofKilobytes(256);
+
+    /**
+     * Number of times content must be retrieved (while it is still being tracked) before it is
+     * admitted to the cache.
+     */
+    private int admissionThreshold = 2;
+
+    /**
+     * Returns a flag indicating whether stored content is cached at all.
+     */
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    /**
+     * Sets a flag indicating whether stored content is cached at all.
+     */
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    /**
+     * Returns the maximum total size of the cached content.
+     */
+    public DataSize getMaxSize() {
+      return maxSize;
+    }
+
+    /**
+     * Sets the maximum total size of the cached content.
+     */
+    public void setMaxSize(DataSize maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the maximum size of a single cached item.
+     */
+    public DataSize getMaxEntrySize() {
+      return maxEntrySize;
+    }
+
+    /**
+     * Sets the maximum size of a single cached item.
+     */
+    public void setMaxEntrySize(DataSize maxEntrySize) {
+      this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Returns the number of retrievals required before content is admitted to the cache.
+     */
+    public int getAdmissionThreshold() {
+      return admissionThreshold;
+    }
+
+    /**
+     * Sets the number of retrievals required before content is admitted to the cache.
+     */
+    public void setAdmissionThreshold(int admissionThreshold) {
+      this.admissionThreshold = admissionThreshold;
+    }
+
+  }
+
+}
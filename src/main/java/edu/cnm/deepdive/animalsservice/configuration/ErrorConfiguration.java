@@ -10,7 +10,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 @RestControllerAdvice
-@Profile("service")
+@Profile({"service", "reactive"})
 public class ErrorConfiguration {
 
   @ExceptionHandler(NoSuchElementException.class)
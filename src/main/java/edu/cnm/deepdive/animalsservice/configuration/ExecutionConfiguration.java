@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Declares the properties, all with the {@code "execution."} prefix, that select the kind of threads
+ * on which servlet requests and file store I/O are executed.
+ */
+@Component
+@ConfigurationProperties(prefix = "execution")
+public class ExecutionConfiguration {
+
+  /**
+   * Flag indicating whether servlet requests, and the file store writes of batch uploads, run on
+   * virtual threads (which requires Java 21 or later) instead of pooled platform threads. When
+   * enabled, the request concurrency is no longer capped by {@code server.tomcat.threads.max}; the
+   * concurrency of batch writes is still capped by {@code upload.batchThreads}.
+   */
+  private boolean virtualThreads = false;
+
+  /**
+   * Returns a flag indicating whether requests and file store I/O run on virtual threads.
+   */
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /**
+   * Sets a flag indicating whether requests and file store I/O run on virtual threads.
+   */
+  public void setVirtualThreads(boolean virtualThreads) {
+    this.virtualThreads = virtualThreads;
+  }
+
+}
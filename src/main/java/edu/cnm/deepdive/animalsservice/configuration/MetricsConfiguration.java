@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.configuration;
+
+import edu.cnm.deepdive.animalsservice.service.PhaseInterceptor;
+import edu.cnm.deepdive.animalsservice.service.RequestPhases.Phase;
+import edu.cnm.deepdive.animalsservice.service.StorageMetrics;
+import edu.cnm.deepdive.animalsservice.service.StorageService;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.lang.NonNull;
+
+/**
+ * Declares the beans that instrument parts of the service not covered by Spring Boot's own metrics,
+ * or that feed the per-request phase breakdown of {@link
+ * edu.cnm.deepdive.animalsservice.controller.ServerTimingFilter}.
+ * (Request timings per controller endpoint, and invocation timings per repository method, are
+ * recorded by Spring Boot as {@code http.server.requests} and {@code
+ * spring.data.repository.invocations}, respectively.)
+ */
+@Configuration
+@Profile("service")
+public class MetricsConfiguration {
+
+  /**
+   * Returns the {@link StorageMetrics} advice applied to {@link StorageService} beans. (Since it
+   * isn't bound to the meter registry until the registry is initialized, the storage services don't
+   * depend on the registry.)
+   */
+  @Bean
+  public static StorageMetrics storageMetrics(UploadConfiguration uploadConfiguration) {
+    return new StorageMetrics(uploadConfiguration.getMaxContentLength().toBytes());
+  }
+
+  /**
+   * Returns a {@link BeanPostProcessor} that wraps each {@link StorageService} bean in a class-based
+   * proxy, advised by {@link StorageMetrics} and (if {@code server-timing.enabled}) by a {@link
+   * PhaseInterceptor} for the {@link Phase#STORAGE} phase. Since the proxy extends the class of the
+   * original bean, the bean can still be injected by its concrete type. When more than one {@link
+   * StorageService} bean is defined (i.e. a {@code @Primary} bean decorates another), only the
+   * primary bean is wrapped, so that each operation is recorded once.
+   */
+  @Bean
+  public static BeanPostProcessor storageMetricsPostProcessor(
+      ConfigurableListableBeanFactory beanFactory, ObjectProvider<StorageMetrics> storageMetrics,
+      ObjectProvider<ServerTimingConfiguration> serverTimingConfiguration) {
+    return new BeanPostProcessor() {
+
+      @Override
+      public Object postProcessAfterInitialization(@NonNull Object bean, @NonNull String beanName) {
+        if (!(bean instanceof StorageService) || isDecorated(beanName)) {
+          return bean;
+        }
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(storageMetrics.getObject());
+        if (serverTimingConfiguration.getObject().isEnabled()) {
+          factory.addAdvice(new PhaseInterceptor(Phase.STORAGE));
+        }
+        return factory.getProxy();
+      }
+
+      private boolean isDecorated(String beanName) {
+        return beanFactory.getBeanNamesForType(StorageService.class, false, false).length > 1
+            && beanFactory.containsBeanDefinition(beanName)
+            && !beanFactory.getBeanDefinition(beanName).isPrimary();
+      }
+
+    };
+  }
+
+  /**
+   * Returns a {@link BeanPostProcessor} that, if {@code server-timing.enabled}, customizes each
+   * Spring Data repository factory so that the repositories it creates are advised by a {@link
+   * PhaseInterceptor} for the {@link Phase#DB} phase.
+   */
+  @Bean
+  public static BeanPostProcessor repositoryTimingPostProcessor(
+      ObjectProvider<ServerTimingConfiguration> serverTimingConfiguration) {
+    return new BeanPostProcessor() {
+
+      @Override
+      public Object postProcessBeforeInitialization(@NonNull Object bean, @NonNull String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport
+            && serverTimingConfiguration.getObject().isEnabled()) {
+          ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(
+              (factory) -> factory.addRepositoryProxyPostProcessor((proxyFactory, information) ->
+                  proxyFactory.addAdvice(new PhaseInterceptor(Phase.DB))));
+        }
+        return bean;
+      }
+
+    };
+  }
+
+}
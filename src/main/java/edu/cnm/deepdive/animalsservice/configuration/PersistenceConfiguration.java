@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.configuration;
+
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import edu.cnm.deepdive.animalsservice.model.dao.ReactiveImageRepository;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Enables the JPA repositories used by every profile except {@code reactive}. Since {@link
+ * ReactiveImageRepository} manages the same (JPA-annotated) entity as {@link ImageRepository},
+ * Spring Data JPA would otherwise claim it, and fail to start; it's excluded here, and picked up
+ * only by Spring Data R2DBC, in the {@code reactive} profile.
+ */
+@Configuration
+@Profile("!reactive")
+@EnableJpaRepositories(basePackageClasses = ImageRepository.class,
+    excludeFilters = @Filter(type = FilterType.ASSIGNABLE_TYPE, classes = ReactiveImageRepository.class))
+public class PersistenceConfiguration {
+
+}
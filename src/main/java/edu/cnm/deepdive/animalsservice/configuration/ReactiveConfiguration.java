@@ -0,0 +1,215 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.configuration;
+
+import edu.cnm.deepdive.animalsservice.controller.ReactiveImageController;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.boot.web.embedded.netty.NettyServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.DialectResolver;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+import org.springframework.data.r2dbc.mapping.event.BeforeConvertCallback;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.hateoas.Affordance;
+import org.springframework.hateoas.server.EntityLinks;
+import org.springframework.hateoas.server.LinkBuilderFactory;
+import org.springframework.hateoas.server.core.ControllerEntityLinks;
+import org.springframework.hateoas.server.core.LinkBuilderSupport;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+/**
+ * Declares the beans needed (in addition to those configured by Spring Boot) by the {@code
+ * reactive} profile, which serves the image API with Spring WebFlux, and reads and writes image
+ * metadata with R2DBC.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+  private static final String CREATED_PROPERTY = "created";
+  private static final String UPDATED_PROPERTY = "updated";
+
+  /**
+   * Returns a {@link NettyReactiveWebServerFactory}, so that the reactive profile is served by Reactor
+   * Netty. (Spring Boot would otherwise prefer Tomcat, which is on the classpath for the servlet
+   * profile, and serve WebFlux through the Servlet API.)
+   */
+  @Bean
+  public NettyReactiveWebServerFactory reactiveWebServerFactory(
+      ObjectProvider<NettyServerCustomizer> serverCustomizers) {
+    NettyReactiveWebServerFactory factory = new NettyReactiveWebServerFactory();
+    serverCustomizers.orderedStream().forEach(factory::addServerCustomizers);
+    return factory;
+  }
+
+  /**
+   * Returns an {@link EntityLinks} implementation building links to the resources exposed by the
+   * reactive controllers. Unlike the links built by Spring HATEOAS for Spring MVC controllers, these
+   * aren't derived from the current request (which isn't bound to the thread in WebFlux); instead,
+   * they're path-absolute, including {@code spring.webflux.base-path}. This implementation takes
+   * precedence over the Spring MVC implementation (which is registered regardless of the profile).
+   */
+  @Bean
+  public EntityLinks reactiveEntityLinks(WebFluxProperties webFluxProperties) {
+    return new PathEntityLinks(webFluxProperties.getBasePath(), List.of(ReactiveImageController.class));
+  }
+
+  /**
+   * Returns the {@link R2dbcCustomConversions} configured by Spring Boot, along with converters
+   * writing {@link Date} values (such as {@link Image#getCreated()}) as {@link LocalDateTime}s, and
+   * reading them back, since the R2DBC driver neither binds nor returns {@link Date} values.
+   */
+  @Bean
+  public R2dbcCustomConversions r2dbcCustomConversions(DatabaseClient databaseClient) {
+    return R2dbcCustomConversions.of(DialectResolver.getDialect(databaseClient.getConnectionFactory()),
+        List.of(new DateToLocalDateTimeConverter(), new LocalDateTimeToDateConverter()));
+  }
+
+  /**
+   * Returns a {@link BeforeConvertCallback} that assigns a primary key, and creation and update
+   * timestamps, to each new {@link Image} before it is inserted, as Hibernate does in the servlet
+   * profile. (The primary key column has no default value, since the schema is generated by
+   * Hibernate.)
+   */
+  @Bean
+  public BeforeConvertCallback<Image> newImageCallback(R2dbcMappingContext mappingContext) {
+    RelationalPersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(Image.class);
+    return (image, table) -> {
+      //noinspection ConstantConditions
+      if (image.getId() == null) {
+        PersistentPropertyAccessor<Image> accessor = entity.getPropertyAccessor(image);
+        Date now = new Date();
+        accessor.setProperty(entity.getRequiredIdProperty(), UUID.randomUUID());
+        accessor.setProperty(entity.getRequiredPersistentProperty(CREATED_PROPERTY), now);
+        accessor.setProperty(entity.getRequiredPersistentProperty(UPDATED_PROPERTY), now);
+      }
+      return Mono.just(image);
+    };
+  }
+
+  @WritingConverter
+  private static class DateToLocalDateTimeConverter implements Converter<Date, LocalDateTime> {
+
+    @Override
+    public LocalDateTime convert(Date source) {
+      return LocalDateTime.ofInstant(source.toInstant(), ZoneId.systemDefault());
+    }
+
+  }
+
+  @ReadingConverter
+  private static class LocalDateTimeToDateConverter implements Converter<LocalDateTime, Date> {
+
+    @Override
+    public Date convert(LocalDateTime source) {
+      return Date.from(source.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+  }
+
+  private static class PathEntityLinks extends ControllerEntityLinks implements Ordered {
+
+    private PathEntityLinks(String basePath, List<Class<?>> controllers) {
+      super(controllers, new PathLinkBuilderFactory(basePath));
+    }
+
+    @Override
+    public int getOrder() {
+      return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+  }
+
+  private static class PathLinkBuilderFactory implements LinkBuilderFactory<PathLinkBuilder> {
+
+    private final String basePath;
+
+    private PathLinkBuilderFactory(String basePath) {
+      this.basePath = (basePath != null) ? basePath : "";
+    }
+
+    @Override
+    public PathLinkBuilder linkTo(Class<?> target) {
+      return new PathLinkBuilder(builder(target).build());
+    }
+
+    @Override
+    public PathLinkBuilder linkTo(Class<?> target, Object... parameters) {
+      return new PathLinkBuilder(builder(target).buildAndExpand(parameters));
+    }
+
+    @Override
+    public PathLinkBuilder linkTo(Class<?> target, Map<String, ?> parameters) {
+      return new PathLinkBuilder(builder(target).buildAndExpand(parameters));
+    }
+
+    private UriComponentsBuilder builder(Class<?> target) {
+      RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(target, RequestMapping.class);
+      UriComponentsBuilder builder = UriComponentsBuilder.fromPath(basePath);
+      if (mapping != null && mapping.path().length > 0) {
+        builder.path(mapping.path()[0]);
+      }
+      return builder;
+    }
+
+  }
+
+  private static class PathLinkBuilder extends LinkBuilderSupport<PathLinkBuilder> {
+
+    private PathLinkBuilder(UriComponents components) {
+      super(components);
+    }
+
+    private PathLinkBuilder(UriComponents components, List<Affordance> affordances) {
+      super(components, affordances);
+    }
+
+    @Override
+    protected PathLinkBuilder getThis() {
+      return this;
+    }
+
+    @Override
+    protected PathLinkBuilder createNewInstance(UriComponents components,
+        List<Affordance> affordances) {
+      return new PathLinkBuilder(components, affordances);
+    }
+
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Declares the properties, all with the {@code "server-timing."} prefix, that control the
+ * per-request phase breakdown reported by {@link
+ * edu.cnm.deepdive.animalsservice.controller.ServerTimingFilter} in {@code Server-Timing} response
+ * headers and (optionally) log lines.
+ */
+@Component
+@ConfigurationProperties(prefix = "server-timing")
+public class ServerTimingConfiguration {
+
+  /**
+   * Flag indicating whether any requests are timed.
+   */
+  private boolean enabled = false;
+
+  /**
+   * Fraction (between 0 and 1) of requests that are timed.
+   */
+  private double sampleRate = 1;
+
+  /**
+   * Flag indicating whether a log line is written for each timed request.
+   */
+  private boolean log = false;
+
+  /**
+   * Returns a flag indicating whether any requests are timed.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Sets a flag indicating whether any requests are timed.
+   */
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Returns the fraction (between 0 and 1) of requests that are timed.
+   */
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Sets the fraction (between 0 and 1) of requests that are timed.
+   */
+  public void setSampleRate(double sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Returns a flag indicating whether a log line is written for each timed request.
+   */
+  public boolean isLog() {
+    return log;
+  }
+
+  /**
+   * Sets a flag indicating whether a log line is written for each timed request.
+   */
+  public void setLog(boolean log) {
+    this.log = log;
+  }
+
+}
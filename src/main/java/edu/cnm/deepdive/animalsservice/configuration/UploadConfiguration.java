@@ -15,6 +15,7 @@
  */
 package edu.cnm.deepdive.animalsservice.configuration;
 
+import java.time.Duration;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -22,6 +23,7 @@ import java.util.TimeZone;
 import java.util.regex.Pattern;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Declares a hierarchical set of properties, mapping to a corresponding hierarchy of application
@@ -46,17 +48,64 @@ public class UploadConfiguration {
    */
   private String directory = "uploads";
 
+  /**
+   * Name of the {@link edu.cnm.deepdive.animalsservice.service.StorageService} implementation used
+   * for the file store: {@code local} (one file per upload), {@code content-addressed} (one file
+   * per distinct content, shared by identical uploads), or {@code pack} (uploads appended to large
+   * segment files).
+   */
+  private String storage = "local";
+
   /**
    * Regular expression pattern that (in general) includes one or more capture groups, used for
    * constructing a subdirectory path for any given generated filename.
    */
   private Pattern subdirectoryPattern = Pattern.compile("^(.{4})(.{2})(.{2}).*$");
 
+  /**
+   * Properties used to select and customize the strategy for distributing files among subdirectories
+   * of the file store.
+   */
+  private ShardingProperties sharding = new ShardingProperties();
+
+  /**
+   * Properties used to customize the pack-file store (used when {@code storage} is {@code pack}).
+   */
+  private PackProperties pack = new PackProperties();
+
+  /**
+   * Properties used to enable and customize the demotion of rarely read files to a cold tier (used
+   * when {@code storage} is {@code local}).
+   */
+  private TieringProperties tiering = new TieringProperties();
+
+  /**
+   * Properties used to enable and customize the backfill of content lengths and digests of images
+   * stored before they were recorded at ingest.
+   */
+  private BackfillProperties backfill = new BackfillProperties();
+
   /**
    * Set of MIME types permitted for upload into the file store.
    */
   private Set<String> whitelist = new LinkedHashSet<>();
 
+  /**
+   * Maximum size of content streamed directly (i.e. not as a multipart request) into the file store.
+   */
+  private DataSize maxContentLength = DataSize.ofMegabytes(100);
+
+  /**
+   * Number of threads used to write the files of a batch upload into the file store concurrently.
+   */
+  private int batchThreads = 4;
+
+  /**
+   * Interval between scans of the file store, to measure the number and total size of the files it
+   * contains.
+   */
+  private Duration usageScanInterval = Duration.ofMinutes(5);
+
   private List<String> contentTypes;
 
   /**
@@ -64,6 +113,11 @@ public class UploadConfiguration {
    */
   private FilenameProperties filename;
 
+  /**
+   * Properties used to customize the cache of scaled derivatives of images in the file store.
+   */
+  private DerivativeProperties derivatives = new DerivativeProperties();
+
   /**
    * Returns a flag indicating whether the application's home directory should be used as the parent
    * directory of the file store.
@@ -98,6 +152,23 @@ public class UploadConfiguration {
     this.directory = directory;
   }
 
+  /**
+   * Returns the name of the {@link edu.cnm.deepdive.animalsservice.service.StorageService}
+   * implementation used for the file store.
+   */
+  public String getStorage() {
+    return storage;
+  }
+
+  /**
+   * Sets the name of the {@link edu.cnm.deepdive.animalsservice.service.StorageService}
+   * implementation used for the file store: {@code local}, {@code content-addressed}, or {@code
+   * pack}.
+   */
+  public void setStorage(String storage) {
+    this.storage = storage;
+  }
+
   /**
    * Returns a regular expression pattern that (in general) includes one or more capture groups,
    * used for constructing a subdirectory path for any given generated filename.
@@ -114,6 +185,66 @@ public class UploadConfiguration {
     this.subdirectoryPattern = subdirectoryPattern;
   }
 
+  /**
+   * Returns a {@link ShardingProperties} instance, used to select and customize the strategy for
+   * distributing files among subdirectories of the file store.
+   */
+  public ShardingProperties getSharding() {
+    return sharding;
+  }
+
+  /**
+   * Sets the {@link ShardingProperties} instance used to select and customize the strategy for
+   * distributing files among subdirectories of the file store.
+   */
+  public void setSharding(ShardingProperties sharding) {
+    this.sharding = sharding;
+  }
+
+  /**
+   * Returns a {@link PackProperties} instance, used to customize the pack-file store.
+   */
+  public PackProperties getPack() {
+    return pack;
+  }
+
+  /**
+   * Sets the {@link PackProperties} instance used to customize the pack-file store.
+   */
+  public void setPack(PackProperties pack) {
+    this.pack = pack;
+  }
+
+  /**
+   * Returns a {@link TieringProperties} instance, used to enable and customize the cold tier.
+   */
+  public TieringProperties getTiering() {
+    return tiering;
+  }
+
+  /**
+   * Sets the {@link TieringProperties} instance used to enable and customize the cold tier.
+   */
+  public void setTiering(TieringProperties tiering) {
+    this.tiering = tiering;
+  }
+
+  /**
+   * Returns a {@link BackfillProperties} instance, used to enable and customize the backfill of
+   * content lengths and digests.
+   */
+  public BackfillProperties getBackfill() {
+    return backfill;
+  }
+
+  /**
+   * Sets the {@link BackfillProperties} instance used to enable and customize the backfill of
+   * content lengths and digests.
+   */
+  public void setBackfill(BackfillProperties backfill) {
+    this.backfill = backfill;
+  }
+
   /**
    * Returns the set of MIME types permitted for upload into the file store.
    */
@@ -128,6 +259,54 @@ public class UploadConfiguration {
     this.whitelist = whitelist;
   }
 
+  /**
+   * Returns the maximum size of content streamed directly (i.e. not as a multipart request) into the
+   * file store.
+   */
+  public DataSize getMaxContentLength() {
+    return maxContentLength;
+  }
+
+  /**
+   * Sets the maximum size of content streamed directly (i.e. not as a multipart request) into the
+   * file store.
+   */
+  public void setMaxContentLength(DataSize maxContentLength) {
+    this.maxContentLength = maxContentLength;
+  }
+
+  /**
+   * Returns the number of threads used to write the files of a batch upload into the file store
+   * concurrently.
+   */
+  public int getBatchThreads() {
+    return batchThreads;
+  }
+
+  /**
+   * Sets the number of threads used to write the files of a batch upload into the file store
+   * concurrently.
+   */
+  public void setBatchThreads(int batchThreads) {
+    this.batchThreads = batchThreads;
+  }
+
+  /**
+   * Returns the interval between scans of the file store, to measure the number and total size of
+   * the files it contains.
+   */
+  public Duration getUsageScanInterval() {
+    return usageScanInterval;
+  }
+
+  /**
+   * Sets the interval between scans of the file store, to measure the number and total size of the
+   * files it contains.
+   */
+  public void setUsageScanInterval(Duration usageScanInterval) {
+    this.usageScanInterval = usageScanInterval;
+  }
+
   /**
    * Returns a {@link FilenameProperties} instance, used to customize generation of filenames in the
    * file store.
@@ -145,6 +324,22 @@ public class UploadConfiguration {
     this.filename = filename;
   }
 
+  /**
+   * Returns a {@link DerivativeProperties} instance, used to customize the cache of scaled
+   * derivatives of images in the file store.
+   */
+  public DerivativeProperties getDerivatives() {
+    return derivatives;
+  }
+
+  /**
+   * Sets the {@link DerivativeProperties} instance used to customize the cache of scaled
+   * derivatives of images in the file store.
+   */
+  public void setDerivatives(DerivativeProperties derivatives) {
+    this.derivatives = derivatives;
+  }
+
   /**
    * Encapsulates properties specifying the composition of filenames generated for files uploaded
    * and stored in the file store.
@@ -223,14 +418,14 @@ public class UploadConfiguration {
     public static class TimestampProperties {
 
       /**
-       * Format string (passed to {@link java.text.SimpleDateFormat#SimpleDateFormat(String)}) used
+       * Format string (passed to {@link java.time.format.DateTimeFormatter#ofPattern(String)}) used
        * to format timestamps in generated filenames.
        */
       private String format = "yyyyMMddHHmmssSSS";
       private TimeZone timeZone = TimeZone.getTimeZone("UTC");
 
       /**
-       * Returns the format string (passed to {@link java.text.SimpleDateFormat#SimpleDateFormat(String)})
+       * Returns the format string (passed to {@link java.time.format.DateTimeFormatter#ofPattern(String)})
        * used to format timestamps in generated filenames.
        */
       public String getFormat() {
@@ -238,7 +433,7 @@ public class UploadConfiguration {
       }
 
       /**
-       * Sets the format string (passed to {@link java.text.SimpleDateFormat#SimpleDateFormat(String)})
+       * Sets the format string (passed to {@link java.time.format.DateTimeFormatter#ofPattern(String)})
        * used to format timestamps in generated filenames.
        */
       public void setFormat(String format) {
@@ -262,4 +457,519 @@ public class UploadConfiguration {
           }
         }
       }
+
+  /**
+   * Encapsulates properties specifying how files are distributed among subdirectories of the file
+   * store, and whether files stored under a different layout are migrated to the current one.
+   */
+  public static class ShardingProperties {
+
+    /**
+     * Sharding strategy: {@code pattern} (subdirectories captured from the generated filename by
+     * {@code subdirectoryPattern}) or {@code hash} (subdirectories taken from a hash of the generated
+     * filename, spreading files evenly).
+     */
+    private String strategy = "pattern";
+
+    /**
+     * Number of subdirectory levels used by the {@code hash} strategy.
+     */
+    private int depth = 2;
+
+    /**
+     * Number of hexadecimal digits in each subdirectory name used by the {@code hash} strategy.
+     */
+    private int width = 2;
+
+    /**
+     * Flag indicating whether files stored under a different layout are moved (in the background,
+     * while the service is running) to the layout given by the current strategy.
+     */
+    private boolean migrate = false;
+
+    /**
+     * Number of images migrated in each transaction.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Returns the sharding strategy: {@code pattern} or {@code hash}.
+     */
+    public String getStrategy() {
+      return strategy;
+    }
+
+    /**
+     * Sets the sharding strategy: {@code pattern} or {@code hash}.
+     */
+    public void setStrategy(String strategy) {
+      this.strategy = strategy;
+    }
+
+    /**
+     * Returns the number of subdirectory levels used by the {@code hash} strategy.
+     */
+    public int getDepth() {
+      return depth;
+    }
+
+    /**
+     * Sets the number of subdirectory levels used by the {@code hash} strategy.
+     */
+    public void setDepth(int depth) {
+      this.depth = depth;
+    }
+
+    /**
+     * Returns the number of hexadecimal digits in each subdirectory name used by the {@code hash}
+     * strategy.
+     */
+    public int getWidth() {
+      return width;
+    }
+
+    /**
+     * Sets the number of hexadecimal digits in each subdirectory name used by the {@code hash}
+     * strategy.
+     */
+    public void setWidth(int width) {
+      this.width = width;
+    }
+
+    /**
+     * Returns a flag indicating whether files stored under a different layout are migrated to the
+     * current one.
+     */
+    public boolean isMigrate() {
+      return migrate;
+    }
+
+    /**
+     * Sets a flag indicating whether files stored under a different layout are migrated to the
+     * current one.
+     */
+    public void setMigrate(boolean migrate) {
+      this.migrate = migrate;
+    }
+
+    /**
+     * Returns the number of images migrated in each transaction.
+     */
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    /**
+     * Sets the number of images migrated in each transaction.
+     */
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+  }
+
+  /**
+   * Encapsulates properties controlling the on-disk cache of scaled derivatives (e.g. thumbnails) of
+   * images in the file store.
+   */
+  public static class DerivativeProperties {
+
+    /**
+     * Directory of the derivative cache, relative to the base directory of the file store.
+     */
+    private String directory = "derivatives";
+
+    /**
+     * Maximum total size of the cached derivatives; least recently used derivatives are evicted when
+     * this size is exceeded.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Maximum width or height (in pixels) of a derivative.
+     */
+    private int maxDimension = 2048;
+
+    /**
+     * Maximum number of pixels (width times height, as declared in its header) of an original image
+     * from which derivatives are generated; larger images aren't decoded, and are served unscaled.
+     */
+    private long maxSourcePixels = 50_000_000;
+
+    /**
+     * Returns the directory of the derivative cache, relative to the base directory of the file
+     * store.
+     */
+    public String getDirectory() {
+      return directory;
+    }
+
+    /**
+     * Sets the directory of the derivative cache, relative to the base directory of the file store.
+     */
+    public void setDirectory(String directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * Returns the maximum total size of the cached derivatives.
+     */
+    public DataSize getMaxSize() {
+      return maxSize;
+    }
+
+    /**
+     * Sets the maximum total size of the cached derivatives.
+     */
+    public void setMaxSize(DataSize maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the maximum width or height (in pixels) of a derivative.
+     */
+    public int getMaxDimension() {
+      return maxDimension;
     }
+
+    /**
+     * Sets the maximum width or height (in pixels) of a derivative.
+     */
+    public void setMaxDimension(int maxDimension) {
+      this.maxDimension = maxDimension;
+    }
+
+    /**
+     * Returns the maximum number of pixels of an original image from which derivatives are
+     * generated.
+     */
+    public long getMaxSourcePixels() {
+      return maxSourcePixels;
+    }
+
+    /**
+     * Sets the maximum number of pixels of an original image from which derivatives are generated.
+     */
+    public void setMaxSourcePixels(long maxSourcePixels) {
+      this.maxSourcePixels = maxSourcePixels;
+    }
+
+  }
+
+  /**
+   * Encapsulates properties controlling the size of segment files in the pack-file store, the
+   * reclamation of space held by deleted content, and the migration of files stored one per upload
+   * into segment files.
+   */
+  public static class PackProperties {
+
+    /**
+     * Size at which a segment file is sealed, and a new one started. (Content larger than this is
+     * written to a segment of its own.) At most 1GB.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Size up to which uploaded content is buffered in memory before being appended to a segment;
+     * larger content is first spooled to a temporary file.
+     */
+    private DataSize maxBufferedSize = DataSize.ofMegabytes(1);
+
+    /**
+     * Interval between checks for sealed segments eligible for compaction.
+     */
+    private Duration compactionInterval = Duration.ofMinutes(10);
+
+    /**
+     * Fraction of a sealed segment's content that must be live (not deleted) for the segment to be
+     * left as is; segments below this fraction are compacted.
+     */
+    private double compactionThreshold = 0.5;
+
+    /**
+     * Flag indicating whether files stored one per upload are moved (in the background, while the
+     * service is running) into segment files.
+     */
+    private boolean migrate = false;
+
+    /**
+     * Number of images migrated in each transaction.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Returns the size at which a segment file is sealed.
+     */
+    public DataSize getSegmentSize() {
+      return segmentSize;
+    }
+
+    /**
+     * Sets the size at which a segment file is sealed.
+     */
+    public void setSegmentSize(DataSize segmentSize) {
+      this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns the size up to which uploaded content is buffered in memory.
+     */
+    public DataSize getMaxBufferedSize() {
+      return maxBufferedSize;
+    }
+
+    /**
+     * Sets the size up to which uploaded content is buffered in memory.
+     */
+    public void setMaxBufferedSize(DataSize maxBufferedSize) {
+      this.maxBufferedSize = maxBufferedSize;
+    }
+
+    /**
+     * Returns the interval between checks for segments eligible for compaction.
+     */
+    public Duration getCompactionInterval() {
+      return compactionInterval;
+    }
+
+    /**
+     * Sets the interval between checks for segments eligible for compaction.
+     */
+    public void setCompactionInterval(Duration compactionInterval) {
+      this.compactionInterval = compactionInterval;
+    }
+
+    /**
+     * Returns the fraction of live content below which a sealed segment is compacted.
+     */
+    public double getCompactionThreshold() {
+      return compactionThreshold;
+    }
+
+    /**
+     * Sets the fraction of live content below which a sealed segment is compacted.
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+      this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Returns a flag indicating whether files stored one per upload are moved into segment files.
+     */
+    public boolean isMigrate() {
+      return migrate;
+    }
+
+    /**
+     * Sets a flag indicating whether files stored one per upload are moved into segment files.
+     */
+    public void setMigrate(boolean migrate) {
+      this.migrate = migrate;
+    }
+
+    /**
+     * Returns the number of images migrated in each transaction.
+     */
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    /**
+     * Sets the number of images migrated in each transaction.
+     */
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+  }
+
+  /**
+   * Encapsulates properties controlling the demotion of files from the upload directory (the hot
+   * tier) to a cold tier directory, and the criteria used to select files for demotion.
+   */
+  public static class TieringProperties {
+
+    /**
+     * Flag indicating whether files are demoted to the cold tier.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Cold tier directory; if {@code applicationHome} is {@code true}, this is resolved relative to
+     * the application home directory, as the upload directory is.
+     */
+    private String directory = "uploads-cold";
+
+    /**
+     * Flag indicating whether files are compressed (with gzip) when demoted.
+     */
+    private boolean compress = true;
+
+    /**
+     * Minimum age of an image (since its creation) for its file to be demoted.
+     */
+    private Duration demoteAfter = Duration.ofDays(90);
+
+    /**
+     * Minimum time since a file was last read (or promoted) for it to be demoted.
+     */
+    private Duration idleAfter = Duration.ofDays(30);
+
+    /**
+     * Interval between scans for files eligible for demotion.
+     */
+    private Duration scanInterval = Duration.ofHours(1);
+
+    /**
+     * Number of images read from the database in each query of a demotion scan.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Returns a flag indicating whether files are demoted to the cold tier.
+     */
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    /**
+     * Sets a flag indicating whether files are demoted to the cold tier.
+     */
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    /**
+     * Returns the cold tier directory.
+     */
+    public String getDirectory() {
+      return directory;
+    }
+
+    /**
+     * Sets the cold tier directory.
+     */
+    public void setDirectory(String directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * Returns a flag indicating whether files are compressed when demoted.
+     */
+    public boolean isCompress() {
+      return compress;
+    }
+
+    /**
+     * Sets a flag indicating whether files are compressed when demoted.
+     */
+    public void setCompress(boolean compress) {
+      this.compress = compress;
+    }
+
+    /**
+     * Returns the minimum age of an image for its file to be demoted.
+     */
+    public Duration getDemoteAfter() {
+      return demoteAfter;
+    }
+
+    /**
+     * Sets the minimum age of an image for its file to be demoted.
+     */
+    public void setDemoteAfter(Duration demoteAfter) {
+      this.demoteAfter = demoteAfter;
+    }
+
+    /**
+     * Returns the minimum time since a file was last read for it to be demoted.
+     */
+    public Duration getIdleAfter() {
+      return idleAfter;
+    }
+
+    /**
+     * Sets the minimum time since a file was last read for it to be demoted.
+     */
+    public void setIdleAfter(Duration idleAfter) {
+      this.idleAfter = idleAfter;
+    }
+
+    /**
+     * Returns the interval between scans for files eligible for demotion.
+     */
+    public Duration getScanInterval() {
+      return scanInterval;
+    }
+
+    /**
+     * Sets the interval between scans for files eligible for demotion.
+     */
+    public void setScanInterval(Duration scanInterval) {
+      this.scanInterval = scanInterval;
+    }
+
+    /**
+     * Returns the number of images read from the database in each query of a demotion scan.
+     */
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    /**
+     * Sets the number of images read from the database in each query of a demotion scan.
+     */
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+  }
+
+  /**
+   * Encapsulates properties controlling the backfill of the content lengths and digests of images
+   * stored before they were recorded at ingest.
+   */
+  public static class BackfillProperties {
+
+    /**
+     * Flag indicating whether missing content lengths and digests are computed (in the background,
+     * while the service is running) from the stored content.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Number of images updated in each transaction.
+     */
+    private int batchSize = 100;
+
+    /**
+     * Returns a flag indicating whether missing content lengths and digests are backfilled.
+     */
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    /**
+     * Sets a flag indicating whether missing content lengths and digests are backfilled.
+     */
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    /**
+     * Returns the number of images updated in each transaction.
+     */
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    /**
+     * Sets the number of images updated in each transaction.
+     */
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+  }
+
+}
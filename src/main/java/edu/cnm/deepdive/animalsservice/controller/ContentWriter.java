@@ -0,0 +1,277 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.controller;
+
+import edu.cnm.deepdive.animalsservice.service.BufferResource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Writes stored content to a servlet response, honoring {@code Range} and {@code If-Range} request
+ * headers; an {@code If-Range} validator may be either the entity tag or the last-modified date
+ * issued with the content. Single ranges are answered with {@code 206 Partial Content} and a {@code Content-Range}
+ * header; multiple ranges with a {@code multipart/byteranges} body. A {@code Range} header that
+ * can't be parsed is ignored; unsatisfiable ranges are dropped, and {@code 416 Range Not
+ * Satisfiable} is returned only if no requested range is satisfiable. When the container supports
+ * sendfile, a file (or a single range of one) is handed to it, so that the bytes never pass through
+ * the Java heap. Otherwise, content backed by a {@link FileChannel} is copied with {@link
+ * FileChannel#transferTo(long, long, WritableByteChannel)}; since the target is a channel wrapping
+ * the servlet output stream, this still copies through heap buffers, but avoids a separate read
+ * loop. Content cached in a {@link BufferResource} is read through its seekable channel, without
+ * reading the file store.
+ * <p>The length of the content is supplied by the caller, and the content itself is opened only
+ * when bytes are actually written: a {@code HEAD} request, or an unsatisfiable range, is answered
+ * without reading the file store.</p>
+ */
+@Component
+@Profile("service")
+public class ContentWriter {
+
+  private static final String BYTES_UNIT = "bytes";
+  private static final String CONTENT_RANGE_FORMAT = BYTES_UNIT + " %d-%d/%d";
+  private static final String UNSATISFIABLE_RANGE_FORMAT = BYTES_UNIT + " */%d";
+  private static final String MULTIPART_CONTENT_TYPE_FORMAT = "multipart/byteranges; boundary=%s";
+  private static final String PART_HEADER_FORMAT =
+      "\r\n--%s\r\n" + HttpHeaders.CONTENT_TYPE + ": %s\r\n" + HttpHeaders.CONTENT_RANGE + ": %s\r\n\r\n";
+  private static final String MULTIPART_END_FORMAT = "\r\n--%s--\r\n";
+  private static final String ENTITY_TAG_PREFIX = "\"";
+  private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+
+  private static final int COPY_BUFFER_SIZE = 8192;
+
+  private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+  /**
+   * Writes the content opened by {@code source} to {@code response}, along with the corresponding
+   * entity headers. Status and headers are set according to the {@code Range}-related headers of
+   * {@code request}; for {@code HEAD} requests, only headers are written, and {@code source} isn't
+   * opened.
+   *
+   * @param request      Current request.
+   * @param response     Response to which headers and content are written.
+   * @param length       Length of the stored content, in bytes.
+   * @param source       Source of the stored content.
+   * @param contentType  MIME type of the stored content.
+   * @param disposition  Value of the {@code Content-Disposition} header (may be {@code null}).
+   * @param etag         Strong entity tag of the content (may be {@code null}).
+   * @param lastModified Time (in milliseconds since the epoch) at which the content was last
+   *                     modified; if not positive, no {@code Last-Modified} header is written.
+   * @throws IOException If the content cannot be read, or the response cannot be written.
+   */
+  public void write(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+      long length, @NonNull ContentSource source, @NonNull String contentType,
+      @Nullable String disposition, @Nullable String etag, long lastModified) throws IOException {
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+    if (etag != null) {
+      response.setHeader(HttpHeaders.ETAG, etag);
+    }
+    if (lastModified > 0) {
+      response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+    }
+    if (disposition != null) {
+      response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition);
+    }
+    boolean headersOnly = HttpMethod.HEAD.matches(request.getMethod());
+    List<long[]> ranges = requestedRanges(request, length, etag, lastModified);
+    if (ranges == null) {
+      response.setHeader(HttpHeaders.CONTENT_RANGE, String.format(UNSATISFIABLE_RANGE_FORMAT, length));
+      response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      return;
+    }
+    if (ranges.isEmpty()) {
+      response.setContentType(contentType);
+      response.setContentLengthLong(length);
+      if (!headersOnly) {
+        transfer(request, response, source.open(), 0, length, true);
+      }
+    } else if (ranges.size() == 1) {
+      long[] range = ranges.get(0);
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setContentType(contentType);
+      response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+      response.setContentLengthLong(range[1] - range[0] + 1);
+      if (!headersOnly) {
+        transfer(request, response, source.open(), range[0], range[1] - range[0] + 1, true);
+      }
+    } else {
+      String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+      List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+      byte[] end = String.format(MULTIPART_END_FORMAT, boundary).getBytes(StandardCharsets.US_ASCII);
+      long total = end.length;
+      for (long[] range : ranges) {
+        byte[] partHeader = String.format(PART_HEADER_FORMAT, boundary, contentType,
+            contentRange(range, length)).getBytes(StandardCharsets.US_ASCII);
+        partHeaders.add(partHeader);
+        total += partHeader.length + range[1] - range[0] + 1;
+      }
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setContentType(String.format(MULTIPART_CONTENT_TYPE_FORMAT, boundary));
+      response.setContentLengthLong(total);
+      if (!headersOnly) {
+        Resource resource = source.open();
+        OutputStream output = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+          long[] range = ranges.get(i);
+          output.write(partHeaders.get(i));
+          transfer(request, response, resource, range[0], range[1] - range[0] + 1, false);
+        }
+        output.write(end);
+      }
+    }
+  }
+
+  /**
+   * Returns the satisfiable byte ranges (as inclusive start and end positions) requested by the
+   * {@code Range} header of {@code request}, in request order. As required by RFC 7233, a header
+   * that can't be parsed (including one using an unsupported unit), or that is made conditional by
+   * a stale {@code If-Range} validator, is ignored, and an empty list (for the full content) is
+   * returned; unsatisfiable ranges are dropped from a set that includes a satisfiable one, and
+   * {@code null} is returned only if none of them is satisfiable.
+   */
+  @Nullable
+  private List<long[]> requestedRanges(
+      HttpServletRequest request, long length, String etag, long lastModified) {
+    String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+    if (rangeHeader == null || !ifRangeSatisfied(request, etag, lastModified)) {
+      return List.of();
+    }
+    List<HttpRange> httpRanges;
+    try {
+      httpRanges = HttpRange.parseRanges(rangeHeader);
+    } catch (IllegalArgumentException e) {
+      return List.of();
+    }
+    List<long[]> ranges = new ArrayList<>(httpRanges.size());
+    for (HttpRange httpRange : httpRanges) {
+      long start = httpRange.getRangeStart(length);
+      long end = Math.min(httpRange.getRangeEnd(length), length - 1);
+      if (start < length && start <= end) {
+        ranges.add(new long[]{start, end});
+      }
+    }
+    return (ranges.isEmpty() && !httpRanges.isEmpty()) ? null : ranges;
+  }
+
+  private boolean ifRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+    boolean satisfied = true;
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange != null) {
+      if (ifRange.startsWith(ENTITY_TAG_PREFIX) || ifRange.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+        // If-Range requires a strong comparison, so a weak tag never matches.
+        satisfied = ifRange.equals(etag);
+      } else {
+        try {
+          long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+          satisfied = lastModified > 0 && lastModified / 1000 == date / 1000;
+        } catch (IllegalArgumentException e) {
+          satisfied = false; // Unrecognized validator; a stale one is assumed.
+        }
+      }
+    }
+    return satisfied;
+  }
+
+  private void transfer(HttpServletRequest request, HttpServletResponse response,
+      Resource resource, long position, long count, boolean sendfileAllowed) throws IOException {
+    if (sendfileAllowed && resource.isFile()
+        && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+      request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, resource.getFile().getCanonicalPath());
+      request.setAttribute(SENDFILE_START_ATTRIBUTE, position);
+      request.setAttribute(SENDFILE_END_ATTRIBUTE, position + count);
+      return;
+    }
+    try (ReadableByteChannel channel = resource.readableChannel()) {
+      OutputStream output = response.getOutputStream();
+      if (channel instanceof FileChannel) {
+        FileChannel fileChannel = (FileChannel) channel;
+        WritableByteChannel target = Channels.newChannel(output);
+        while (count > 0) {
+          long transferred = fileChannel.transferTo(position, count, target);
+          if (transferred <= 0) {
+            throw new IOException("Stored content ended before expected length");
+          }
+          position += transferred;
+          count -= transferred;
+        }
+      } else if (channel instanceof SeekableByteChannel) {
+        ((SeekableByteChannel) channel).position(position);
+        byte[] chunk = new byte[(int) Math.min(count, COPY_BUFFER_SIZE)];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (count > 0) {
+          buffer.clear().limit((int) Math.min(count, chunk.length));
+          int read = channel.read(buffer);
+          if (read < 0) {
+            throw new IOException("Stored content ended before expected length");
+          }
+          output.write(chunk, 0, read);
+          count -= read;
+        }
+      } else {
+        try (InputStream input = Channels.newInputStream(channel)) {
+          StreamUtils.copyRange(input, output, position, position + count - 1);
+        }
+      }
+    }
+  }
+
+  private String contentRange(long[] range, long length) {
+    return String.format(CONTENT_RANGE_FORMAT, range[0], range[1], length);
+  }
+
+  /**
+   * Opens stored content for {@link #write(HttpServletRequest, HttpServletResponse, long,
+   * ContentSource, String, String, String, long)}; invoked at most once per response, and only when
+   * content is actually written.
+   */
+  @FunctionalInterface
+  public interface ContentSource {
+
+    /**
+     * Returns a {@link Resource} giving access to the stored content.
+     *
+     * @throws IOException If the content cannot be read from the file store.
+     */
+    @NonNull
+    Resource open() throws IOException;
+
+  }
+
+}
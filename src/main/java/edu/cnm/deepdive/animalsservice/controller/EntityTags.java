@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.controller;
+
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.DerivativeService.Fit;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.CacheControl;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Computes the validators (entity tags) and caching directives issued with image metadata and
+ * content, by {@link ImageController} and {@link ReactiveImageController} alike. All are computed
+ * from {@link Image} fields alone, so that a conditional request can be answered from (cached)
+ * metadata, without reading the file store.
+ * <p>Since the name and MIME type of an image can't be updated, the content stored for an image
+ * never changes, and may be cached indefinitely. The entity tag of the content is its SHA-256
+ * digest, as recorded at ingest (or by {@link
+ * edu.cnm.deepdive.animalsservice.service.ContentBackfill}); that of a scaled derivative is derived
+ * from the digest and the requested dimensions. Only for images whose digest hasn't been recorded
+ * yet is the stored reference used in place of the digest; since a migration between storage
+ * layouts may change the reference, those tags may change once. Metadata changes only with its
+ * {@link Image#getUpdated() updated} timestamp, from which its entity tag is derived.</p>
+ * <p>When the digest of the stored content was recorded at ingest, it is also issued, as an instance
+ * digest, with the content itself (but not with its scaled derivatives).</p>
+ */
+final class EntityTags {
+
+  /**
+   * {@code Cache-Control} header value for content: public, with a maximum age of a year, and
+   * marked immutable, so that clients don't revalidate it even on reload.
+   */
+  static final String IMMUTABLE_CACHE_CONTROL =
+      CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+
+  /**
+   * Name of the header carrying the instance digest of content.
+   */
+  static final String DIGEST_HEADER = "Digest";
+
+  private static final String TAG_FORMAT = "\"%s\"";
+  private static final String DIGEST_FORMAT = "sha-256=%s";
+  private static final String DERIVATIVE_KEY_FORMAT = "%s?%sx%s-%s";
+
+  private EntityTags() {
+  }
+
+  /**
+   * Returns the (strong) entity tag of the metadata of {@code image}.
+   */
+  @NonNull
+  static String metadata(@NonNull Image image) {
+    return String.format(TAG_FORMAT, Long.toHexString(image.getUpdated().getTime()));
+  }
+
+  /**
+   * Returns the (strong) entity tag of the content of {@code image}: its digest, if recorded;
+   * otherwise, a hash of its stored reference.
+   */
+  @NonNull
+  static String content(@NonNull Image image) {
+    String digest = image.getDigest();
+    return String.format(TAG_FORMAT, (digest != null) ? digest : hash(image.getPath()));
+  }
+
+  /**
+   * Returns the (strong) entity tag of the scaled derivative of the content of {@code image} with
+   * the specified dimensions and fit.
+   */
+  @NonNull
+  static String derivative(@NonNull Image image, @Nullable Integer width, @Nullable Integer height,
+      @NonNull Fit fit) {
+    String source = (image.getDigest() != null) ? image.getDigest() : image.getPath();
+    return String.format(TAG_FORMAT, hash(String.format(DERIVATIVE_KEY_FORMAT, source,
+        (width != null) ? width : "", (height != null) ? height : "", fit.name().toLowerCase())));
+  }
+
+  /**
+   * Returns the value of the {@code Digest} header for the content of {@code image}, or {@code null}
+   * if its digest wasn't recorded.
+   */
+  @Nullable
+  static String digest(@NonNull Image image) {
+    String digest = image.getDigest();
+    if (digest == null) {
+      return null;
+    }
+    byte[] bytes = new byte[digest.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(digest, 2 * i, 2 * i + 2, 16);
+    }
+    return String.format(DIGEST_FORMAT, Base64.getEncoder().encodeToString(bytes));
+  }
+
+  private static String hash(String key) {
+    return DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
@@ -16,25 +16,45 @@
 package edu.cnm.deepdive.animalsservice.controller;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.cnm.deepdive.animalsservice.controller.ContentWriter.ContentSource;
+import edu.cnm.deepdive.animalsservice.exception.InvalidQueryException;
 import edu.cnm.deepdive.animalsservice.exception.NotFoundException;
 import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.BulkRequest;
+import edu.cnm.deepdive.animalsservice.service.BulkResult;
+import edu.cnm.deepdive.animalsservice.service.DerivativeService.Fit;
+import edu.cnm.deepdive.animalsservice.service.ImagePage;
+import edu.cnm.deepdive.animalsservice.service.ImagePage.Order;
 import edu.cnm.deepdive.animalsservice.service.ImageService;
 import edu.cnm.deepdive.animalsservice.service.ImageService.ImageNotFoundException;
+import edu.cnm.deepdive.animalsservice.service.UploadResult;
 import edu.cnm.deepdive.animalsservice.view.ImageView;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
-import java.util.function.Function;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.Resource;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkRelation;
 import org.springframework.hateoas.server.ExposesResourceFor;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -42,12 +62,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @RestController
 @RequestMapping("/images")
@@ -66,15 +90,37 @@ public class ImageController {
     private static final String NOT_STORED_MESSAGE = "Unable to store uploaded content";
     private static final String NOT_WHITELISTED_MESSAGE = "Upload MIME type not in whitelist";
     private static final String FILE_STORE_FAILURE_MESSAGE = "File store error";
+    private static final String TOO_LARGE_MESSAGE = "Uploaded content exceeds size limit";
+    private static final String IMAGE_MEDIA_RANGE = "image/*";
+    private static final String DEFAULT_FIT = "contain";
+    private static final String DEFAULT_SORT = "title";
+    private static final String CURSOR_PARAMETER = "cursor";
+    private static final String LIMIT_PARAMETER = "limit";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String INVALID_LIMIT_MESSAGE = "Page size limit out of range";
+    private static final String STREAM_PARAMETER = "stream=true";
+    private static final String BATCH_PATH = "/batch";
+    private static final String LOOKUP_PATH = "/lookup";
+    private static final String BULK_PATH = "/bulk";
+    private static final String DEFAULT_VIEW = "partial";
+    private static final String FULL_VIEW = "full";
+    private static final int MAX_LOOKUP_KEYS = 1000;
+    private static final String INVALID_LOOKUP_MESSAGE = "Between 1 and 1000 keys may be looked up";
+    private static final String MISMATCHED_BATCH_MESSAGE =
+            "Each file in a batch must have a title (and a description, if any are given)";
+    private static final char NDJSON_DELIMITER = '\n';
 
     private final ImageService imageService;
     private final ObjectMapper mapper;
+    private final ContentWriter contentWriter;
 
 
     public ImageController(ImageService imageService,
-                           ObjectMapper mapper) {
+                           ObjectMapper mapper, ContentWriter contentWriter) {
         this.imageService = imageService;
         this.mapper = mapper;
+        this.contentWriter = contentWriter;
     }
 
     @JsonView(ImageView.Full.class)
@@ -97,18 +143,112 @@ public class ImageController {
         }
     }
 
+    @JsonView(ImageView.Full.class)
+    @PostMapping(consumes = IMAGE_MEDIA_RANGE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Image> post(
+            HttpServletRequest request,
+            @RequestParam String title,
+            @RequestParam(required = false) String description,
+            @RequestHeader(value = HttpHeaders.CONTENT_DISPOSITION, required = false) String disposition
+    ) {
+        MediaType mediaType = MediaType.parseMediaType(request.getContentType());
+        String contentType = new MediaType(mediaType.getType(), mediaType.getSubtype()).toString();
+        String filename = (disposition != null) ? ContentDisposition.parse(disposition).getFilename() : null;
+        try {
+            Image image = imageService.store(request.getInputStream(), contentType, filename, title, description);
+            return ResponseEntity.created(image.getHref()).body(image);
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, NOT_STORED_MESSAGE, e);
+        } catch (HttpMediaTypeNotAcceptableException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.UNSUPPORTED_MEDIA_TYPE, NOT_WHITELISTED_MESSAGE, e);
+        } catch (MaxUploadSizeExceededException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.PAYLOAD_TOO_LARGE, TOO_LARGE_MESSAGE, e);
+        }
+    }
+
+    @JsonView(ImageView.Full.class)
+    @PostMapping(value = BATCH_PATH, consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<UploadResult> postBatch(
+            @RequestParam("file") List<MultipartFile> files,
+            @RequestParam("title") List<String> titles,
+            @RequestParam(value = "description", required = false) List<String> descriptions
+    ) {
+        if (titles.size() != files.size()
+                || (descriptions != null && descriptions.size() != files.size())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, MISMATCHED_BATCH_MESSAGE);
+        }
+        return imageService.store(files, titles, descriptions);
+    }
+
+    @PostMapping(value = LOOKUP_PATH, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public MappingJacksonValue lookup(
+            @RequestBody List<UUID> externalKeys,
+            @RequestParam(defaultValue = DEFAULT_VIEW) String view
+    ) {
+        if (externalKeys.isEmpty() || externalKeys.size() > MAX_LOOKUP_KEYS) {
+            throw new InvalidQueryException(INVALID_LOOKUP_MESSAGE);
+        }
+        MappingJacksonValue value = new MappingJacksonValue(imageService.get(externalKeys));
+        value.setSerializationView(
+                FULL_VIEW.equalsIgnoreCase(view) ? ImageView.Full.class : ImageView.Partial.class);
+        return value;
+    }
+
+    @PostMapping(value = BULK_PATH, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<BulkResult> bulk(@RequestBody BulkRequest request) {
+        return imageService.apply(request);
+    }
+
     @JsonView(ImageView.Full.class)
     @GetMapping(value = UUID_PARAMETER_PATTERN, produces = MediaType.APPLICATION_JSON_VALUE)
-    public Image get(@PathVariable UUID externalKey) {
+    public ResponseEntity<Image> get(@PathVariable UUID externalKey) {
         return imageService
                 .get(externalKey)
+                .map((image) -> validated(image).body(image))
                 .orElseThrow(this::imageNotFound);
     }
 
     @JsonView(ImageView.Partial.class)
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public Iterable<Image> list() {
-        return imageService.list();
+    public ResponseEntity<Iterable<Image>> list(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_SORT) String sort
+    ) {
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(imageService.list());
+        }
+        int pageSize = (limit != null) ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new InvalidQueryException(INVALID_LIMIT_MESSAGE);
+        }
+        ImagePage page = imageService.list(Order.valueOf(sort.toUpperCase()), pageSize, cursor);
+        List<String> links = new ArrayList<>();
+        if (page.getNext() != null) {
+            links.add(pageLink(page.getNext(), pageSize, IanaLinkRelations.NEXT).toString());
+        }
+        if (page.getPrevious() != null) {
+            links.add(pageLink(page.getPrevious(), pageSize, IanaLinkRelations.PREV).toString());
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, links.toArray(new String[0]))
+                .body(page.getImages());
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamDelimited(@RequestParam(required = false) String q, HttpServletResponse response) {
+        stream(q, true, response);
+    }
+
+    @GetMapping(params = STREAM_PARAMETER, produces = MediaType.APPLICATION_JSON_VALUE)
+    public void streamArray(@RequestParam(required = false) String q, HttpServletResponse response) {
+        stream(q, false, response);
     }
 
     @DeleteMapping(value = BaseParameterPatterns.UUID_PATH_PARAMETER_PATTERN)
@@ -132,14 +272,10 @@ public class ImageController {
 
     @GetMapping(value = DESCRIPTION_PROPERTY_PATTERN, produces = {
             MediaType.APPLICATION_JSON_VALUE})
-    public String getDescription(@PathVariable UUID externalKey) {
+    public ResponseEntity<String> getDescription(@PathVariable UUID externalKey) {
         return imageService.get(externalKey)
-                .map(new Function<Image, String>() {
-                    @Override
-                    public String apply(Image image) {
-                        return image.getDescription();
-                    }
-                })
+                .filter((image) -> image.getDescription() != null)
+                .map((image) -> validated(image).body(image.getDescription()))
                 .orElseThrow(NotFoundException::new);
     }
 
@@ -160,27 +296,121 @@ public class ImageController {
     }
 
     @GetMapping(value = CONTENT_PROPERTY_PATTERN)
-    public ResponseEntity<Resource> getContent(
-            @PathVariable UUID externalKey) {
-        return imageService.get(externalKey)
-                .map((image) -> {
-                    try {
-                        return ResponseEntity.ok()
-                                .header(HttpHeaders.CONTENT_DISPOSITION, dispositionHeader(image.getName()))
-                                .header(HttpHeaders.CONTENT_TYPE, image.getContentType())
-                                .body(imageService.retrieve(image));
-                    } catch (IOException e) {
-                        throw new ResponseStatusException(
-                                HttpStatus.INTERNAL_SERVER_ERROR, NOT_RETRIEVED_MESSAGE, e);
-                    }
-                })
+    public void getContent(@PathVariable UUID externalKey,
+                           @RequestParam(required = false) Integer width,
+                           @RequestParam(required = false) Integer height,
+                           @RequestParam(defaultValue = DEFAULT_FIT) String fit,
+                           HttpServletRequest request, HttpServletResponse response) {
+        Image image = imageService.get(externalKey)
                 .orElseThrow(ImageNotFoundException::new);
+        boolean scaled = (width != null || height != null);
+        Fit fitPolicy = scaled ? Fit.valueOf(fit.toUpperCase()) : null;
+        String etag = scaled
+                ? EntityTags.derivative(image, width, height, fitPolicy)
+                : EntityTags.content(image);
+        long lastModified = image.getCreated().getTime();
+        // Stored content never changes, so a conditional request is answered from the (cached)
+        // metadata alone, without touching the file store.
+        response.setHeader(HttpHeaders.CACHE_CONTROL, EntityTags.IMMUTABLE_CACHE_CONTROL);
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            imageService.recordAccess(image);
+            return;
+        }
+        String contentType = image.getContentType();
+        long length;
+        ContentSource source;
+        String digest = null;
+        try {
+            Resource derivative = scaled
+                    ? imageService.retrieve(image, width, height, fitPolicy).orElse(null)
+                    : null;
+            if (derivative != null) {
+                contentType = imageService.getDerivativeContentType(image);
+                length = derivative.contentLength();
+                source = () -> derivative;
+            } else if (image.getContentLength() != null) {
+                // The length recorded at ingest is authoritative, so the file store is read only
+                // when content is actually written (i.e. not for HEAD).
+                length = image.getContentLength();
+                source = () -> imageService.retrieve(image);
+                digest = EntityTags.digest(image);
+            } else {
+                Resource resource = imageService.retrieve(image);
+                length = resource.contentLength();
+                source = () -> resource;
+            }
+        } catch (IOException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, NOT_RETRIEVED_MESSAGE, e);
+        }
+        if (digest != null) {
+            response.setHeader(EntityTags.DIGEST_HEADER, digest);
+        }
+        // All metadata is resolved by now; with open-in-view disabled, no database connection (or
+        // persistence context) is held while a slow client downloads the content.
+        try {
+            contentWriter.write(request, response, length, source, contentType,
+                    dispositionHeader(image.getName()), etag, lastModified);
+        } catch (IOException e) {
+            if (!response.isCommitted()) {
+                throw new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR, NOT_RETRIEVED_MESSAGE, e);
+            }
+        }
+    }
+
+    private void stream(String fragment, boolean delimited, HttpServletResponse response) {
+        response.setContentType(
+                delimited ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        ObjectWriter writer = mapper
+                .writerWithView(ImageView.Partial.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator(delimited ? "" : null);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(response.getOutputStream())) {
+            if (!delimited) {
+                generator.writeStartArray();
+            }
+            imageService.stream(fragment, (image) -> {
+                try {
+                    writer.writeValue(generator, image);
+                    if (delimited) {
+                        generator.writeRaw(NDJSON_DELIMITER);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (!delimited) {
+                generator.writeEndArray();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            if (!response.isCommitted()) {
+                throw new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR, NOT_RETRIEVED_MESSAGE, e);
+            }
+        }
+    }
+
+    private ResponseEntity.BodyBuilder validated(Image image) {
+        return ResponseEntity.ok()
+                .eTag(EntityTags.metadata(image))
+                .lastModified(image.getUpdated().getTime());
     }
 
     private ResponseStatusException imageNotFound() {
         return new ResponseStatusException(HttpStatus.NOT_FOUND, IMAGE_NOT_FOUND_REASON);
     }
 
+    private Link pageLink(String cursor, int limit, LinkRelation relation) {
+        return Link.of(
+                ServletUriComponentsBuilder.fromCurrentRequest()
+                        .replaceQueryParam(CURSOR_PARAMETER, cursor)
+                        .replaceQueryParam(LIMIT_PARAMETER, limit)
+                        .toUriString(),
+                relation
+        );
+    }
+
     private String dispositionHeader(String filename) {
         return String.format(ATTACHMENT_DISPOSITION_FORMAT, filename);
     }
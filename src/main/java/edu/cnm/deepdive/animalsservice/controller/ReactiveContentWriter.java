@@ -0,0 +1,173 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.controller;
+
+import edu.cnm.deepdive.animalsservice.service.ReactiveFilesystemStorageService.StoredFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link ContentWriter}, used by the {@code reactive} profile: writes
+ * stored content to a WebFlux response, with the same status codes and headers, honoring {@code
+ * Range} and {@code If-Range} request headers in the same way. The content is streamed from the file
+ * store as {@link DataBuffer}s allocated by the response, as the connection demands them.
+ */
+@Component
+@Profile("reactive")
+public class ReactiveContentWriter {
+
+  private static final String BYTES_UNIT = "bytes";
+  private static final String CONTENT_RANGE_FORMAT = BYTES_UNIT + " %d-%d/%d";
+  private static final String UNSATISFIABLE_RANGE_FORMAT = BYTES_UNIT + " */%d";
+  private static final String MULTIPART_CONTENT_TYPE_FORMAT = "multipart/byteranges; boundary=%s";
+  private static final String PART_HEADER_FORMAT =
+      "\r\n--%s\r\n" + HttpHeaders.CONTENT_TYPE + ": %s\r\n" + HttpHeaders.CONTENT_RANGE + ": %s\r\n\r\n";
+  private static final String MULTIPART_END_FORMAT = "\r\n--%s--\r\n";
+  private static final String ENTITY_TAG_PREFIX = "\"";
+  private static final String WEAK_ENTITY_TAG_PREFIX = "W/";
+
+  /**
+   * Writes the content of {@code file} to the response of {@code exchange}, along with the
+   * corresponding entity headers. Status and headers are set according to the {@code
+   * Range}-related headers of the request; for {@code HEAD} requests, only headers are written.
+   *
+   * @param exchange     Current exchange.
+   * @param file         Stored content.
+   * @param contentType  MIME type of the stored content.
+   * @param disposition  Value of the {@code Content-Disposition} header (may be {@code null}).
+   * @param etag         Strong entity tag of the content (may be {@code null}).
+   * @param lastModified Time (in milliseconds since the epoch) at which the content was last
+   *                     modified; if not positive, no {@code Last-Modified} header is written.
+   * @return {@link Mono} completing when the response has been written.
+   */
+  public Mono<Void> write(@NonNull ServerWebExchange exchange, @NonNull StoredFile file,
+      @NonNull String contentType, @Nullable String disposition, @Nullable String etag,
+      long lastModified) {
+    ServerHttpRequest request = exchange.getRequest();
+    ServerHttpResponse response = exchange.getResponse();
+    HttpHeaders headers = response.getHeaders();
+    long length = file.getLength();
+    headers.set(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+    if (etag != null) {
+      headers.setETag(etag);
+    }
+    if (lastModified > 0) {
+      headers.setLastModified(lastModified);
+    }
+    if (disposition != null) {
+      headers.set(HttpHeaders.CONTENT_DISPOSITION, disposition);
+    }
+    boolean headersOnly = (request.getMethod() == HttpMethod.HEAD);
+    List<long[]> ranges;
+    try {
+      ranges = requestedRanges(request, length, etag, lastModified);
+    } catch (IllegalArgumentException e) {
+      headers.set(HttpHeaders.CONTENT_RANGE, String.format(UNSATISFIABLE_RANGE_FORMAT, length));
+      response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+      return response.setComplete();
+    }
+    DataBufferFactory bufferFactory = response.bufferFactory();
+    Flux<DataBuffer> body;
+    if (ranges.isEmpty()) {
+      headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+      headers.setContentLength(length);
+      body = file.read(bufferFactory, 0, length);
+    } else if (ranges.size() == 1) {
+      long[] range = ranges.get(0);
+      response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+      headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+      headers.set(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+      headers.setContentLength(range[1] - range[0] + 1);
+      body = file.read(bufferFactory, range[0], range[1] - range[0] + 1);
+    } else {
+      String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+      List<Flux<DataBuffer>> parts = new ArrayList<>(2 * ranges.size() + 1);
+      byte[] end = String.format(MULTIPART_END_FORMAT, boundary).getBytes(StandardCharsets.US_ASCII);
+      long total = end.length;
+      for (long[] range : ranges) {
+        byte[] partHeader = String.format(PART_HEADER_FORMAT, boundary, contentType,
+            contentRange(range, length)).getBytes(StandardCharsets.US_ASCII);
+        parts.add(Flux.defer(() -> Flux.just(bufferFactory.wrap(partHeader))));
+        parts.add(file.read(bufferFactory, range[0], range[1] - range[0] + 1));
+        total += partHeader.length + range[1] - range[0] + 1;
+      }
+      parts.add(Flux.defer(() -> Flux.just(bufferFactory.wrap(end))));
+      response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+      headers.set(HttpHeaders.CONTENT_TYPE, String.format(MULTIPART_CONTENT_TYPE_FORMAT, boundary));
+      headers.setContentLength(total);
+      body = Flux.concat(parts);
+    }
+    return headersOnly ? response.setComplete() : response.writeWith(body);
+  }
+
+  private List<long[]> requestedRanges(
+      ServerHttpRequest request, long length, String etag, long lastModified) {
+    String rangeHeader = request.getHeaders().getFirst(HttpHeaders.RANGE);
+    List<long[]> ranges = new ArrayList<>();
+    if (rangeHeader != null && ifRangeSatisfied(request, etag, lastModified)) {
+      for (HttpRange httpRange : HttpRange.parseRanges(rangeHeader)) {
+        long start = httpRange.getRangeStart(length);
+        long end = Math.min(httpRange.getRangeEnd(length), length - 1);
+        if (start >= length || start > end) {
+          throw new IllegalArgumentException();
+        }
+        ranges.add(new long[]{start, end});
+      }
+    }
+    return ranges;
+  }
+
+  private boolean ifRangeSatisfied(ServerHttpRequest request, String etag, long lastModified) {
+    boolean satisfied = true;
+    String ifRange = request.getHeaders().getFirst(HttpHeaders.IF_RANGE);
+    if (ifRange != null) {
+      if (ifRange.startsWith(ENTITY_TAG_PREFIX) || ifRange.startsWith(WEAK_ENTITY_TAG_PREFIX)) {
+        // If-Range requires a strong comparison, so a weak tag never matches.
+        satisfied = ifRange.equals(etag);
+      } else {
+        try {
+          long date = request.getHeaders().getFirstDate(HttpHeaders.IF_RANGE);
+          satisfied = lastModified > 0 && lastModified / 1000 == date / 1000;
+        } catch (IllegalArgumentException e) {
+          satisfied = false; // Unrecognized validator; a stale one is assumed.
+        }
+      }
+    }
+    return satisfied;
+  }
+
+  private String contentRange(long[] range, long length) {
+    return String.format(CONTENT_RANGE_FORMAT, range[0], range[1], length);
+  }
+
+}
@@ -0,0 +1,349 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.controller;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import edu.cnm.deepdive.animalsservice.exception.InvalidQueryException;
+import edu.cnm.deepdive.animalsservice.exception.NotFoundException;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.ImagePage.Order;
+import edu.cnm.deepdive.animalsservice.service.ImageService.ImageNotFoundException;
+import edu.cnm.deepdive.animalsservice.service.ReactiveImageService;
+import edu.cnm.deepdive.animalsservice.view.ImageView;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.hateoas.IanaLinkRelations;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.LinkRelation;
+import org.springframework.hateoas.server.ExposesResourceFor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link ImageController}, used by the {@code reactive} profile. The
+ * request mappings, status codes, headers, and response bodies are the same as those of {@link
+ * ImageController}, so that clients can't tell which profile is serving them; however, no request is
+ * handled by blocking a thread, whether on the database, the file store, or a slow client.
+ * <p>Batch uploads, bulk operations, and scaled derivatives aren't implemented by this profile; a
+ * request for the content of an image at a specified size is served the original content, as
+ * {@link ImageController} does when a derivative can't be produced.</p>
+ */
+@RestController
+@RequestMapping("/images")
+@ExposesResourceFor(Image.class)
+@Profile("reactive")
+public class ReactiveImageController {
+
+    private static final String UUID_PARAMETER_PATTERN = "/{externalKey:[0-9a-fA-F\\-]{32,36}}";
+    private static final String DESCRIPTION_PROPERTY_PATTERN =
+            UUID_PARAMETER_PATTERN + "/description";
+    private static final String CONTENT_PROPERTY_PATTERN = UUID_PARAMETER_PATTERN + "/content";
+    private static final String NOT_STORED_MESSAGE = "Unable to store uploaded content";
+    private static final String NOT_WHITELISTED_MESSAGE = "Upload MIME type not in whitelist";
+    private static final String FILE_STORE_FAILURE_MESSAGE = "File store error";
+    private static final String TOO_LARGE_MESSAGE = "Uploaded content exceeds size limit";
+    private static final String IMAGE_MEDIA_RANGE = "image/*";
+    private static final String DEFAULT_SORT = "title";
+    private static final String CURSOR_PARAMETER = "cursor";
+    private static final String LIMIT_PARAMETER = "limit";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String INVALID_LIMIT_MESSAGE = "Page size limit out of range";
+    private static final String STREAM_PARAMETER = "stream=true";
+    private static final String LOOKUP_PATH = "/lookup";
+    private static final String DEFAULT_VIEW = "partial";
+    private static final String FULL_VIEW = "full";
+    private static final int MAX_LOOKUP_KEYS = 1000;
+    private static final String INVALID_LOOKUP_MESSAGE = "Between 1 and 1000 keys may be looked up";
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_SEPARATOR = {','};
+    private static final byte[] ARRAY_END = {']'};
+    private static final byte[] NDJSON_DELIMITER = {'\n'};
+
+    private final ReactiveImageService imageService;
+    private final ObjectMapper mapper;
+    private final ReactiveContentWriter contentWriter;
+
+    public ReactiveImageController(ReactiveImageService imageService,
+                                   ObjectMapper mapper, ReactiveContentWriter contentWriter) {
+        this.imageService = imageService;
+        this.mapper = mapper;
+        this.contentWriter = contentWriter;
+    }
+
+    @JsonView(ImageView.Full.class)
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Image>> post(
+            @RequestPart FilePart file,
+            @RequestPart String title,
+            @RequestPart(required = false) String description
+    ) {
+        MediaType contentType = file.headers().getContentType();
+        return created(imageService.store(file.content(),
+                (contentType != null) ? contentType.toString() : null, file.filename(), title, description));
+    }
+
+    @JsonView(ImageView.Full.class)
+    @PostMapping(consumes = IMAGE_MEDIA_RANGE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Image>> post(
+            ServerHttpRequest request,
+            @RequestParam String title,
+            @RequestParam(required = false) String description,
+            @RequestHeader(value = HttpHeaders.CONTENT_DISPOSITION, required = false) String disposition
+    ) {
+        //noinspection ConstantConditions
+        MediaType mediaType = request.getHeaders().getContentType();
+        String contentType = new MediaType(mediaType.getType(), mediaType.getSubtype()).toString();
+        String filename = (disposition != null) ? ContentDisposition.parse(disposition).getFilename() : null;
+        return created(imageService.store(request.getBody(), contentType, filename, title, description));
+    }
+
+    @PostMapping(value = LOOKUP_PATH, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<MappingJacksonValue> lookup(
+            @RequestBody List<UUID> externalKeys,
+            @RequestParam(defaultValue = DEFAULT_VIEW) String view
+    ) {
+        if (externalKeys.isEmpty() || externalKeys.size() > MAX_LOOKUP_KEYS) {
+            throw new InvalidQueryException(INVALID_LOOKUP_MESSAGE);
+        }
+        return imageService.get(externalKeys)
+                .map((lookup) -> {
+                    MappingJacksonValue value = new MappingJacksonValue(lookup);
+                    value.setSerializationView(
+                            FULL_VIEW.equalsIgnoreCase(view) ? ImageView.Full.class : ImageView.Partial.class);
+                    return value;
+                });
+    }
+
+    @JsonView(ImageView.Full.class)
+    @GetMapping(value = UUID_PARAMETER_PATTERN, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Image>> get(@PathVariable UUID externalKey) {
+        return imageService
+                .get(externalKey)
+                .map((image) -> validated(image).body(image))
+                .switchIfEmpty(Mono.error(this::imageNotFound));
+    }
+
+    @JsonView(ImageView.Partial.class)
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<Image>>> list(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = DEFAULT_SORT) String sort,
+            ServerHttpRequest request
+    ) {
+        if (limit == null && cursor == null) {
+            return imageService.list()
+                    .collectList()
+                    .map(ResponseEntity::ok);
+        }
+        int pageSize = (limit != null) ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new InvalidQueryException(INVALID_LIMIT_MESSAGE);
+        }
+        return imageService.list(Order.valueOf(sort.toUpperCase()), pageSize, cursor)
+                .map((page) -> {
+                    List<String> links = new ArrayList<>();
+                    if (page.getNext() != null) {
+                        links.add(pageLink(request, page.getNext(), pageSize, IanaLinkRelations.NEXT).toString());
+                    }
+                    if (page.getPrevious() != null) {
+                        links.add(pageLink(request, page.getPrevious(), pageSize, IanaLinkRelations.PREV).toString());
+                    }
+                    return ResponseEntity.ok()
+                            .header(HttpHeaders.LINK, links.toArray(new String[0]))
+                            .body(page.getImages());
+                });
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> streamDelimited(@RequestParam(required = false) String q,
+                                            ServerHttpResponse response) {
+        return stream(q, true, response.bufferFactory());
+    }
+
+    @GetMapping(params = STREAM_PARAMETER, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> streamArray(@RequestParam(required = false) String q,
+                                        ServerHttpResponse response) {
+        return stream(q, false, response.bufferFactory());
+    }
+
+    @DeleteMapping(value = UUID_PARAMETER_PATTERN)
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable UUID externalKey) {
+        return imageService.get(externalKey)
+                .switchIfEmpty(Mono.error(ImageNotFoundException::new))
+                .flatMap(imageService::delete)
+                .onErrorMap(IOException.class, (e) -> new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR, FILE_STORE_FAILURE_MESSAGE, e));
+    }
+
+    // As in ImageController, the description is written as is, rather than as a JSON string.
+    @GetMapping(value = DESCRIPTION_PROPERTY_PATTERN, produces = {
+            MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<byte[]>> getDescription(@PathVariable UUID externalKey) {
+        return imageService.get(externalKey)
+                .filter((image) -> image.getDescription() != null)
+                .map((image) -> validated(image)
+                        .body(image.getDescription().getBytes(StandardCharsets.UTF_8)))
+                .switchIfEmpty(Mono.error(NotFoundException::new));
+    }
+
+    @PutMapping(value = DESCRIPTION_PROPERTY_PATTERN, consumes = {
+            MediaType.APPLICATION_JSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE})
+    public Mono<byte[]> putDescription(@PathVariable UUID externalKey, @RequestBody String description)
+            throws JsonProcessingException {
+        String fixedDescription = mapper.readValue(description, String.class);
+        return imageService.updateDescription(externalKey, fixedDescription)
+                .switchIfEmpty(Mono.error(this::imageNotFound))
+                .handle((newDescription, sink) -> {
+                    try {
+                        sink.next(mapper.writeValueAsBytes(newDescription));
+                    } catch (JsonProcessingException e) {
+                        sink.error(new IllegalArgumentException(e));
+                    }
+                });
+    }
+
+    @GetMapping(value = CONTENT_PROPERTY_PATTERN)
+    public Mono<Void> getContent(@PathVariable UUID externalKey, ServerWebExchange exchange) {
+        return imageService.get(externalKey)
+                .switchIfEmpty(Mono.error(ImageNotFoundException::new))
+                .flatMap((image) -> {
+                    String etag = EntityTags.content(image);
+                    long lastModified = image.getCreated().getTime();
+                    // As in ImageController, a conditional request is answered without touching the
+                    // file store.
+                    exchange.getResponse().getHeaders()
+                            .set(HttpHeaders.CACHE_CONTROL, EntityTags.IMMUTABLE_CACHE_CONTROL);
+                    if (exchange.checkNotModified(etag, Instant.ofEpochMilli(lastModified))) {
+                        return exchange.getResponse().setComplete();
+                    }
+                    String digest = EntityTags.digest(image);
+                    if (digest != null) {
+                        exchange.getResponse().getHeaders().set(EntityTags.DIGEST_HEADER, digest);
+                    }
+                    return imageService.retrieve(image)
+                            .onErrorMap(IOException.class, (e) -> new ResponseStatusException(
+                                    HttpStatus.INTERNAL_SERVER_ERROR, ImageController.NOT_RETRIEVED_MESSAGE, e))
+                            .flatMap((file) -> contentWriter.write(exchange, file, image.getContentType(),
+                                    dispositionHeader(image.getName()), etag, lastModified));
+                });
+    }
+
+    private Mono<ResponseEntity<Image>> created(Mono<Image> stored) {
+        return stored
+                .map((image) -> ResponseEntity.created(image.getHref()).body(image))
+                .onErrorMap(HttpMediaTypeNotAcceptableException.class, (e) -> new ResponseStatusException(
+                        HttpStatus.UNSUPPORTED_MEDIA_TYPE, NOT_WHITELISTED_MESSAGE, e))
+                .onErrorMap(MaxUploadSizeExceededException.class, (e) -> new ResponseStatusException(
+                        HttpStatus.PAYLOAD_TOO_LARGE, TOO_LARGE_MESSAGE, e))
+                .onErrorMap(IOException.class, (e) -> new ResponseStatusException(
+                        HttpStatus.INTERNAL_SERVER_ERROR, NOT_STORED_MESSAGE, e));
+    }
+
+    private Flux<DataBuffer> stream(String fragment, boolean delimited, DataBufferFactory bufferFactory) {
+        ObjectWriter writer = mapper.writerWithView(ImageView.Partial.class);
+        Flux<DataBuffer> images = imageService.search(fragment)
+                .index()
+                .handle((indexed, sink) -> {
+                    try {
+                        byte[] json = writer.writeValueAsBytes(indexed.getT2());
+                        DataBuffer buffer = bufferFactory.allocateBuffer(json.length + 1);
+                        if (!delimited && indexed.getT1() > 0) {
+                            buffer.write(ARRAY_SEPARATOR);
+                        }
+                        buffer.write(json);
+                        if (delimited) {
+                            buffer.write(NDJSON_DELIMITER);
+                        }
+                        sink.next(buffer);
+                    } catch (JsonProcessingException e) {
+                        sink.error(e);
+                    }
+                });
+        return delimited
+                ? images
+                : Flux.concat(
+                        Mono.fromSupplier(() -> bufferFactory.wrap(ARRAY_START)),
+                        images,
+                        Mono.fromSupplier(() -> bufferFactory.wrap(ARRAY_END)));
+    }
+
+    private ResponseEntity.BodyBuilder validated(Image image) {
+        return ResponseEntity.ok()
+                .eTag(EntityTags.metadata(image))
+                .lastModified(image.getUpdated().getTime());
+    }
+
+    private ResponseStatusException imageNotFound() {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, ImageController.IMAGE_NOT_FOUND_REASON);
+    }
+
+    private Link pageLink(ServerHttpRequest request, String cursor, int limit, LinkRelation relation) {
+        return Link.of(
+                UriComponentsBuilder.fromUri(request.getURI())
+                        .replaceQueryParam(CURSOR_PARAMETER, cursor)
+                        .replaceQueryParam(LIMIT_PARAMETER, limit)
+                        .toUriString(),
+                relation
+        );
+    }
+
+    private String dispositionHeader(String filename) {
+        return String.format(ImageController.ATTACHMENT_DISPOSITION_FORMAT, filename);
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ *  Copyright 2021 CNM Ingenuity, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package edu.cnm.deepdive.animalsservice.controller;
+
+import edu.cnm.deepdive.animalsservice.configuration.ServerTimingConfiguration;
+import edu.cnm.deepdive.animalsservice.service.RequestPhases;
+import edu.cnm.deepdive.animalsservice.service.RequestPhases.Phase;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Times a configurable sample of requests, broken down by {@link Phase}: repository invocations,
+ * {@link edu.cnm.deepdive.animalsservice.service.StorageService} invocations, and writing of the
+ * response body. The phases are reported in a {@code Server-Timing} response header and, if enabled,
+ * in a log line of {@code key=value} pairs.
+ * <p>Since the header must be sent before the body, it is added when the response body is first
+ * requested, and reports the phases completed up to that point, along with their total ({@code
+ * app}). The {@code write} phase is reported only in the log line, which is written when the
+ * request completes.</p>
+ */
+@Component
+@Profile("service")
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+  private static final String SERVER_TIMING_HEADER = "Server-Timing";
+  private static final String APP_METRIC = "app";
+  private static final String METRIC_FORMAT = "%s;dur=%.3f";
+  private static final String LOG_FORMAT = "%s=%.3f %s_count=%d";
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  private static final Logger timingLogger = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+  private final boolean enabled;
+  private final double sampleRate;
+  private final boolean log;
+
+  public ServerTimingFilter(ServerTimingConfiguration configuration) {
+    enabled = configuration.isEnabled() && configuration.getSampleRate() > 0;
+    sampleRate = configuration.getSampleRate();
+    log = configuration.isLog();
+  }
+
+  @Override
+  protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+    return !enabled
+        || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate);
+  }
+
+  @Override
+  protected void doFilterInternal(@NonNull HttpServletRequest request,
+      @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
+      throws ServletException, IOException {
+    RequestPhases phases = RequestPhases.start();
+    TimedResponse timedResponse = new TimedResponse(response, phases);
+    try {
+      filterChain.doFilter(request, timedResponse);
+    } finally {
+      phases.stop();
+      RequestPhases.clear();
+      timedResponse.finish();
+      if (log && timingLogger.isInfoEnabled()) {
+        timingLogger.info(logLine(request, response, phases));
+      }
+    }
+  }
+
+  private static String header(RequestPhases phases) {
+    StringBuilder builder = new StringBuilder();
+    for (Phase phase : Phase.values()) {
+      if (phases.getCount(phase) > 0) {
+        builder
+            .append(String.format(Locale.ROOT, METRIC_FORMAT,
+                phase.getMetricName(), phases.getDuration(phase) / NANOS_PER_MILLI))
+            .append(", ");
+      }
+    }
+    return builder
+        .append(String.format(Locale.ROOT, METRIC_FORMAT, APP_METRIC,
+            phases.getElapsed() / NANOS_PER_MILLI))
+        .toString();
+  }
+
+  private static String logLine(
+      HttpServletRequest request, HttpServletResponse response, RequestPhases phases) {
+    StringBuilder builder = new StringBuilder()
+        .append("method=").append(request.getMethod())
+        .append(" uri=").append(request.getRequestURI())
+        .append(" status=").append(response.getStatus())
+        .append(String.format(Locale.ROOT, " total=%.3f", phases.getElapsed() / NANOS_PER_MILLI));
+    for (Phase phase : Phase.values()) {
+      builder
+          .append(' ')
+          .append(String.format(Locale.ROOT, LOG_FORMAT, phase.getMetricName(),
+              phases.getDuration(phase) / NANOS_PER_MILLI, phase.getMetricName(),
+              phases.getCount(phase)));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Adds the {@code Server-Timing} header just before the body (if any) is written, and measures
+   * the {@link Phase#WRITE} phase from that point until the request completes.
+   */
+  private static class TimedResponse extends HttpServletResponseWrapper {
+
+    private final RequestPhases phases;
+    private long writeStart;
+
+    private TimedResponse(HttpServletResponse response, RequestPhases phases) {
+      super(response);
+      this.phases = phases;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      beginWrite();
+      return super.getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      beginWrite();
+      return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      beginWrite();
+      super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      beginWrite();
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      beginWrite();
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      beginWrite();
+      super.sendRedirect(location);
+    }
+
+    private void beginWrite() {
+      if (writeStart == 0) {
+        writeStart = System.nanoTime();
+        if (!isCommitted()) {
+          setHeader(SERVER_TIMING_HEADER, header(phases));
+        }
+      }
+    }
+
+    private void finish() {
+      if (writeStart != 0) {
+        phases.record(Phase.WRITE, System.nanoTime() - writeStart);
+      } else if (!isCommitted()) {
+        setHeader(SERVER_TIMING_HEADER, header(phases));
+      }
+    }
+
+  }
+
+}
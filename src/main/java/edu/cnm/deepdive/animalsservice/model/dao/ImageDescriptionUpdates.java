@@ -0,0 +1,26 @@
+package edu.cnm.deepdive.animalsservice.model.dao;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.lang.NonNull;
+
+/**
+ * Repository fragment (implemented by {@link ImageDescriptionUpdatesImpl}) updating the descriptions
+ * of many images, each to its own value, with a single statement.
+ */
+public interface ImageDescriptionUpdates {
+
+  /**
+   * Sets the description of each image whose external key is a key of {@code descriptions} to the
+   * corresponding value, and its update timestamp to {@code updated}, in a single {@code UPDATE}
+   * statement. As with a {@code @Modifying} query, the persistence context is flushed before, and
+   * cleared after, the statement is executed.
+   *
+   * @param descriptions New descriptions (which may be {@code null}), by external key.
+   * @param updated      Update timestamp.
+   * @return Number of images updated.
+   */
+  int updateDescriptions(@NonNull Map<UUID, String> descriptions, @NonNull Date updated);
+
+}
@@ -0,0 +1,58 @@
+package edu.cnm.deepdive.animalsservice.model.dao;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import org.springframework.lang.NonNull;
+
+/**
+ * Implements {@link ImageDescriptionUpdates} with a JPQL bulk update, in which a simple {@code
+ * CASE} expression on the external key selects the new description of each image. The number of
+ * {@code WHEN} branches is rounded up to a power of two (by repeating the last branch), so that the
+ * number of distinct statements (and of query plans cached for them) stays small.
+ */
+class ImageDescriptionUpdatesImpl implements ImageDescriptionUpdates {
+
+  private static final String UPDATE_PREFIX = "UPDATE Image i SET i.description = CASE i.externalKey";
+  private static final String WHEN_FORMAT = " WHEN :key%1$d THEN CAST(:description%1$d AS string)";
+  private static final String UPDATE_SUFFIX =
+      " ELSE i.description END, i.updated = :updated WHERE i.externalKey IN :keys";
+
+  private final EntityManager entityManager;
+
+  ImageDescriptionUpdatesImpl(EntityManager entityManager) {
+    this.entityManager = entityManager;
+  }
+
+  @Override
+  public int updateDescriptions(@NonNull Map<UUID, String> descriptions, @NonNull Date updated) {
+    if (descriptions.isEmpty()) {
+      return 0;
+    }
+    List<UUID> keys = new ArrayList<>(descriptions.keySet());
+    int branches = Math.max(1, Integer.highestOneBit(keys.size() - 1) << 1);
+    StringBuilder builder = new StringBuilder(UPDATE_PREFIX);
+    for (int i = 0; i < branches; i++) {
+      builder.append(String.format(WHEN_FORMAT, i));
+    }
+    builder.append(UPDATE_SUFFIX);
+    entityManager.flush();
+    Query query = entityManager.createQuery(builder.toString());
+    for (int i = 0; i < branches; i++) {
+      UUID key = keys.get(Math.min(i, keys.size() - 1));
+      query.setParameter("key" + i, key);
+      query.setParameter("description" + i, descriptions.get(key));
+    }
+    int count = query
+        .setParameter("updated", updated)
+        .setParameter("keys", keys)
+        .executeUpdate();
+    entityManager.clear();
+    return count;
+  }
+
+}
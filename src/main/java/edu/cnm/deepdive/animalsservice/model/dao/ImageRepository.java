@@ -1,27 +1,178 @@
 package edu.cnm.deepdive.animalsservice.model.dao;
 
 import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.util.Streamable;
 import org.springframework.expression.spel.ast.OpAnd;
 import org.springframework.stereotype.Repository;
 
-public interface ImageRepository extends JpaRepository<Image, UUID> {
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface ImageRepository extends JpaRepository<Image, UUID>, ImageDescriptionUpdates {
 
   Optional<Image> findByExternalKey(UUID key);
 
+  List<Image> findAllByExternalKeyIn(Collection<UUID> keys);
+
+  List<ImageReference> findReferencesByExternalKeyIn(Collection<UUID> keys);
+
+  @Query("SELECT i.id AS id, i.externalKey AS externalKey, i.path AS path, i.title AS title "
+      + "FROM Image i ORDER BY i.id ASC")
+  List<ImageReference> findFirstReferences(Pageable pageable);
+
+  @Query("SELECT i.id AS id, i.externalKey AS externalKey, i.path AS path, i.title AS title "
+      + "FROM Image i WHERE i.id > :id ORDER BY i.id ASC")
+  List<ImageReference> findReferencesAfter(@Param("id") UUID id, Pageable pageable);
+
+  @Query("SELECT i.id AS id, i.externalKey AS externalKey, i.path AS path, i.title AS title "
+      + "FROM Image i WHERE i.created < :cutoff ORDER BY i.id ASC")
+  List<ImageReference> findFirstReferencesCreatedBefore(
+      @Param("cutoff") Date cutoff, Pageable pageable);
+
+  @Query("SELECT i.id AS id, i.externalKey AS externalKey, i.path AS path, i.title AS title "
+      + "FROM Image i WHERE i.created < :cutoff AND i.id > :id ORDER BY i.id ASC")
+  List<ImageReference> findReferencesCreatedBeforeAfter(
+      @Param("cutoff") Date cutoff, @Param("id") UUID id, Pageable pageable);
+
+  @Query("SELECT i.id AS id, i.externalKey AS externalKey, i.path AS path, i.title AS title "
+      + "FROM Image i WHERE i.contentLength IS NULL ORDER BY i.id ASC")
+  List<ImageReference> findFirstUnmeasuredReferences(Pageable pageable);
+
+  @Query("SELECT i.id AS id, i.externalKey AS externalKey, i.path AS path, i.title AS title "
+      + "FROM Image i WHERE i.contentLength IS NULL AND i.id > :id ORDER BY i.id ASC")
+  List<ImageReference> findUnmeasuredReferencesAfter(@Param("id") UUID id, Pageable pageable);
+
+  /**
+   * Relocates the content of an image, by replacing its path, if unchanged, with a reference to a
+   * copy of the same content. {@link Image} maps its path as not updatable, so this bulk update is
+   * the only way to change it; it is used only by storage migrations, which must discard cached
+   * metadata of relocated images before deleting their content at the old path.
+   */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Image i SET i.path = :target WHERE i.id = :id AND i.path = :source")
+  int updatePath(@Param("id") UUID id, @Param("source") String source, @Param("target") String target);
+
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("UPDATE Image i SET i.contentLength = :length, i.digest = :digest "
+      + "WHERE i.id = :id AND i.path = :path AND i.contentLength IS NULL")
+  int updateMeasure(@Param("id") UUID id, @Param("path") String path,
+      @Param("length") long length, @Param("digest") String digest);
+
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("DELETE FROM Image i WHERE i.externalKey IN :keys")
+  int deleteAllByExternalKeys(@Param("keys") Collection<UUID> keys);
+
   Optional<Image> findFirstById(UUID id);
 
   Iterable<Image> getAllByOrderByTitleAsc();
 
   Streamable<Image> findAllByOrderByTitleAsc();
 
-  Streamable<Image> findAllByTitleContainsOrderByTitleAsc(String titleFragment);
+  @Query("SELECT i FROM Image i WHERE LOWER(i.title) LIKE CONCAT('%', LOWER(:fragment), '%') "
+      + "ORDER BY i.title ASC")
+  Streamable<Image> findAllByTitleContainsIgnoreCaseOrderByTitleAsc(
+      @Param("fragment") String titleFragment);
+
+  @Query("SELECT i FROM Image i WHERE LOWER(i.description) LIKE CONCAT('%', LOWER(:fragment), '%') "
+      + "ORDER BY i.title ASC")
+  Streamable<Image> findAllByDescriptionContainsIgnoreCaseOrderByTitleAsc(
+      @Param("fragment") String descriptionFragment);
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  Stream<ImageText> streamAllTextBy();
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  Stream<Image> streamAllByOrderByTitleAsc();
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query("SELECT i FROM Image i WHERE LOWER(i.title) LIKE CONCAT('%', LOWER(:fragment), '%') "
+      + "ORDER BY i.title ASC")
+  Stream<Image> streamAllByTitleContainsIgnoreCaseOrderByTitleAsc(
+      @Param("fragment") String titleFragment);
+
+  @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+  @Query("SELECT i FROM Image i WHERE LOWER(i.description) LIKE CONCAT('%', LOWER(:fragment), '%') "
+      + "AND (i.title IS NULL OR LOWER(i.title) NOT LIKE CONCAT('%', LOWER(:fragment), '%')) "
+      + "ORDER BY i.title ASC")
+  Stream<Image> streamAllByDescriptionOnlyContainsIgnoreCase(
+      @Param("fragment") String descriptionFragment);
+
+  @Query("SELECT i FROM Image i WHERE i.title >= '' ORDER BY i.title ASC, i.id ASC")
+  List<Image> findFirstByTitle(Pageable pageable);
+
+  @Query("SELECT i FROM Image i WHERE i.title >= :title AND (i.title > :title OR i.id > :id) "
+      + "ORDER BY i.title ASC, i.id ASC")
+  List<Image> findAfterByTitle(@Param("title") String title, @Param("id") UUID id, Pageable pageable);
+
+  @Query("SELECT i FROM Image i WHERE i.title <= :title AND (i.title < :title OR i.id < :id) "
+      + "AND i.title >= '' ORDER BY i.title DESC, i.id DESC")
+  List<Image> findBeforeByTitle(@Param("title") String title, @Param("id") UUID id, Pageable pageable);
+
+  @Query("SELECT i FROM Image i WHERE i.title >= '' ORDER BY i.title DESC, i.id DESC")
+  List<Image> findLastByTitle(Pageable pageable);
+
+  @Query("SELECT i FROM Image i WHERE i.title IS NULL ORDER BY i.title ASC, i.id ASC")
+  List<Image> findFirstUntitled(Pageable pageable);
+
+  @Query("SELECT i FROM Image i WHERE i.title IS NULL AND i.id > :id ORDER BY i.title ASC, i.id ASC")
+  List<Image> findAfterUntitled(@Param("id") UUID id, Pageable pageable);
+
+  @Query("SELECT i FROM Image i WHERE i.title IS NULL AND i.id < :id "
+      + "ORDER BY i.title DESC, i.id DESC")
+  List<Image> findBeforeUntitled(@Param("id") UUID id, Pageable pageable);
+
+  @Query("SELECT i FROM Image i ORDER BY i.created ASC, i.id ASC")
+  List<Image> findFirstByCreated(Pageable pageable);
+
+  @Query("SELECT i FROM Image i WHERE i.created >= :created AND (i.created > :created OR i.id > :id) "
+      + "ORDER BY i.created ASC, i.id ASC")
+  List<Image> findAfterByCreated(@Param("created") Date created, @Param("id") UUID id, Pageable pageable);
+
+  @Query("SELECT i FROM Image i WHERE i.created <= :created AND (i.created < :created OR i.id < :id) "
+      + "ORDER BY i.created DESC, i.id DESC")
+  List<Image> findBeforeByCreated(@Param("created") Date created, @Param("id") UUID id, Pageable pageable);
+
+  /**
+   * Projection of the identifying properties of an {@link Image}, along with its title, used for
+   * bulk operations.
+   */
+  interface ImageReference {
+
+    UUID getId();
+
+    UUID getExternalKey();
+
+    String getPath();
+
+    String getTitle();
+
+  }
+
+  /**
+   * Projection of the text properties of an {@link Image}, used to build search indices.
+   */
+  interface ImageText {
+
+    UUID getId();
+
+    String getTitle();
+
+    String getDescription();
 
-  Streamable<Image> findAllByDescriptionContainsOrderByTitleAsc(String descriptionFragment);
+  }
 
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package edu.cnm.deepdive.animalsservice.model.dao;
+
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link ImageRepository}, used by the {@code reactive} profile to read
+ * and write {@link Image} rows over R2DBC. Derived queries have the same names (and semantics) as
+ * their JPA counterparts; the rest are written in SQL against the schema generated by Hibernate.
+ * Limits are passed explicitly, rather than as {@link org.springframework.data.domain.Pageable}
+ * instances.
+ */
+public interface ReactiveImageRepository extends R2dbcRepository<Image, UUID> {
+
+  Mono<Image> findByExternalKey(UUID key);
+
+  Flux<Image> findAllByExternalKeyIn(Collection<UUID> keys);
+
+  Flux<Image> findAllByOrderByTitleAsc();
+
+  @Query("SELECT * FROM image WHERE LOWER(title) LIKE CONCAT('%', LOWER(:fragment), '%') "
+      + "ORDER BY title ASC")
+  Flux<Image> findAllByTitleContainsIgnoreCaseOrderByTitleAsc(
+      @Param("fragment") String titleFragment);
+
+  @Query("SELECT * FROM image WHERE LOWER(description) LIKE CONCAT('%', LOWER(:fragment), '%') "
+      + "AND (title IS NULL OR LOWER(title) NOT LIKE CONCAT('%', LOWER(:fragment), '%')) "
+      + "ORDER BY title ASC")
+  Flux<Image> findAllByDescriptionOnlyContainsIgnoreCase(
+      @Param("fragment") String descriptionFragment);
+
+  @Modifying
+  @Query("UPDATE image SET description = :description, updated = :updated "
+      + "WHERE external_key = :key")
+  Mono<Integer> updateDescription(@Param("key") UUID key,
+      @Param("description") String description, @Param("updated") LocalDateTime updated);
+
+  @Modifying
+  @Query("DELETE FROM image WHERE external_key = :key")
+  Mono<Integer> deleteByExternalKey(@Param("key") UUID key);
+
+  @Query("SELECT * FROM image WHERE title >= '' ORDER BY title ASC, image_id ASC LIMIT :limit")
+  Flux<Image> findFirstByTitle(@Param("limit") int limit);
+
+  @Query("SELECT * FROM image WHERE title >= :title AND (title > :title OR image_id > :id) "
+      + "ORDER BY title ASC, image_id ASC LIMIT :limit")
+  Flux<Image> findAfterByTitle(
+      @Param("title") String title, @Param("id") UUID id, @Param("limit") int limit);
+
+  @Query("SELECT * FROM image WHERE title <= :title AND (title < :title OR image_id < :id) "
+      + "AND title >= '' ORDER BY title DESC, image_id DESC LIMIT :limit")
+  Flux<Image> findBeforeByTitle(
+      @Param("title") String title, @Param("id") UUID id, @Param("limit") int limit);
+
+  @Query("SELECT * FROM image WHERE title >= '' ORDER BY title DESC, image_id DESC LIMIT :limit")
+  Flux<Image> findLastByTitle(@Param("limit") int limit);
+
+  @Query("SELECT * FROM image WHERE title IS NULL ORDER BY title ASC, image_id ASC LIMIT :limit")
+  Flux<Image> findFirstUntitled(@Param("limit") int limit);
+
+  @Query("SELECT * FROM image WHERE title IS NULL AND image_id > :id "
+      + "ORDER BY title ASC, image_id ASC LIMIT :limit")
+  Flux<Image> findAfterUntitled(@Param("id") UUID id, @Param("limit") int limit);
+
+  @Query("SELECT * FROM image WHERE title IS NULL AND image_id < :id "
+      + "ORDER BY title DESC, image_id DESC LIMIT :limit")
+  Flux<Image> findBeforeUntitled(@Param("id") UUID id, @Param("limit") int limit);
+
+  @Query("SELECT * FROM image ORDER BY created ASC, image_id ASC LIMIT :limit")
+  Flux<Image> findFirstByCreated(@Param("limit") int limit);
+
+  @Query("SELECT * FROM image WHERE created >= :created AND (created > :created OR image_id > :id) "
+      + "ORDER BY created ASC, image_id ASC LIMIT :limit")
+  Flux<Image> findAfterByCreated(
+      @Param("created") LocalDateTime created, @Param("id") UUID id, @Param("limit") int limit);
+
+  @Query("SELECT * FROM image WHERE created <= :created AND (created < :created OR image_id < :id) "
+      + "ORDER BY created DESC, image_id DESC LIMIT :limit")
+  Flux<Image> findBeforeByCreated(
+      @Param("created") LocalDateTime created, @Param("id") UUID id, @Param("limit") int limit);
+
+}
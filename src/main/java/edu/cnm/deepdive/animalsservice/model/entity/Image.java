@@ -46,8 +46,10 @@ import org.springframework.stereotype.Component;
 @Entity
 @Table(
     indexes = {
-        @Index(columnList = "created"),
-        @Index(columnList = "title")
+        @Index(name = "IDX_image_created_id", columnList = "created, image_id"),
+        @Index(name = "IDX_image_created_id_desc", columnList = "created DESC, image_id DESC"),
+        @Index(name = "IDX_image_title_id", columnList = "title, image_id"),
+        @Index(name = "IDX_image_title_id_desc", columnList = "title DESC, image_id DESC")
     }
 )
 @JsonInclude(Include.NON_NULL)
@@ -62,6 +64,8 @@ public class Image {
   @Id
   @GeneratedValue
   @Column(name = "image_id", updatable = false, columnDefinition = "UUID")
+  @org.springframework.data.annotation.Id
+  @org.springframework.data.relational.core.mapping.Column("image_id")
   @JsonIgnore
   private UUID id;
 
@@ -106,6 +110,13 @@ public class Image {
   @Column(nullable = false, updatable = false)
   private String contentType;
 
+  @JsonIgnore
+  private Long contentLength;
+
+  @JsonIgnore
+  @Column(length = 64)
+  private String digest;
+
   @NonNull
   public UUID getId() {
     return id;
@@ -121,6 +132,11 @@ public class Image {
     return created;
   }
 
+  /**
+   * Returns the opaque reference to the stored content of this image. The content never changes,
+   * but storage migrations may relocate it; see {@link
+   * edu.cnm.deepdive.animalsservice.model.dao.ImageRepository#updatePath(UUID, String, String)}.
+   */
   @NonNull
   public String getPath() {
     return path;
@@ -171,6 +187,30 @@ public class Image {
     this.contentType = contentType;
   }
 
+  /**
+   * Returns the length of the content of this image, in bytes, as recorded when the content was
+   * stored; {@code null} if not yet recorded.
+   */
+  public Long getContentLength() {
+    return contentLength;
+  }
+
+  public void setContentLength(Long contentLength) {
+    this.contentLength = contentLength;
+  }
+
+  /**
+   * Returns the lowercase hexadecimal SHA-256 digest of the content of this image, as recorded when
+   * the content was stored; {@code null} if not yet recorded.
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  public void setDigest(String digest) {
+    this.digest = digest;
+  }
+
   @Override
   public int hashCode() {
     //noinspection ConstantConditions
@@ -0,0 +1,271 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository.ImageReference;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Applies a {@link Transfer} to images, while the service continues to run. Images are processed
+ * in batches, in primary key order; for each batch:
+ * <ol>
+ *   <li>the transfer of each image is prepared, outside of any transaction;</li>
+ *   <li>the prepared transfers are recorded in a single transaction, each (typically) conditional
+ *   on the image being unchanged;</li>
+ *   <li>after commit, cached metadata of all updated images is discarded, and transfers that
+ *   weren't recorded are discarded;</li>
+ *   <li>once a grace period has passed, recorded transfers are retired.</li>
+ * </ol>
+ * The grace period should be at least the time to live of the metadata cache of {@link
+ * ImageService}: a lookup whose query was answered before commit may still cache the old metadata
+ * just after it was discarded, and a download may have resolved it shortly before. Retirements
+ * still pending at {@link #shutdown()} are performed immediately, since no more requests are served
+ * by then. An interrupted migration can simply be restarted; a retirement lost by a crash leaves an
+ * orphan, but no image refers to it.
+ */
+class BatchMigration {
+
+  private final ImageRepository imageRepository;
+  private final ImageService imageService;
+  private final TransactionTemplate transactionTemplate;
+  private final int batchSize;
+  private final long gracePeriod;
+  private final ScheduledExecutorService retirer;
+  private final Set<Runnable> pending = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Initializes this instance to retire recorded transfers without delay.
+   */
+  BatchMigration(ImageRepository imageRepository, ImageService imageService,
+      TransactionTemplate transactionTemplate, int batchSize) {
+    this(imageRepository, imageService, transactionTemplate, batchSize, Duration.ZERO, null);
+  }
+
+  /**
+   * Initializes this instance to retire recorded transfers after {@code gracePeriod}, on a thread
+   * named with {@code threadNamePrefix}.
+   */
+  BatchMigration(ImageRepository imageRepository, ImageService imageService,
+      TransactionTemplate transactionTemplate, int batchSize, @NonNull Duration gracePeriod,
+      @Nullable String threadNamePrefix) {
+    this.imageRepository = imageRepository;
+    this.imageService = imageService;
+    this.transactionTemplate = transactionTemplate;
+    this.batchSize = batchSize;
+    this.gracePeriod = gracePeriod.toMillis();
+    if (this.gracePeriod > 0) {
+      CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+      threadFactory.setDaemon(true);
+      retirer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    } else {
+      retirer = null;
+    }
+  }
+
+  /**
+   * Applies {@code transfer} to all images (in primary key order) whose references are returned by
+   * {@code first} and {@code after}.
+   *
+   * @param first    Returns the first batch of references.
+   * @param after    Returns the batch of references following the specified primary key.
+   * @param transfer Transfer applied to each image.
+   * @param <T>      Type of a prepared transfer.
+   * @return Number of images whose transfers were recorded.
+   */
+  <T> int run(Function<Pageable, List<ImageReference>> first,
+      BiFunction<UUID, Pageable, List<ImageReference>> after, Transfer<T> transfer) {
+    Pageable pageable = PageRequest.of(0, batchSize);
+    int recorded = 0;
+    List<ImageReference> batch = first.apply(pageable);
+    while (!batch.isEmpty()) {
+      recorded += run(batch, transfer);
+      ImageReference last = batch.get(batch.size() - 1);
+      batch = after.apply(last.getId(), pageable);
+    }
+    return recorded;
+  }
+
+  /**
+   * Moves the file of each image to the path returned by {@code target} (if any), and updates the
+   * path of the image, conditional on it being unchanged. A recorded move is retired by deleting
+   * the file at the old path, after the grace period; an unrecorded one is discarded by deleting
+   * the file at the new path.
+   *
+   * @param storageService Service storing both the old and new files.
+   * @param target         Copies (or links) the file at the specified path to a new location,
+   *                       returning the new path, or {@code null} if the file needn't be moved.
+   * @return Number of images moved.
+   */
+  int move(StorageService storageService, PathTarget target) {
+    return run(imageRepository::findFirstReferences, imageRepository::findReferencesAfter,
+        new Transfer<String>() {
+
+          @Override
+          public String prepare(ImageReference reference) throws IOException {
+            return target.prepare(reference.getPath());
+          }
+
+          @Override
+          public boolean record(ImageReference reference, String prepared) {
+            return imageRepository.updatePath(reference.getId(), reference.getPath(), prepared) > 0;
+          }
+
+          @Override
+          public void discard(ImageReference reference, String prepared) throws IOException {
+            storageService.delete(prepared);
+          }
+
+          @Override
+          public void retire(ImageReference reference, String prepared) throws IOException {
+            storageService.delete(reference.getPath());
+          }
+
+        });
+  }
+
+  /**
+   * Stops the thread retiring recorded transfers, first retiring those still pending.
+   */
+  void shutdown() {
+    if (retirer != null) {
+      retirer.shutdownNow();
+      List.copyOf(pending).forEach(this::retire);
+    }
+  }
+
+  private <T> int run(List<ImageReference> batch, Transfer<T> transfer) {
+    List<ImageReference> references = new ArrayList<>();
+    List<T> prepared = new ArrayList<>();
+    for (ImageReference reference : batch) {
+      try {
+        T item = transfer.prepare(reference);
+        if (item != null) {
+          references.add(reference);
+          prepared.add(item);
+        }
+      } catch (IOException e) {
+        // Content is missing or unreadable; leave the image as is.
+      }
+    }
+    if (references.isEmpty()) {
+      return 0;
+    }
+    boolean[] recorded = transactionTemplate.execute((status) -> {
+      boolean[] updated = new boolean[references.size()];
+      for (int i = 0; i < updated.length; i++) {
+        updated[i] = transfer.record(references.get(i), prepared.get(i));
+      }
+      return updated;
+    });
+    List<Runnable> retirements = new ArrayList<>();
+    for (int i = 0; i < recorded.length; i++) {
+      ImageReference reference = references.get(i);
+      T item = prepared.get(i);
+      if (recorded[i]) {
+        imageService.evict(reference.getExternalKey());
+        retirements.add(() -> quietly(() -> transfer.retire(reference, item)));
+      } else {
+        quietly(() -> transfer.discard(reference, item));
+      }
+    }
+    Runnable retirement = () -> retirements.forEach(Runnable::run);
+    if (retirer != null) {
+      pending.add(retirement);
+      retirer.schedule(() -> retire(retirement), gracePeriod, TimeUnit.MILLISECONDS);
+    } else {
+      retirement.run();
+    }
+    return retirements.size();
+  }
+
+  private void retire(Runnable retirement) {
+    if (pending.remove(retirement)) {
+      retirement.run();
+    }
+  }
+
+  private static void quietly(Action action) {
+    try {
+      action.run();
+    } catch (IOException ignored) {
+      // Orphaned content is harmless; the image references exactly one of the two.
+    }
+  }
+
+  /**
+   * Transfer of the content (or metadata derived from it) of a single image.
+   *
+   * @param <T> Type of a prepared transfer.
+   */
+  interface Transfer<T> {
+
+    /**
+     * Prepares the transfer for the specified image, outside of any transaction.
+     *
+     * @return Prepared transfer, or {@code null} if the image needs none.
+     * @throws IOException If the stored content can't be read (the image is then skipped).
+     */
+    @Nullable
+    T prepare(ImageReference reference) throws IOException;
+
+    /**
+     * Records a prepared transfer in the database, within the transaction of its batch.
+     *
+     * @return {@code true} if the image was updated; {@code false} if it was changed or deleted
+     * since {@code reference} was read.
+     */
+    boolean record(ImageReference reference, T prepared);
+
+    /**
+     * Releases the resources of a prepared transfer that wasn't recorded.
+     */
+    default void discard(ImageReference reference, T prepared) throws IOException {
+    }
+
+    /**
+     * Releases the resources superseded by a recorded transfer, once the grace period has passed.
+     */
+    default void retire(ImageReference reference, T prepared) throws IOException {
+    }
+
+  }
+
+  /**
+   * Copies (or links) a stored file to a new path, for {@link #move(StorageService, PathTarget)}.
+   */
+  @FunctionalInterface
+  interface PathTarget {
+
+    /**
+     * Returns the new path of the file at {@code source}, to which it has been copied or linked, or
+     * {@code null} if it needn't be moved.
+     */
+    @Nullable
+    String prepare(String source) throws IOException;
+
+  }
+
+  @FunctionalInterface
+  private interface Action {
+
+    void run() throws IOException;
+
+  }
+
+}
@@ -0,0 +1,162 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * {@link org.springframework.core.io.Resource} backed by a read-only {@link ByteBuffer} holding the
+ * complete content of a stored item. Every read operates on an independent view of the buffer, so
+ * a single instance may be read concurrently. The channel returned by {@link #readableChannel()}
+ * is a {@link SeekableByteChannel}, so that a range of the content can be read without reading
+ * what precedes it.
+ * <p>Subclasses whose buffer may be reused once they are no longer readable (see {@link
+ * ContentCache}) override {@link #readableChannel()} to hold the buffer until the channel is
+ * closed; content must therefore be read only through a channel or stream, and these must be
+ * closed.</p>
+ */
+public class BufferResource extends AbstractResource {
+
+  private final ByteBuffer buffer;
+  private final long lastModified;
+  private final String description;
+
+  BufferResource(@NonNull ByteBuffer buffer, long lastModified, @NonNull String description) {
+    this.buffer = buffer.asReadOnlyBuffer();
+    this.lastModified = lastModified;
+    this.description = description;
+  }
+
+  @Override
+  public long contentLength() {
+    return buffer.capacity();
+  }
+
+  @Override
+  public long lastModified() {
+    return lastModified;
+  }
+
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  @NonNull
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return Channels.newInputStream(readableChannel());
+  }
+
+  @NonNull
+  @Override
+  public ReadableByteChannel readableChannel() throws IOException {
+    return new BufferChannel(buffer.duplicate(), null);
+  }
+
+  @NonNull
+  @Override
+  public String getDescription() {
+    return description;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other;
+  }
+
+  @Override
+  public int hashCode() {
+    return System.identityHashCode(this);
+  }
+
+  /**
+   * Read-only {@link SeekableByteChannel} over a view of a buffer, optionally running an action
+   * when first closed.
+   */
+  static class BufferChannel implements SeekableByteChannel {
+
+    private final ByteBuffer view;
+    private final Runnable onClose;
+    private boolean open = true;
+
+    BufferChannel(@NonNull ByteBuffer view, @Nullable Runnable onClose) {
+      this.view = view;
+      this.onClose = onClose;
+    }
+
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+      ensureOpen();
+      if (!view.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(view.remaining(), target.remaining());
+      ByteBuffer slice = view.slice();
+      slice.limit(count);
+      target.put(slice);
+      view.position(view.position() + count);
+      return count;
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+      ensureOpen();
+      return view.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+      ensureOpen();
+      view.position((int) Math.min(newPosition, view.limit()));
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      ensureOpen();
+      return view.limit();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() {
+      if (open) {
+        open = false;
+        if (onClose != null) {
+          onClose.run();
+        }
+      }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+    }
+
+  }
+
+}
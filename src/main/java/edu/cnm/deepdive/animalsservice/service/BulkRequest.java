@@ -0,0 +1,82 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Body of a bulk mutation request: a list of description updates, and a list of external keys of
+ * images to delete. Updates are applied before deletes.
+ */
+public class BulkRequest {
+
+  private List<DescriptionUpdate> updates = new ArrayList<>();
+  private List<UUID> deletes = new ArrayList<>();
+
+  /**
+   * Returns the description updates to apply.
+   */
+  public List<DescriptionUpdate> getUpdates() {
+    return updates;
+  }
+
+  /**
+   * Sets the description updates to apply.
+   */
+  public void setUpdates(List<DescriptionUpdate> updates) {
+    this.updates = (updates != null) ? updates : new ArrayList<>();
+  }
+
+  /**
+   * Returns the external keys of the images to delete.
+   */
+  public List<UUID> getDeletes() {
+    return deletes;
+  }
+
+  /**
+   * Sets the external keys of the images to delete.
+   */
+  public void setDeletes(List<UUID> deletes) {
+    this.deletes = (deletes != null) ? deletes : new ArrayList<>();
+  }
+
+  /**
+   * Replacement of the description of a single image, identified by its external key.
+   */
+  public static class DescriptionUpdate {
+
+    private UUID id;
+    private String description;
+
+    /**
+     * Returns the external key of the image to update.
+     */
+    public UUID getId() {
+      return id;
+    }
+
+    /**
+     * Sets the external key of the image to update.
+     */
+    public void setId(UUID id) {
+      this.id = id;
+    }
+
+    /**
+     * Returns the new description (may be {@code null}).
+     */
+    public String getDescription() {
+      return description;
+    }
+
+    /**
+     * Sets the new description (may be {@code null}).
+     */
+    public void setDescription(String description) {
+      this.description = description;
+    }
+
+  }
+
+}
@@ -0,0 +1,59 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.util.UUID;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+
+/**
+ * Outcome of one item of a bulk mutation request: the operation, the external key of the image it
+ * targeted, and an HTTP status code summarizing the outcome.
+ */
+@JsonPropertyOrder({"operation", "id", "status"})
+public class BulkResult {
+
+  private final Operation operation;
+  private final UUID id;
+  private final HttpStatus status;
+
+  BulkResult(@NonNull Operation operation, UUID id, @NonNull HttpStatus status) {
+    this.operation = operation;
+    this.id = id;
+    this.status = status;
+  }
+
+  /**
+   * Returns the operation requested for the item.
+   */
+  @NonNull
+  public Operation getOperation() {
+    return operation;
+  }
+
+  /**
+   * Returns the external key of the targeted image.
+   */
+  public UUID getId() {
+    return id;
+  }
+
+  /**
+   * Returns the HTTP status code summarizing the outcome for the item.
+   */
+  public int getStatus() {
+    return status.value();
+  }
+
+  /**
+   * Operations supported in a bulk mutation request.
+   */
+  public enum Operation {
+
+    /** Replacement of the description of an image. */
+    UPDATE,
+    /** Deletion of an image, along with its stored content. */
+    DELETE
+
+  }
+
+}
@@ -0,0 +1,279 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Implements {@link StorageService} as a content-addressed file store: each distinct content is
+ * written once, to a file named for the SHA-256 digest of that content, and identical uploads share
+ * the same reference. A reference count, kept in a small sidecar file next to each blob, ensures that
+ * {@link #delete(String)} removes the blob only when the last reference to it is deleted.
+ * References previously issued by {@link LocalFilesystemStorageService} (in the same upload
+ * directory) remain readable and deletable.
+ */
+@Service
+@Profile("service")
+@ConditionalOnProperty(prefix = "upload", name = "storage", havingValue = "content-addressed")
+public class ContentAddressedStorageService implements StorageService {
+
+  private static final String BLOB_ROOT = "sha256";
+  private static final String REFERENCE_PATH_DELIMITER = "/";
+  private static final String REFERENCE_COUNT_SUFFIX = ".refs";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final int FAN_OUT_LEVELS = 2;
+  private static final int FAN_OUT_WIDTH = 2;
+  private static final int LOCK_STRIPES = 64;
+  private static final String INVALID_REFERENCE_COUNT_FORMAT =
+      "Invalid reference count in %s: \"%s\"";
+
+  private final Path uploadDirectory;
+  private final Set<String> whitelist;
+  private final List<MediaType> contentTypes;
+  private final long maxContentLength;
+  private final Lock[] locks;
+
+  public ContentAddressedStorageService(
+      UploadConfiguration uploadConfiguration, ApplicationHome applicationHome) {
+    String uploadPath = uploadConfiguration.getDirectory();
+    uploadDirectory = uploadConfiguration.isApplicationHome()
+        ? applicationHome.getDir().toPath().resolve(uploadPath)
+        : Path.of(uploadPath);
+    whitelist = uploadConfiguration.getWhitelist();
+    contentTypes = whitelist.stream()
+        .map(MediaType::valueOf)
+        .collect(Collectors.toList());
+    maxContentLength = uploadConfiguration.getMaxContentLength().toBytes();
+    locks = IntStream.range(0, LOCK_STRIPES)
+        .mapToObj((i) -> new ReentrantLock())
+        .toArray(Lock[]::new);
+  }
+
+  @PostConstruct
+  private void initUploads() {
+    //noinspection ResultOfMethodCallIgnored
+    uploadDirectory.resolve(BLOB_ROOT).toFile().mkdirs();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>Since the container has already received (and, if large, spooled) the file, its content is
+   * first read only to compute the digest; if a blob with the same digest is already present, only
+   * the reference count of the existing blob is updated, and nothing is written. Otherwise, the file
+   * is transferred (moved, if the container spooled it to disk) to a temporary file, which is then
+   * renamed to the blob.</p>
+   */
+  @Override
+  public StoredContent store(MultipartFile file)
+      throws IOException, HttpMediaTypeNotAcceptableException {
+    if (!whitelist.contains(file.getContentType())) {
+      throw new HttpMediaTypeNotAcceptableException(contentTypes);
+    }
+    long length;
+    String digest;
+    try (
+        InputStream input = file.getInputStream();
+        MeasuringInputStream measuringInput = new MeasuringInputStream(input, -1)
+    ) {
+      measuringInput.transferTo(OutputStream.nullOutputStream());
+      length = measuringInput.getCount();
+      digest = measuringInput.getHexDigest();
+    }
+    String reference = getReference(digest);
+    if (addReference(reference)) {
+      return new StoredContent(reference, length, digest);
+    }
+    Path temp = Files.createTempFile(uploadDirectory.resolve(BLOB_ROOT), BLOB_ROOT, TEMP_FILE_SUFFIX);
+    try {
+      file.transferTo(temp.toFile());
+      return commit(temp, length, digest);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>Since the stream can be read only once, and the digest isn't known until it has been read,
+   * the content is written to a temporary file as the digest is computed; if a blob with the same
+   * digest is already present, the temporary file is discarded, and only the reference count of the
+   * existing blob is updated.</p>
+   */
+  @Override
+  public StoredContent store(InputStream input, String contentType, String filename)
+      throws IOException, HttpMediaTypeNotAcceptableException {
+    if (!whitelist.contains(contentType)) {
+      throw new HttpMediaTypeNotAcceptableException(contentTypes);
+    }
+    Path temp = Files.createTempFile(uploadDirectory.resolve(BLOB_ROOT), BLOB_ROOT, TEMP_FILE_SUFFIX);
+    try {
+      MeasuringInputStream measuringInput = new MeasuringInputStream(input, maxContentLength);
+      Files.copy(measuringInput, temp, StandardCopyOption.REPLACE_EXISTING);
+      return commit(temp, measuringInput.getCount(), measuringInput.getHexDigest());
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  @Override
+  public Resource retrieve(String reference) throws IOException {
+    return new FileSystemResource(uploadDirectory.resolve(reference));
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>The reference count of the blob is decremented; the blob itself is removed only when no
+   * references to it remain.</p>
+   */
+  @Override
+  public boolean delete(String reference)
+      throws IOException, UnsupportedOperationException, SecurityException {
+    Path blob;
+    try {
+      blob = uploadDirectory.resolve(reference);
+    } catch (InvalidPathException e) {
+      throw new IOException(e);
+    }
+    Lock lock = lockFor(reference);
+    lock.lock();
+    try {
+      if (!Files.exists(blob)) {
+        return false;
+      }
+      int count = readReferenceCount(blob) - 1;
+      if (count > 0) {
+        writeReferenceCount(blob, count);
+      } else {
+        Files.deleteIfExists(referenceCountFile(blob));
+        Files.delete(blob);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds a reference to the blob for {@code reference}, if that blob is present.
+   *
+   * @return {@code true} if the blob is present (and its reference count was incremented).
+   */
+  private boolean addReference(String reference) throws IOException {
+    Path blob = uploadDirectory.resolve(reference);
+    Lock lock = lockFor(reference);
+    lock.lock();
+    try {
+      if (!Files.exists(blob)) {
+        return false;
+      }
+      writeReferenceCount(blob, readReferenceCount(blob) + 1);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Makes the content in {@code temp} (with the specified length and digest) the blob for that
+   * digest, or&mdash;if a blob with the same digest has been stored in the meantime&mdash;adds a
+   * reference to that blob instead, leaving {@code temp} to be discarded by the caller.
+   */
+  private StoredContent commit(Path temp, long length, String digest) throws IOException {
+    String reference = getReference(digest);
+    Path blob = uploadDirectory.resolve(reference);
+    Lock lock = lockFor(reference);
+    lock.lock();
+    try {
+      if (Files.exists(blob)) {
+        writeReferenceCount(blob, readReferenceCount(blob) + 1);
+      } else {
+        Files.createDirectories(blob.getParent());
+        Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+        writeReferenceCount(blob, 1);
+      }
+    } finally {
+      lock.unlock();
+    }
+    return new StoredContent(reference, length, digest);
+  }
+
+  @NonNull
+  private String getReference(@NonNull String digest) {
+    StringBuilder builder = new StringBuilder(BLOB_ROOT);
+    for (int level = 0; level < FAN_OUT_LEVELS; level++) {
+      builder
+          .append(REFERENCE_PATH_DELIMITER)
+          .append(digest, level * FAN_OUT_WIDTH, (level + 1) * FAN_OUT_WIDTH);
+    }
+    return builder
+        .append(REFERENCE_PATH_DELIMITER)
+        .append(digest)
+        .toString();
+  }
+
+  private Lock lockFor(String reference) {
+    return locks[Math.floorMod(reference.hashCode(), LOCK_STRIPES)];
+  }
+
+  private Path referenceCountFile(Path blob) {
+    return blob.resolveSibling(blob.getFileName() + REFERENCE_COUNT_SUFFIX);
+  }
+
+  private int readReferenceCount(Path blob) throws IOException {
+    Path countFile = referenceCountFile(blob);
+    if (!Files.exists(countFile)) {
+      return 1; // A blob without a count (e.g. a legacy upload) has exactly one reference.
+    }
+    String content = Files.readString(countFile, StandardCharsets.US_ASCII).trim();
+    try {
+      int count = Integer.parseInt(content);
+      if (count <= 0) {
+        throw new NumberFormatException();
+      }
+      return count;
+    } catch (NumberFormatException e) {
+      throw new IOException(String.format(INVALID_REFERENCE_COUNT_FORMAT, countFile, content), e);
+    }
+  }
+
+  /**
+   * Replaces the reference count of {@code blob} atomically: the count is written to a temporary
+   * file in the same directory, which is then renamed over the count file, so that a crash never
+   * leaves a truncated count behind.
+   */
+  private void writeReferenceCount(Path blob, int count) throws IOException {
+    Path countFile = referenceCountFile(blob);
+    Path temp = Files.createTempFile(
+        countFile.getParent(), countFile.getFileName().toString(), TEMP_FILE_SUFFIX);
+    try {
+      Files.writeString(temp, Integer.toString(count), StandardCharsets.US_ASCII);
+      Files.move(temp, countFile, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+}
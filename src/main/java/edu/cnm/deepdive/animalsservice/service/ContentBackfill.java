@@ -0,0 +1,124 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.BackfillProperties;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository.ImageReference;
+import edu.cnm.deepdive.animalsservice.service.BatchMigration.Transfer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Records the content length and digest of images stored before these were recorded at ingest, so
+ * that their content (and {@code HEAD} requests for it) can be described without reading the file
+ * store. Images are processed in batches, in primary key order; for each batch, the stored content
+ * of each image is read (once, directly from the {@link StorageService}, bypassing the {@link
+ * ContentCache}) to compute its length and digest, and the images are then updated in a single
+ * transaction, each conditional on its path being unchanged and its length still unrecorded. Cached
+ * metadata of updated images is discarded after commit. Images whose content can't be read are
+ * left as they are, and are served as before; an interrupted backfill can simply be restarted.
+ * <p>With tiering enabled, reading demoted content promotes it to the hot tier; it is demoted again
+ * by a later scan, once idle.</p>
+ */
+@Component
+@Profile("service")
+public class ContentBackfill {
+
+  private static final Logger logger = LoggerFactory.getLogger(ContentBackfill.class);
+
+  private final StorageService storageService;
+  private final ImageRepository imageRepository;
+  private final BatchMigration migration;
+  private final ExecutorService backfiller;
+  private final boolean enabled;
+
+  public ContentBackfill(StorageService storageService, ImageRepository imageRepository,
+      ImageService imageService, TransactionTemplate transactionTemplate,
+      UploadConfiguration uploadConfiguration) {
+    this.storageService = storageService;
+    this.imageRepository = imageRepository;
+    BackfillProperties properties = uploadConfiguration.getBackfill();
+    enabled = properties.isEnabled();
+    migration = new BatchMigration(
+        imageRepository, imageService, transactionTemplate, properties.getBatchSize());
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("content-backfill-");
+    threadFactory.setDaemon(true);
+    backfiller = Executors.newSingleThreadExecutor(threadFactory);
+  }
+
+  /**
+   * Starts the backfill in the background (on a dedicated thread, so that it doesn't hold up batch
+   * uploads), if enabled by the {@code upload.backfill.enabled} property.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (enabled) {
+      backfiller.execute(() -> {
+        try {
+          backfill();
+        } catch (RuntimeException e) {
+          logger.warn("Content backfill failed; it will be resumed at the next startup", e);
+        }
+      });
+    }
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    backfiller.shutdownNow();
+  }
+
+  /**
+   * Records the content length and digest of all images for which they haven't been recorded.
+   *
+   * @return Number of images updated.
+   */
+  public int backfill() {
+    return migration.run(imageRepository::findFirstUnmeasuredReferences,
+        imageRepository::findUnmeasuredReferencesAfter, new Transfer<Measure>() {
+
+          @Override
+          public Measure prepare(ImageReference reference) throws IOException {
+            try (
+                InputStream input = storageService.retrieve(reference.getPath()).getInputStream();
+                MeasuringInputStream measuringInput = new MeasuringInputStream(input, -1)
+            ) {
+              measuringInput.transferTo(OutputStream.nullOutputStream());
+              return new Measure(measuringInput.getCount(), measuringInput.getHexDigest());
+            }
+          }
+
+          @Override
+          public boolean record(ImageReference reference, Measure prepared) {
+            return imageRepository.updateMeasure(reference.getId(), reference.getPath(),
+                prepared.length, prepared.digest) > 0;
+          }
+
+        });
+  }
+
+  private static class Measure {
+
+    private final long length;
+    private final String digest;
+
+    private Measure(long length, String digest) {
+      this.length = length;
+      this.digest = digest;
+    }
+
+  }
+
+}
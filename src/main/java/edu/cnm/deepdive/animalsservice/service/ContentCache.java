@@ -0,0 +1,271 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import edu.cnm.deepdive.animalsservice.configuration.CacheConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.CacheConfiguration.ContentProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the content of small, frequently retrieved items from a {@link StorageService} off the
+ * heap, up to a configured total size. Content is admitted only after it has been retrieved a
+ * configured number of times, so that items read once don't displace popular ones; among admitted
+ * items, Caffeine's frequency-based eviction policy applies. Cached content is returned as a {@link
+ * BufferResource}. Concurrent misses for the same admitted item share a single read.
+ * <p>All cached content is held in a single {@link OffHeapArena}, a direct buffer of {@code
+ * cache.content.maxSize} bytes allocated when the cache is created; each entry occupies a slice of
+ * it, which is returned to the arena when the entry is evicted (or invalidated) and no reader still
+ * holds it. Since the arena is never released or grown, it bounds the memory used by the cache
+ * exactly, without adding to the heap or depending on when evicted buffers are garbage collected;
+ * the JVM's direct memory limit ({@code -XX:MaxDirectMemorySize}) must allow for it. When no free
+ * slice is large enough for newly admitted content, the coldest entries are evicted until one is;
+ * if their slices are still being read, the content is served from the file store instead.</p>
+ * <p>A reader holds the slice of an entry from the time it opens a channel (or stream) on the
+ * returned resource until it closes it; a reader that opens a channel after the entry was evicted
+ * reads from the file store instead.</p>
+ * <p>Stored content is never modified in place, so entries need only be invalidated when the
+ * corresponding reference is deleted. The cache is disabled by default ({@code
+ * cache.content.enabled}); the file store, through the operating system's page cache, usually
+ * serves repeated reads nearly as well.</p>
+ */
+@Component
+@Profile("service")
+public class ContentCache implements MeterBinder {
+
+  private static final int FREQUENCY_SAMPLE_FACTOR = 10;
+  private static final int RECLAIM_BATCH_SIZE = 8;
+  private static final int MAX_RECLAIM_BATCHES = 4;
+  private static final String CACHE_NAME = "content";
+  private static final String CACHE_WEIGHT_METER = "cache.weight";
+  private static final String ARENA_AVAILABLE_METER = "cache.arena.available";
+
+  private final boolean enabled;
+  private final long maxEntrySize;
+  private final int admissionThreshold;
+  private final OffHeapArena arena;
+  private final AsyncCache<String, CachedContent> asyncBuffers;
+  private final Cache<String, CachedContent> buffers;
+  private final Cache<String, Integer> frequencies;
+
+  public ContentCache(CacheConfiguration cacheConfiguration) {
+    ContentProperties properties = cacheConfiguration.getContent();
+    enabled = properties.isEnabled();
+    int maxSize = (int) Math.min(properties.getMaxSize().toBytes(), Integer.MAX_VALUE);
+    maxEntrySize = Math.min(properties.getMaxEntrySize().toBytes(), maxSize);
+    admissionThreshold = properties.getAdmissionThreshold();
+    arena = new OffHeapArena(enabled ? maxSize : 0);
+    asyncBuffers = Caffeine.newBuilder()
+        .maximumWeight(maxSize)
+        .weigher((String reference, CachedContent content) -> content.length)
+        .removalListener((String reference, CachedContent content, RemovalCause cause) -> {
+          if (content != null) {
+            content.release();
+          }
+        })
+        .executor(Runnable::run)
+        .recordStats()
+        .buildAsync();
+    buffers = asyncBuffers.synchronous();
+    frequencies = Caffeine.newBuilder()
+        .maximumSize(Math.max(1, FREQUENCY_SAMPLE_FACTOR * (long) maxSize / Math.max(1, maxEntrySize)))
+        .build();
+  }
+
+  /**
+   * Returns the content with the specified {@code reference}, from the cache if present; otherwise,
+   * the content is retrieved from {@code storageService}, and admitted to the cache if it is small
+   * enough and has been retrieved often enough.
+   *
+   * @param reference      Opaque reference to stored content.
+   * @param storageService Source of content not in the cache.
+   * @return {@link Resource} containing the content.
+   * @throws IOException If the content can't be read from {@code storageService}.
+   */
+  @NonNull
+  public Resource get(@NonNull String reference, @NonNull StorageService storageService)
+      throws IOException {
+    if (!enabled) {
+      return storageService.retrieve(reference);
+    }
+    CompletableFuture<CachedContent> cached = asyncBuffers.getIfPresent(reference);
+    if (cached == null) {
+      int frequency = frequencies.asMap().merge(reference, 1, Integer::sum);
+      if (frequency < admissionThreshold) {
+        return storageService.retrieve(reference);
+      }
+      CompletableFuture<CachedContent> load = new CompletableFuture<>();
+      cached = asyncBuffers.get(reference, (key, executor) -> load);
+      if (cached == load) {
+        try {
+          load.complete(load(reference, storageService));
+        } catch (IOException | RuntimeException e) {
+          load.completeExceptionally(e);
+          throw e;
+        }
+        frequencies.invalidate(reference);
+      }
+    }
+    CachedContent content;
+    try {
+      content = cached.join();
+    } catch (CompletionException e) {
+      content = null; // Failed in another thread; it will be reported by the read below.
+    }
+    return (content != null) ? content : storageService.retrieve(reference);
+  }
+
+  /**
+   * Reads the content of {@code reference} into a new slice of the arena; returns {@code null} (so
+   * that nothing is cached) if the content doesn't exist, is too large, changes while it is read,
+   * or can't be given a slice.
+   */
+  @Nullable
+  private CachedContent load(String reference, StorageService storageService) throws IOException {
+    Resource resource = storageService.retrieve(reference);
+    if (!resource.exists()) {
+      return null;
+    }
+    long length = resource.contentLength();
+    if (length > maxEntrySize) {
+      return null;
+    }
+    int offset = allocate((int) length);
+    if (offset < 0) {
+      return null;
+    }
+    ByteBuffer buffer = arena.slice(offset, (int) length);
+    boolean loaded = false;
+    try (ReadableByteChannel channel = resource.readableChannel()) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          return null;
+        }
+      }
+      loaded = true;
+    } finally {
+      if (!loaded) {
+        arena.release(offset, (int) length);
+      }
+    }
+    return new CachedContent(reference, storageService, offset, (int) length,
+        resource.lastModified(), "Cached content [" + resource.getDescription() + "]");
+  }
+
+  private int allocate(int length) {
+    int offset = arena.allocate(length);
+    for (int batch = 0; offset < 0 && batch < MAX_RECLAIM_BATCHES; batch++) {
+      Map<String, CachedContent> coldest = buffers.policy().eviction()
+          .map((eviction) -> eviction.coldest(RECLAIM_BATCH_SIZE))
+          .orElse(Map.of());
+      if (coldest.isEmpty()) {
+        break;
+      }
+      coldest.forEach((key, content) -> buffers.asMap().remove(key, content));
+      offset = arena.allocate(length);
+    }
+    return offset;
+  }
+
+  /**
+   * Removes any cached content with the specified {@code reference}.
+   */
+  public void invalidate(@NonNull String reference) {
+    buffers.invalidate(reference);
+    frequencies.invalidate(reference);
+  }
+
+  /**
+   * Returns a snapshot of the hit, miss, and eviction statistics of this cache.
+   */
+  public CacheStats getStats() {
+    return buffers.stats();
+  }
+
+  /**
+   * Registers the hit, miss, and eviction meters of this cache, tagged with {@code cache=content},
+   * along with the total size (in bytes) of the cached content, and that of the free space in its
+   * arena (which may be less than the difference, while evicted content is still being read).
+   */
+  @Override
+  public void bindTo(@NonNull MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, buffers, CACHE_NAME);
+    Gauge.builder(CACHE_WEIGHT_METER, buffers, (cache) -> cache.policy().eviction()
+            .map((eviction) -> eviction.weightedSize().orElse(0))
+            .orElse(0L))
+        .tag("cache", CACHE_NAME)
+        .baseUnit(BaseUnits.BYTES)
+        .register(registry);
+    Gauge.builder(ARENA_AVAILABLE_METER, arena, OffHeapArena::getAvailable)
+        .tag("cache", CACHE_NAME)
+        .baseUnit(BaseUnits.BYTES)
+        .register(registry);
+  }
+
+  /**
+   * Content cached in a slice of the arena. The cache holds one reference to the slice, and each
+   * open channel another; the slice is returned to the arena when the last is released.
+   */
+  private class CachedContent extends BufferResource {
+
+    private final String reference;
+    private final StorageService storageService;
+    private final int offset;
+    private final int length;
+    private final AtomicInteger holders = new AtomicInteger(1);
+
+    private CachedContent(String reference, StorageService storageService, int offset, int length,
+        long lastModified, String description) {
+      super(arena.slice(offset, length), lastModified, description);
+      this.reference = reference;
+      this.storageService = storageService;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @NonNull
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+      return hold()
+          ? new BufferChannel(arena.slice(offset, length).asReadOnlyBuffer(), this::release)
+          : storageService.retrieve(reference).readableChannel();
+    }
+
+    private boolean hold() {
+      int current;
+      do {
+        current = holders.get();
+        if (current == 0) {
+          return false;
+        }
+      } while (!holders.compareAndSet(current, current + 1));
+      return true;
+    }
+
+    private void release() {
+      if (holders.decrementAndGet() == 0) {
+        arena.release(offset, length);
+      }
+    }
+
+  }
+
+}
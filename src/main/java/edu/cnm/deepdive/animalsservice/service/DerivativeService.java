@@ -0,0 +1,412 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.DerivativeProperties;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Generates scaled derivatives (e.g. thumbnails) of stored images, and caches them on disk in a
+ * directory alongside the file store. The total size of the cache is bounded; when the bound is
+ * exceeded, the least recently used derivatives are evicted. Images with transparency (PNG and GIF)
+ * are scaled to PNG derivatives; all others, to JPEG.
+ * <p>The dimensions declared in the header of an original are checked before it is decoded, so that
+ * a small file declaring a huge raster (a decompression bomb) is never decoded. Concurrent requests
+ * for the same uncached derivative share a single generation.</p>
+ */
+@Service
+@Profile("service")
+public class DerivativeService {
+
+  private static final String JPEG_FORMAT = "jpeg";
+  private static final String PNG_FORMAT = "png";
+  private static final String DERIVATIVE_NAME_FORMAT = "%dx%d-%s.%s";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final Set<String> TRANSPARENT_CONTENT_TYPES =
+      Set.of(MediaType.IMAGE_PNG_VALUE, MediaType.IMAGE_GIF_VALUE);
+
+  private final StorageService storageService;
+  private final Path cacheDirectory;
+  private final long maxSize;
+  private final int maxDimension;
+  private final long maxSourcePixels;
+  private final Map<Path, CompletableFuture<Optional<Resource>>> generations =
+      new ConcurrentHashMap<>();
+  private final Map<Path, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Path, Set<Path>> entriesByImage = new HashMap<>();
+  private final Lock lock = new ReentrantLock();
+
+  private long totalSize;
+
+  public DerivativeService(StorageService storageService,
+      UploadConfiguration uploadConfiguration, ApplicationHome applicationHome) {
+    this.storageService = storageService;
+    DerivativeProperties derivativeProperties = uploadConfiguration.getDerivatives();
+    String uploadPath = uploadConfiguration.getDirectory();
+    Path uploadDirectory = uploadConfiguration.isApplicationHome()
+        ? applicationHome.getDir().toPath().resolve(uploadPath)
+        : Path.of(uploadPath);
+    cacheDirectory = uploadDirectory.resolve(derivativeProperties.getDirectory());
+    maxSize = derivativeProperties.getMaxSize().toBytes();
+    maxDimension = derivativeProperties.getMaxDimension();
+    maxSourcePixels = derivativeProperties.getMaxSourcePixels();
+  }
+
+  @PostConstruct
+  private void loadCache() throws IOException {
+    Files.createDirectories(cacheDirectory);
+    try (Stream<Path> files = Files.walk(cacheDirectory)) {
+      Map<Path, BasicFileAttributes> existing = files
+          .filter(Files::isRegularFile)
+          .collect(Collectors.toMap((path) -> path, this::readAttributes));
+      lock.lock();
+      try {
+        existing.entrySet().stream()
+            .sorted(Comparator.comparing((entry) -> entry.getValue().lastModifiedTime()))
+            .forEach((entry) -> {
+              if (entry.getKey().toString().endsWith(TEMP_FILE_SUFFIX)) {
+                entry.getKey().toFile().delete();
+              } else {
+                add(entry.getKey(), entry.getValue().size());
+              }
+            });
+        evict(null);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the MIME type of the derivatives generated for images of the specified type.
+   *
+   * @param contentType MIME type of the original image.
+   * @return MIME type of derivatives.
+   */
+  @NonNull
+  public String getContentType(@NonNull String contentType) {
+    return TRANSPARENT_CONTENT_TYPES.contains(contentType)
+        ? MediaType.IMAGE_PNG_VALUE
+        : MediaType.IMAGE_JPEG_VALUE;
+  }
+
+  /**
+   * Returns a scaled derivative of the content of {@code image}, generating and caching it if
+   * necessary. If only one of {@code width} and {@code height} is specified, the other is computed
+   * from the aspect ratio of the original. Derivatives are never larger than the original in either
+   * dimension.
+   *
+   * @param image  Stored image.
+   * @param width  Requested width, in pixels (may be {@code null}).
+   * @param height Requested height, in pixels (may be {@code null}).
+   * @param fit    Policy for fitting the original into the requested dimensions.
+   * @return {@link Optional} containing the derivative, or empty if the original can't be decoded,
+   * or is larger than {@code upload.derivatives.maxSourcePixels}.
+   * @throws IOException              If the original can't be read, or the derivative can't be
+   *                                  written.
+   * @throws IllegalArgumentException If the requested dimensions are out of range.
+   */
+  public Optional<Resource> get(@NonNull Image image, @Nullable Integer width,
+      @Nullable Integer height, @NonNull Fit fit) throws IOException {
+    if ((width == null && height == null) || outOfRange(width) || outOfRange(height)) {
+      throw new IllegalArgumentException();
+    }
+    String format = MediaType.IMAGE_PNG_VALUE.equals(getContentType(image.getContentType()))
+        ? PNG_FORMAT
+        : JPEG_FORMAT;
+    Path imageDirectory = cacheDirectory.resolve(image.getExternalKey().toString());
+    Path derivative = imageDirectory.resolve(String.format(DERIVATIVE_NAME_FORMAT,
+        (width != null) ? width : 0, (height != null) ? height : 0,
+        fit.name().toLowerCase(), format));
+    if (isCached(derivative)) {
+      return Optional.of(new FileSystemResource(derivative));
+    }
+    CompletableFuture<Optional<Resource>> generation = new CompletableFuture<>();
+    CompletableFuture<Optional<Resource>> pending = generations.putIfAbsent(derivative, generation);
+    if (pending != null) {
+      return await(pending);
+    }
+    try {
+      Optional<Resource> result = generate(image, imageDirectory, derivative, width, height, fit,
+          format);
+      generation.complete(result);
+      return result;
+    } catch (Throwable e) {
+      generation.completeExceptionally(e);
+      throw e;
+    } finally {
+      generations.remove(derivative, generation);
+    }
+  }
+
+  private Optional<Resource> generate(Image image, Path imageDirectory, Path derivative,
+      Integer width, Integer height, Fit fit, String format) throws IOException {
+    if (isCached(derivative)) { // Generated by a request that completed since the first check.
+      return Optional.of(new FileSystemResource(derivative));
+    }
+    BufferedImage original;
+    try (InputStream input = storageService.retrieve(image.getPath()).getInputStream()) {
+      original = decode(input);
+    }
+    if (original == null) {
+      return Optional.empty();
+    }
+    BufferedImage scaled = scale(original, width, height, fit, PNG_FORMAT.equals(format));
+    Files.createDirectories(imageDirectory);
+    Path temp = Files.createTempFile(imageDirectory, derivative.getFileName().toString(),
+        TEMP_FILE_SUFFIX);
+    try {
+      if (!ImageIO.write(scaled, format, temp.toFile())) {
+        return Optional.empty();
+      }
+      Files.move(temp, derivative, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    lock.lock();
+    try {
+      add(derivative, Files.size(derivative));
+      evict(derivative);
+    } finally {
+      lock.unlock();
+    }
+    return Optional.of(new FileSystemResource(derivative));
+  }
+
+  /**
+   * Removes all cached derivatives of the image with the specified external key.
+   *
+   * @param externalKey External key of the image.
+   * @throws IOException If the cached derivatives can't be deleted.
+   */
+  public void invalidate(@NonNull UUID externalKey) throws IOException {
+    Path imageDirectory = cacheDirectory.resolve(externalKey.toString());
+    lock.lock();
+    try {
+      Set<Path> derivatives = entriesByImage.remove(imageDirectory);
+      if (derivatives != null) {
+        for (Path derivative : derivatives) {
+          Long size = entries.remove(derivative);
+          totalSize -= (size != null) ? size : 0;
+          Files.deleteIfExists(derivative);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (Files.isDirectory(imageDirectory)) {
+      try (Stream<Path> files = Files.list(imageDirectory)) {
+        for (Iterator<Path> iter = files.iterator(); iter.hasNext(); ) {
+          Files.deleteIfExists(iter.next());
+        }
+      }
+      Files.deleteIfExists(imageDirectory);
+    }
+  }
+
+  private boolean isCached(Path derivative) {
+    lock.lock();
+    try {
+      return entries.get(derivative) != null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Optional<Resource> await(CompletableFuture<Optional<Resource>> pending)
+      throws IOException {
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Decodes the first image read from {@code input}, unless its declared dimensions exceed {@link
+   * #maxSourcePixels}; returns {@code null} if the image is too large, or can't be decoded.
+   */
+  @Nullable
+  private BufferedImage decode(InputStream input) throws IOException {
+    try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+      Iterator<ImageReader> readers = (stream != null)
+          ? ImageIO.getImageReaders(stream)
+          : Collections.emptyIterator();
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(stream, true, true);
+        if ((long) reader.getWidth(0) * reader.getHeight(0) > maxSourcePixels) {
+          return null;
+        }
+        return reader.read(0);
+      } catch (IIOException e) {
+        return null; // Malformed content; served unscaled, as when no reader is found.
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private boolean outOfRange(Integer dimension) {
+    return dimension != null && (dimension <= 0 || dimension > maxDimension);
+  }
+
+  private BufferedImage scale(BufferedImage original, Integer width, Integer height, Fit fit,
+      boolean transparent) {
+    int originalWidth = original.getWidth();
+    int originalHeight = original.getHeight();
+    int targetWidth;
+    int targetHeight;
+    int sourceX = 0;
+    int sourceY = 0;
+    int sourceWidth = originalWidth;
+    int sourceHeight = originalHeight;
+    if (width == null) {
+      targetHeight = Math.min(height, originalHeight);
+      targetWidth = Math.max(1, Math.round((float) originalWidth * targetHeight / originalHeight));
+    } else if (height == null) {
+      targetWidth = Math.min(width, originalWidth);
+      targetHeight = Math.max(1, Math.round((float) originalHeight * targetWidth / originalWidth));
+    } else {
+      targetWidth = Math.min(width, originalWidth);
+      targetHeight = Math.min(height, originalHeight);
+      double scaleX = (double) targetWidth / originalWidth;
+      double scaleY = (double) targetHeight / originalHeight;
+      switch (fit) {
+        case CONTAIN:
+          double scale = Math.min(scaleX, scaleY);
+          targetWidth = Math.max(1, (int) Math.round(originalWidth * scale));
+          targetHeight = Math.max(1, (int) Math.round(originalHeight * scale));
+          break;
+        case COVER:
+          if (scaleX > scaleY) {
+            sourceHeight = Math.max(1, (int) Math.round(targetHeight / scaleX));
+            sourceY = (originalHeight - sourceHeight) / 2;
+          } else {
+            sourceWidth = Math.max(1, (int) Math.round(targetWidth / scaleY));
+            sourceX = (originalWidth - sourceWidth) / 2;
+          }
+          break;
+        case FILL:
+        default:
+          break;
+      }
+    }
+    BufferedImage scaled = new BufferedImage(targetWidth, targetHeight,
+        transparent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = scaled.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+          RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      graphics.drawImage(original, 0, 0, targetWidth, targetHeight,
+          sourceX, sourceY, sourceX + sourceWidth, sourceY + sourceHeight, null);
+    } finally {
+      graphics.dispose();
+    }
+    return scaled;
+  }
+
+  private void add(Path derivative, long size) {
+    Long previous = entries.put(derivative, size);
+    totalSize += size - ((previous != null) ? previous : 0);
+    entriesByImage
+        .computeIfAbsent(derivative.getParent(), (key) -> new HashSet<>())
+        .add(derivative);
+  }
+
+  private void evict(@Nullable Path retained) {
+    Iterator<Map.Entry<Path, Long>> iter = entries.entrySet().iterator();
+    while (totalSize > maxSize && iter.hasNext()) {
+      Map.Entry<Path, Long> eldest = iter.next();
+      Path derivative = eldest.getKey();
+      if (!derivative.equals(retained)) {
+        iter.remove();
+        totalSize -= eldest.getValue();
+        Set<Path> siblings = entriesByImage.get(derivative.getParent());
+        if (siblings != null && siblings.remove(derivative) && siblings.isEmpty()) {
+          entriesByImage.remove(derivative.getParent());
+        }
+        //noinspection ResultOfMethodCallIgnored
+        derivative.toFile().delete();
+      }
+    }
+  }
+
+  private BasicFileAttributes readAttributes(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Policies for fitting an original image into the requested dimensions of a derivative.
+   */
+  public enum Fit {
+
+    /** Scale uniformly so that the entire image fits within the requested dimensions. */
+    CONTAIN,
+    /** Scale uniformly so that the image covers the requested dimensions, cropping the excess. */
+    COVER,
+    /** Scale non-uniformly to the requested dimensions. */
+    FILL
+
+  }
+
+}
@@ -0,0 +1,43 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonView;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.view.ImageView;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.lang.NonNull;
+
+/**
+ * Result of resolving a list of external keys to {@link Image} instances: the images found, in the
+ * order their keys were requested, and the requested keys for which no image exists.
+ */
+@JsonView(ImageView.Partial.class)
+@JsonPropertyOrder({"images", "missing"})
+public class ImageLookup {
+
+  private final List<Image> images;
+  private final List<UUID> missing;
+
+  ImageLookup(@NonNull List<Image> images, @NonNull List<UUID> missing) {
+    this.images = images;
+    this.missing = missing;
+  }
+
+  /**
+   * Returns the images found, in request order.
+   */
+  @NonNull
+  public List<Image> getImages() {
+    return images;
+  }
+
+  /**
+   * Returns the requested keys for which no image exists, in request order.
+   */
+  @NonNull
+  public List<UUID> getMissing() {
+    return missing;
+  }
+
+}
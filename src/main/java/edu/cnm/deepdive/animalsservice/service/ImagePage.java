@@ -0,0 +1,147 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.exception.InvalidQueryException;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * One page of a keyset-paginated listing of {@link Image} instances, along with the opaque cursors
+ * (if any) selecting the adjacent pages.
+ */
+public class ImagePage {
+
+  private final List<Image> images;
+  private final String next;
+  private final String previous;
+
+  ImagePage(@NonNull List<Image> images, @Nullable String next, @Nullable String previous) {
+    this.images = images;
+    this.next = next;
+    this.previous = previous;
+  }
+
+  /**
+   * Returns the images in this page.
+   */
+  @NonNull
+  public List<Image> getImages() {
+    return images;
+  }
+
+  /**
+   * Returns the cursor selecting the following page, or {@code null} if this is the last page.
+   */
+  @Nullable
+  public String getNext() {
+    return next;
+  }
+
+  /**
+   * Returns the cursor selecting the preceding page, or {@code null} if this is the first page.
+   */
+  @Nullable
+  public String getPrevious() {
+    return previous;
+  }
+
+  /**
+   * Keys on which a listing may be ordered. Ties are broken by the primary key, so that every
+   * position in the listing is uniquely identified by a (key, primary key) pair.
+   */
+  public enum Order {
+
+    /** Ascending by title. */
+    TITLE,
+    /** Ascending by creation timestamp. */
+    CREATED
+
+  }
+
+  /**
+   * Position in a listing, encoded as an opaque string for use in query parameters. A cursor
+   * identifies the listing order, the direction of paging, and the (key, primary key) pair of the
+   * image at the boundary of the adjacent page. The title of an untitled image is encoded by
+   * omitting the key entirely, to distinguish it from an empty title.
+   */
+  static class Cursor {
+
+    private static final String DELIMITER = "\n";
+    private static final String INVALID_CURSOR_MESSAGE = "Invalid cursor";
+
+    private final Order order;
+    private final boolean forward;
+    private final String title;
+    private final Date created;
+    private final UUID id;
+
+    private Cursor(Order order, boolean forward, String title, Date created, UUID id) {
+      this.order = order;
+      this.forward = forward;
+      this.title = title;
+      this.created = created;
+      this.id = id;
+    }
+
+    static Cursor after(Order order, Image image) {
+      return new Cursor(order, true, image.getTitle(), image.getCreated(), image.getId());
+    }
+
+    static Cursor before(Order order, Image image) {
+      return new Cursor(order, false, image.getTitle(), image.getCreated(), image.getId());
+    }
+
+    static Cursor decode(@NonNull String encoded) {
+      try {
+        String[] parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8)
+            .split(DELIMITER, 4);
+        Order order = Order.valueOf(parts[0]);
+        boolean forward = Boolean.parseBoolean(parts[1]);
+        UUID id = UUID.fromString(parts[2]);
+        return (order == Order.TITLE)
+            ? new Cursor(order, forward, (parts.length > 3) ? parts[3] : null, null, id)
+            : new Cursor(order, forward, null, new Date(Long.parseLong(parts[3])), id);
+      } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+        throw new InvalidQueryException(INVALID_CURSOR_MESSAGE, e);
+      }
+    }
+
+    String encode() {
+      String raw = String.join(DELIMITER, order.name(), Boolean.toString(forward), id.toString());
+      if (order == Order.CREATED) {
+        raw += DELIMITER + created.getTime();
+      } else if (title != null) {
+        raw += DELIMITER + title;
+      }
+      return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    Order getOrder() {
+      return order;
+    }
+
+    boolean isForward() {
+      return forward;
+    }
+
+    @Nullable
+    String getTitle() {
+      return title;
+    }
+
+    Date getCreated() {
+      return created;
+    }
+
+    UUID getId() {
+      return id;
+    }
+
+  }
+
+}
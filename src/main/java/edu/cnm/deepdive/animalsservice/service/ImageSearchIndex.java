@@ -0,0 +1,297 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository.ImageText;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintains an in-memory trigram index over the titles and descriptions of all {@link Image}
+ * instances, answering case-insensitive substring queries without scanning the database. Matches
+ * are ranked with title matches ahead of description-only matches; within each group, results are
+ * ordered by title, and then by id.
+ * <p>Each indexed image is assigned an ordinal, and the posting list of each trigram is an
+ * ascending array of ordinals. An update to an image retires its ordinal and assigns a new one;
+ * retired ordinals are skipped by queries, and purged when they outnumber the live ones.</p>
+ */
+@Component
+@Profile("service")
+public class ImageSearchIndex {
+
+  private static final int TRIGRAM_LENGTH = 3;
+  private static final int MIN_PURGE_THRESHOLD = 1024;
+  private static final Comparator<Document> DOCUMENT_ORDER = Comparator
+      .comparing((Document document) -> document.title, Comparator.nullsLast(Comparator.naturalOrder()))
+      .thenComparing((document) -> document.id);
+
+  private final ImageRepository imageRepository;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<UUID, Integer> ordinals = new HashMap<>();
+  private final List<Document> documents = new ArrayList<>();
+  private final Map<Long, Postings> postings = new HashMap<>();
+
+  private volatile boolean ready;
+
+  public ImageSearchIndex(ImageRepository imageRepository) {
+    this.imageRepository = imageRepository;
+  }
+
+  /**
+   * Rebuilds the index from the contents of the database. Until this completes, {@link #isReady()}
+   * returns {@code false}.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void rebuild() {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      ordinals.clear();
+      documents.clear();
+      postings.clear();
+      try (Stream<ImageText> texts = imageRepository.streamAllTextBy()) {
+        texts.forEach((text) -> add(text.getId(), text.getTitle(), text.getDescription()));
+      }
+      ready = true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a flag indicating whether the index has been built, and can be used for queries.
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * Adds {@code image} to the index, replacing any previously indexed title and description.
+   *
+   * @param image Persisted {@link Image}.
+   */
+  public void put(@NonNull Image image) {
+    put(image.getId(), image.getTitle(), image.getDescription());
+  }
+
+  /**
+   * Adds the image with the specified id to the index, replacing any previously indexed title and
+   * description.
+   *
+   * @param id          Primary key of the image.
+   * @param title       Title of the image (may be {@code null}).
+   * @param description Description of the image (may be {@code null}).
+   */
+  public void put(@NonNull UUID id, @Nullable String title, @Nullable String description) {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      retire(id);
+      add(id, title, description);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Removes the image with the specified id from the index.
+   *
+   * @param id Primary key of the image.
+   */
+  public void remove(@NonNull UUID id) {
+    Lock writeLock = lock.writeLock();
+    writeLock.lock();
+    try {
+      retire(id);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the ids of all indexed images whose title or description contains {@code fragment}
+   * (ignoring case), in rank order.
+   *
+   * @param fragment Substring to search for.
+   * @return Ranked ids of matching images.
+   */
+  @NonNull
+  public List<UUID> search(@NonNull String fragment) {
+    String key = fragment.toLowerCase(Locale.ROOT);
+    Lock readLock = lock.readLock();
+    readLock.lock();
+    try {
+      List<Document> titleMatches = new ArrayList<>();
+      List<Document> descriptionMatches = new ArrayList<>();
+      int[] candidates = candidates(key);
+      for (int i = 0; i < (candidates != null ? candidates.length : documents.size()); i++) {
+        Document document = documents.get(candidates != null ? candidates[i] : i);
+        if (document != null) {
+          if (document.titleKey != null && document.titleKey.contains(key)) {
+            titleMatches.add(document);
+          } else if (document.descriptionKey != null && document.descriptionKey.contains(key)) {
+            descriptionMatches.add(document);
+          }
+        }
+      }
+      titleMatches.sort(DOCUMENT_ORDER);
+      descriptionMatches.sort(DOCUMENT_ORDER);
+      return Stream.concat(titleMatches.stream(), descriptionMatches.stream())
+          .map((document) -> document.id)
+          .collect(Collectors.toList());
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the ordinals of documents containing all trigrams of {@code key}, or {@code null} if
+   * {@code key} is too short to have any trigrams (in which case all documents are candidates).
+   */
+  @Nullable
+  private int[] candidates(String key) {
+    Set<Long> trigrams = trigrams(key);
+    if (trigrams.isEmpty()) {
+      return null;
+    }
+    List<Postings> lists = new ArrayList<>(trigrams.size());
+    for (long trigram : trigrams) {
+      Postings list = postings.get(trigram);
+      if (list == null) {
+        return new int[0];
+      }
+      lists.add(list);
+    }
+    lists.sort(Comparator.comparingInt((list) -> list.size));
+    int[] result = Arrays.copyOf(lists.get(0).ordinals, lists.get(0).size);
+    for (int i = 1; i < lists.size() && result.length > 0; i++) {
+      result = intersect(result, lists.get(i));
+    }
+    return result;
+  }
+
+  private void add(UUID id, String title, String description) {
+    Document document = new Document(id, title, description);
+    int ordinal = documents.size();
+    documents.add(document);
+    ordinals.put(id, ordinal);
+    Set<Long> trigrams = trigrams(document.titleKey);
+    trigrams.addAll(trigrams(document.descriptionKey));
+    for (long trigram : trigrams) {
+      postings.computeIfAbsent(trigram, (key) -> new Postings()).add(ordinal);
+    }
+  }
+
+  private void retire(UUID id) {
+    Integer ordinal = ordinals.remove(id);
+    if (ordinal != null) {
+      documents.set(ordinal, null);
+      purge();
+    }
+  }
+
+  private void purge() {
+    if (documents.size() - ordinals.size() <= Math.max(ordinals.size(), MIN_PURGE_THRESHOLD)) {
+      return;
+    }
+    List<Document> live = new ArrayList<>(ordinals.size());
+    for (Document document : documents) {
+      if (document != null) {
+        live.add(document);
+      }
+    }
+    ordinals.clear();
+    documents.clear();
+    postings.clear();
+    for (Document document : live) {
+      add(document.id, document.title, document.description);
+    }
+  }
+
+  private static Set<Long> trigrams(String text) {
+    Set<Long> trigrams = new HashSet<>();
+    if (text != null) {
+      for (int i = 0; i + TRIGRAM_LENGTH <= text.length(); i++) {
+        trigrams.add(((long) text.charAt(i) << 32)
+            | ((long) text.charAt(i + 1) << 16)
+            | text.charAt(i + 2));
+      }
+    }
+    return trigrams;
+  }
+
+  private static int[] intersect(int[] ordinals, Postings list) {
+    int[] result = new int[Math.min(ordinals.length, list.size)];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < ordinals.length && j < list.size) {
+      int a = ordinals[i];
+      int b = list.ordinals[j];
+      if (a == b) {
+        result[count++] = a;
+        i++;
+        j++;
+      } else if (a < b) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static class Document {
+
+    private final UUID id;
+    private final String title;
+    private final String description;
+    private final String titleKey;
+    private final String descriptionKey;
+
+    private Document(UUID id, String title, String description) {
+      this.id = id;
+      this.title = title;
+      this.description = description;
+      titleKey = (title != null) ? title.toLowerCase(Locale.ROOT) : null;
+      descriptionKey = (description != null) ? description.toLowerCase(Locale.ROOT) : null;
+    }
+
+  }
+
+  private static class Postings {
+
+    private int[] ordinals = new int[4];
+    private int size;
+
+    private void add(int ordinal) {
+      if (size == ordinals.length) {
+        ordinals = Arrays.copyOf(ordinals, size * 2);
+      }
+      ordinals[size++] = ordinal;
+    }
+
+  }
+
+}
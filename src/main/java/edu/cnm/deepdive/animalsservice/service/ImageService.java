@@ -1,21 +1,64 @@
 package edu.cnm.deepdive.animalsservice.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import edu.cnm.deepdive.animalsservice.configuration.CacheConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.CacheConfiguration.MetadataProperties;
 import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository.ImageReference;
 import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.BulkRequest.DescriptionUpdate;
+import edu.cnm.deepdive.animalsservice.service.BulkResult.Operation;
+import edu.cnm.deepdive.animalsservice.service.DerivativeService.Fit;
+import edu.cnm.deepdive.animalsservice.service.ImagePage.Cursor;
+import edu.cnm.deepdive.animalsservice.service.ImagePage.Order;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.util.Streamable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
@@ -26,36 +69,157 @@ import org.springframework.web.server.ResponseStatusException;
  */
 @Service
 @Profile("service")
-public class ImageService {
+public class ImageService implements MeterBinder {
 
     private final ImageRepository imageRepository;
     private final StorageService storageService;
+    private final DerivativeService derivativeService;
+    private final ImageSearchIndex searchIndex;
+    private final ContentCache contentCache;
+    private final EntityManager entityManager;
+    private final ExecutorService storageExecutor;
+    private final AsyncCache<UUID, Image> asyncMetadataCache;
+    private final Cache<UUID, Image> metadataCache;
+    private final Duration metadataTimeToLive;
 
     private static final String UNTITLED_FILENAME = "untitled";
+    private static final int STREAM_BATCH_SIZE = 500;
+    private static final String NOT_WHITELISTED_MESSAGE = "Upload MIME type not in whitelist";
+    private static final String NOT_STORED_MESSAGE = "Unable to store uploaded content";
+    private static final int BULK_CHUNK_SIZE = 500;
+    private static final String METADATA_CACHE_NAME = "image-metadata";
 
     @Autowired
     public ImageService(
-            ImageRepository imageRepository, StorageService storageService) {
+            ImageRepository imageRepository, StorageService storageService,
+            DerivativeService derivativeService, ImageSearchIndex searchIndex,
+            ContentCache contentCache, EntityManager entityManager, CacheConfiguration cacheConfiguration,
+            @Qualifier("storageExecutor") ExecutorService storageExecutor) {
         this.imageRepository = imageRepository;
         this.storageService = storageService;
+        this.derivativeService = derivativeService;
+        this.searchIndex = searchIndex;
+        this.contentCache = contentCache;
+        this.entityManager = entityManager;
+        this.storageExecutor = storageExecutor;
+        MetadataProperties metadataProperties = cacheConfiguration.getMetadata();
+        asyncMetadataCache = Caffeine.newBuilder()
+                .maximumSize(metadataProperties.getMaxSize())
+                .expireAfterWrite(metadataProperties.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+        metadataCache = asyncMetadataCache.synchronous();
+        metadataTimeToLive = metadataProperties.getTimeToLive();
     }
 
     /**
      * Selects and returns a {@link Image} with the specified {@code key}, as the content of an {@link
      * Optional Optional&lt;Image&gt;}. If no such instance exists, the {@link Optional} is empty.
+     * <p>Images are read through a bounded metadata cache; a cached image is detached from any
+     * persistence context, and is shared between callers, so it must not be modified.</p>
+     * <p>On a miss, the image is read on the calling thread, outside of any lock held by the cache
+     * (concurrent callers for the same key wait for the result), so that a virtual thread waiting on
+     * the database doesn't pin its carrier thread.</p>
      *
      * @param key Unique identifier of the {@link Image}.
      * @return {@link Optional Optional&lt;Image&gt;} containing the selected image.
      */
     public Optional<Image> get(UUID key) {
-        return imageRepository.findByExternalKey(key);
+        CompletableFuture<Image> load = new CompletableFuture<>();
+        CompletableFuture<Image> image = asyncMetadataCache.get(key, (k, executor) -> load);
+        if (image == load) {
+            try {
+                load.complete(imageRepository
+                        .findByExternalKey(key)
+                        .map((loaded) -> {
+                            entityManager.detach(loaded);
+                            return loaded;
+                        })
+                        .orElse(null));
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return Optional.ofNullable(image.join());
+        } catch (CompletionException e) {
+            throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Resolves the specified external keys to {@link Image} instances, using the metadata cache
+     * where possible, and a single query (on the unique external key column) for the remainder.
+     *
+     * @param keys External keys of the images.
+     * @return {@link ImageLookup} containing the images found and the keys not found, each in the
+     * order of {@code keys}.
+     */
+    public ImageLookup get(@NonNull List<UUID> keys) {
+        Map<UUID, Image> found = new HashMap<>(metadataCache.getAllPresent(keys));
+        Set<UUID> uncached = keys.stream()
+                .filter((key) -> !found.containsKey(key))
+                .collect(Collectors.toSet());
+        if (!uncached.isEmpty()) {
+            for (Image image : imageRepository.findAllByExternalKeyIn(uncached)) {
+                entityManager.detach(image);
+                metadataCache.put(image.getExternalKey(), image);
+                found.put(image.getExternalKey(), image);
+            }
+        }
+        List<Image> images = new ArrayList<>(keys.size());
+        List<UUID> missing = new ArrayList<>();
+        for (UUID key : keys) {
+            Image image = found.get(key);
+            if (image != null) {
+                images.add(image);
+            } else {
+                missing.add(key);
+            }
+        }
+        return new ImageLookup(images, missing);
+    }
+
+    /**
+     * Discards any cached metadata of the image with the specified external key, so that the next
+     * {@link #get(UUID)} reads it from the database. This is needed only when the image is modified
+     * without going through this service.
+     */
+    public void evict(@NonNull UUID externalKey) {
+        metadataCache.invalidate(externalKey);
+    }
+
+    /**
+     * Returns the time for which metadata read by {@link #get(UUID)} may be served from the cache;
+     * after {@link #evict(UUID) evicting} an image, stale metadata may still be in use for this long.
+     */
+    public Duration getMetadataTimeToLive() {
+        return metadataTimeToLive;
+    }
+
+    /**
+     * Returns a snapshot of the hit, miss, and eviction statistics of the metadata cache used by
+     * {@link #get(UUID)}.
+     */
+    public CacheStats getMetadataCacheStats() {
+        return metadataCache.stats();
+    }
+
+    /**
+     * Registers the size, hit, miss, and eviction meters of the metadata cache, tagged with {@code
+     * cache=image-metadata}.
+     */
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, metadataCache, METADATA_CACHE_NAME);
     }
 
     public Optional<String> updateDescription(UUID externalKey, String description) {
         return imageRepository.findByExternalKey(externalKey)
                 .map((image) -> {
                     image.setDescription(description);
-                    return imageRepository.save(image);
+                    return save(image);
                 })
                 .map(Image::getDescription);
 
@@ -70,32 +234,222 @@ public class ImageService {
      *                     reference}.
      */
     public void delete(Image image) throws IOException {
+        derivativeService.invalidate(image.getExternalKey());
+        contentCache.invalidate(image.getPath());
         storageService.delete(image.getPath());
         imageRepository.delete(image); // Delete unconditonally.
+        metadataCache.invalidate(image.getExternalKey());
+        searchIndex.remove(image.getId());
+    }
+
+    /**
+     * Applies the description updates and deletes in {@code request} in a single transaction, using
+     * bulk JPQL statements (each covering up to {@value #BULK_CHUNK_SIZE} images, however many
+     * distinct descriptions they set) rather than loading and saving entities one at a time. Once
+     * the transaction commits, the stored content of deleted images is deleted in the background,
+     * and cached state is invalidated; if the transaction rolls back, nothing is deleted.
+     *
+     * @param request Description updates and deletes to apply.
+     * @return Outcome of each update, followed by the outcome of each delete, in request order.
+     */
+    @Transactional
+    public List<BulkResult> apply(@NonNull BulkRequest request) {
+        Set<UUID> keys = new HashSet<>(request.getDeletes());
+        request.getUpdates().forEach((update) -> keys.add(update.getId()));
+        keys.remove(null);
+        Map<UUID, ImageReference> existing = new HashMap<>();
+        for (List<UUID> chunk : chunks(new ArrayList<>(keys))) {
+            imageRepository.findReferencesByExternalKeyIn(chunk)
+                    .forEach((reference) -> existing.put(reference.getExternalKey(), reference));
+        }
+        List<BulkResult> results = new ArrayList<>();
+        Map<UUID, String> descriptions = new LinkedHashMap<>();
+        for (DescriptionUpdate update : request.getUpdates()) {
+            boolean found = existing.containsKey(update.getId());
+            results.add(new BulkResult(
+                    Operation.UPDATE, update.getId(), found ? HttpStatus.OK : HttpStatus.NOT_FOUND));
+            if (found) {
+                descriptions.put(update.getId(), update.getDescription());
+            }
+        }
+        Date updated = new Date();
+        for (List<UUID> chunk : chunks(new ArrayList<>(descriptions.keySet()))) {
+            Map<UUID, String> chunkDescriptions = new LinkedHashMap<>();
+            chunk.forEach((key) -> chunkDescriptions.put(key, descriptions.get(key)));
+            imageRepository.updateDescriptions(chunkDescriptions, updated);
+        }
+        Set<UUID> deleted = new LinkedHashSet<>();
+        for (UUID key : request.getDeletes()) {
+            boolean found = existing.containsKey(key);
+            results.add(new BulkResult(
+                    Operation.DELETE, key, found ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
+            if (found) {
+                deleted.add(key);
+            }
+        }
+        chunks(new ArrayList<>(deleted)).forEach(imageRepository::deleteAllByExternalKeys);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                descriptions.forEach((key, description) -> {
+                    metadataCache.invalidate(key);
+                    if (!deleted.contains(key)) {
+                        ImageReference reference = existing.get(key);
+                        searchIndex.put(reference.getId(), reference.getTitle(), description);
+                    }
+                });
+                List<String> paths = new ArrayList<>(deleted.size());
+                for (UUID key : deleted) {
+                    ImageReference reference = existing.get(key);
+                    metadataCache.invalidate(key);
+                    searchIndex.remove(reference.getId());
+                    contentCache.invalidate(reference.getPath());
+                    paths.add(reference.getPath());
+                }
+                if (!paths.isEmpty()) {
+                    storageExecutor.execute(() -> {
+                        for (UUID key : deleted) {
+                            try {
+                                derivativeService.invalidate(key);
+                            } catch (IOException ignored) {
+                                // Orphaned derivatives are harmless; the rows are already gone.
+                            }
+                        }
+                        for (String path : paths) {
+                            try {
+                                storageService.delete(path);
+                            } catch (IOException ignored) {
+                                // Orphaned content is harmless; the rows are already gone.
+                            }
+                        }
+                    });
+                }
+            }
+        });
+        return results;
     }
 
     public Image save(@NonNull Image image) {
-        return imageRepository.save(image);
+        Image saved = imageRepository.save(image);
+        metadataCache.invalidate(saved.getExternalKey());
+        searchIndex.put(saved);
+        return saved;
     }
 
     public Image store(
             @NonNull MultipartFile file, String title, String description)
             throws IOException, HttpMediaTypeNotAcceptableException {
-        String originalFilename = file.getOriginalFilename();
-        String contentType = file.getContentType();
-        String reference = storageService.store(file);
-        Image image = new Image();
-        image.setTitle(title);
-        image.setDescription(description);
-        image.setName(originalFilename != null ? originalFilename : UNTITLED_FILENAME);
-        image.setContentType(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE);
-        image.setPath(reference);
-        return imageRepository.save(image);
+        StoredContent content = storageService.store(file);
+        return saveOrRelease(
+                newImage(content, file.getOriginalFilename(), file.getContentType(), title, description));
+    }
+
+    /**
+     * Stores a batch of uploaded files, and persists a new {@link Image} for each file successfully
+     * stored. The files are written to the file store concurrently (on a bounded executor), and the
+     * resulting images are then inserted together, in a single transaction. A failure to store one
+     * file doesn't prevent the others from being stored; however, if the images can't be persisted,
+     * none are, and the stored content of all of them is deleted.
+     *
+     * @param files        Uploaded files.
+     * @param titles       Titles of the images, in the same order as {@code files}.
+     * @param descriptions Descriptions of the images, in the same order as {@code files} (may be
+     *                     {@code null}).
+     * @return Outcome for each file, in the same order as {@code files}.
+     */
+    public List<UploadResult> store(@NonNull List<MultipartFile> files, @NonNull List<String> titles,
+                                    @Nullable List<String> descriptions) {
+        List<CompletableFuture<StoredContent>> contents = files.stream()
+                .map((file) -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return storageService.store(file);
+                    } catch (IOException | HttpMediaTypeNotAcceptableException e) {
+                        throw new CompletionException(e);
+                    }
+                }, storageExecutor))
+                .collect(Collectors.toList());
+        UploadResult[] results = new UploadResult[files.size()];
+        List<Integer> indices = new ArrayList<>();
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            try {
+                images.add(newImage(contents.get(i).join(), file.getOriginalFilename(),
+                        file.getContentType(), titles.get(i),
+                        (descriptions != null) ? descriptions.get(i) : null));
+                indices.add(i);
+            } catch (CompletionException e) {
+                results[i] = (e.getCause() instanceof HttpMediaTypeNotAcceptableException)
+                        ? UploadResult.failed(i, HttpStatus.UNSUPPORTED_MEDIA_TYPE, NOT_WHITELISTED_MESSAGE)
+                        : UploadResult.failed(i, HttpStatus.INTERNAL_SERVER_ERROR, NOT_STORED_MESSAGE);
+            }
+        }
+        List<Image> saved;
+        try {
+            saved = imageRepository.saveAll(images);
+        } catch (RuntimeException e) {
+            for (Image image : images) {
+                try {
+                    storageService.delete(image.getPath());
+                } catch (IOException ignored) {
+                    // Orphaned content is harmless; the original failure is more important.
+                }
+            }
+            throw e;
+        }
+        for (int j = 0; j < saved.size(); j++) {
+            Image image = saved.get(j);
+            metadataCache.invalidate(image.getExternalKey());
+            searchIndex.put(image);
+            results[indices.get(j)] = UploadResult.created(indices.get(j), image);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Streams content from {@code input} directly into the file store, and persists a new {@link
+     * Image} referencing that content. Unlike {@link #store(MultipartFile, String, String)}, no
+     * intermediate copy of the content is written.
+     *
+     * @param input       Source of the image content.
+     * @param contentType MIME type of the image content.
+     * @param filename    Original filename of the image content (may be {@code null}).
+     * @param title       Title of the image.
+     * @param description Description of the image (may be {@code null}).
+     * @return Persisted {@link Image}.
+     * @throws IOException                         If the content cannot be written to the store.
+     * @throws HttpMediaTypeNotAcceptableException If {@code contentType} is not allowed.
+     */
+    public Image store(@NonNull InputStream input, @NonNull String contentType,
+                       @Nullable String filename, String title, String description)
+            throws IOException, HttpMediaTypeNotAcceptableException {
+        StoredContent content = storageService.store(input, contentType, filename);
+        return saveOrRelease(
+                newImage(content, filename, contentType, title, description));
+    }
+
+    /**
+     * Saves a new {@link Image} referencing just-stored content; if it can't be saved, the content
+     * is deleted (releasing the reference, for a store that shares content between images), and the
+     * failure is rethrown.
+     */
+    private Image saveOrRelease(Image image) {
+        try {
+            return save(image);
+        } catch (RuntimeException e) {
+            try {
+                storageService.delete(image.getPath());
+            } catch (IOException ignored) {
+                // Orphaned content is harmless; the original failure is more important.
+            }
+            throw e;
+        }
     }
 
     /**
      * Uses the opaque reference contained in {@code image} to return a consumer-usable {@link
-     * Resource} to previously uploaded content.
+     * Resource} to previously uploaded content. Small, frequently retrieved content is served from
+     * the {@link ContentCache}; either way, the access is {@link #recordAccess(Image) recorded}.
      *
      * @param image {@link Image} entity instance referencing the uploaded content.
      * @return {@link Resource} usable in a response body (e.g. for downloading).
@@ -103,7 +457,44 @@ public class ImageService {
      *                     store.
      */
     public Resource retrieve(Image image) throws IOException {
-        return storageService.retrieve(image.getPath());
+        storageService.recordAccess(image.getPath());
+        return contentCache.get(image.getPath(), storageService);
+    }
+
+    /**
+     * Records that the content of {@code image} was requested, without retrieving it (e.g. for a
+     * conditional request answered with {@code 304 Not Modified}), so that the storage service
+     * treats the content as recently read.
+     *
+     * @param image {@link Image} entity instance referencing the uploaded content.
+     */
+    public void recordAccess(Image image) {
+        storageService.recordAccess(image.getPath());
+    }
+
+    /**
+     * Returns a scaled derivative (e.g. a thumbnail) of the content of {@code image}, generating it
+     * if it isn't already in the derivative cache.
+     *
+     * @param image  {@link Image} entity instance referencing the uploaded content.
+     * @param width  Requested width, in pixels (may be {@code null} if {@code height} isn't).
+     * @param height Requested height, in pixels (may be {@code null} if {@code width} isn't).
+     * @param fit    Policy for fitting the original into the requested dimensions.
+     * @return {@link Optional} containing the derivative, or empty if the content can't be decoded as
+     * an image.
+     * @throws IOException If the content can't be read, or the derivative can't be written.
+     */
+    public Optional<Resource> retrieve(Image image, Integer width, Integer height, Fit fit)
+            throws IOException {
+        return derivativeService.get(image, width, height, fit);
+    }
+
+    /**
+     * Returns the MIME type of the derivatives returned by {@link #retrieve(Image, Integer, Integer,
+     * Fit)} for {@code image}.
+     */
+    public String getDerivativeContentType(Image image) {
+        return derivativeService.getContentType(image.getContentType());
     }
 
     /**
@@ -115,20 +506,188 @@ public class ImageService {
         return imageRepository.getAllByOrderByTitleAsc();
     }
 
+    /**
+     * Selects and returns one page of images, using keyset pagination: each page is selected by the
+     * (key, primary key) pair of the boundary image of the adjacent page, rather than by an offset,
+     * so that every page costs the same to select (an index range scan on the composite key). When
+     * ordering by title, untitled images follow all titled images; these are paged as a separate
+     * phase, ordered by primary key, which a page continues into when the titled images run out.
+     *
+     * @param order  Listing order; ignored if {@code cursor} is specified.
+     * @param limit  Maximum number of images in the page.
+     * @param cursor Opaque cursor (as returned by {@link ImagePage#getNext()} or {@link
+     *               ImagePage#getPrevious()}) selecting the page; {@code null} for the first page.
+     * @return Selected page of images.
+     * @throws edu.cnm.deepdive.animalsservice.exception.InvalidQueryException If {@code cursor} is
+     *                                                                          invalid.
+     */
+    public ImagePage list(@NonNull Order order, int limit, @Nullable String cursor) {
+        Cursor position = (cursor != null) ? Cursor.decode(cursor) : null;
+        if (position != null) {
+            order = position.getOrder();
+        }
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Image> images;
+        boolean forward = (position == null || position.isForward());
+        if (order == Order.TITLE) {
+            images = selectByTitle(position, forward, limit + 1);
+        } else if (position == null) {
+            images = imageRepository.findFirstByCreated(pageable);
+        } else if (forward) {
+            images = imageRepository.findAfterByCreated(position.getCreated(), position.getId(), pageable);
+        } else {
+            images = imageRepository.findBeforeByCreated(position.getCreated(), position.getId(), pageable);
+        }
+        boolean more = images.size() > limit;
+        images = new ArrayList<>(more ? images.subList(0, limit) : images);
+        if (!forward) {
+            Collections.reverse(images);
+        }
+        String next = null;
+        String previous = null;
+        if (!images.isEmpty()) {
+            Image first = images.get(0);
+            Image last = images.get(images.size() - 1);
+            if (forward ? more : position != null) {
+                next = Cursor.after(order, last).encode();
+            }
+            if (forward ? position != null : more) {
+                previous = Cursor.before(order, first).encode();
+            }
+        }
+        return new ImagePage(images, next, previous);
+    }
 
+    private List<Image> selectByTitle(@Nullable Cursor position, boolean forward, int count) {
+        Pageable pageable = PageRequest.of(0, count);
+        List<Image> images;
+        if (position == null) {
+            images = new ArrayList<>(imageRepository.findFirstByTitle(pageable));
+            if (images.size() < count) {
+                images.addAll(imageRepository.findFirstUntitled(PageRequest.of(0, count - images.size())));
+            }
+        } else if (forward && position.getTitle() != null) {
+            images = new ArrayList<>(
+                    imageRepository.findAfterByTitle(position.getTitle(), position.getId(), pageable));
+            if (images.size() < count) {
+                images.addAll(imageRepository.findFirstUntitled(PageRequest.of(0, count - images.size())));
+            }
+        } else if (forward) {
+            images = imageRepository.findAfterUntitled(position.getId(), pageable);
+        } else if (position.getTitle() != null) {
+            images = imageRepository.findBeforeByTitle(position.getTitle(), position.getId(), pageable);
+        } else {
+            images = new ArrayList<>(imageRepository.findBeforeUntitled(position.getId(), pageable));
+            if (images.size() < count) {
+                images.addAll(imageRepository.findLastByTitle(PageRequest.of(0, count - images.size())));
+            }
+        }
+        return images;
+    }
+
+
+    /**
+     * Selects and returns all images with a title or description containing {@code fragment},
+     * ignoring case. Once the {@link ImageSearchIndex} has been built, images with matching titles
+     * are ranked ahead of those matching only on description; until then, the database is queried
+     * directly, with the same (case-insensitive) matching.
+     *
+     * @param fragment Substring to search for (if {@code null}, all images are returned).
+     * @return Matching images, ordered by rank and title.
+     */
     public Streamable<Image> search(String fragment) {
         Streamable<Image> images;
-        if (fragment != null) {
+        if (fragment != null && searchIndex.isReady()) {
+            List<UUID> ids = searchIndex.search(fragment);
+            Map<UUID, Image> found = imageRepository.findAllById(ids)
+                    .stream()
+                    .collect(Collectors.toMap(Image::getId, Function.identity()));
+            images = Streamable.of(
+                    ids.stream()
+                            .map(found::get)
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList())
+            );
+        } else if (fragment != null) {
             images = Streamable.of(
                     imageRepository
-                            .findAllByTitleContainsOrderByTitleAsc(fragment)
-                            .and(imageRepository.findAllByDescriptionContainsOrderByTitleAsc(fragment))
-                            .toSet()
+                            .findAllByTitleContainsIgnoreCaseOrderByTitleAsc(fragment)
+                            .and(imageRepository.findAllByDescriptionContainsIgnoreCaseOrderByTitleAsc(fragment))
+                            .stream()
+                            .distinct()
+                            .collect(Collectors.toList())
             );
         } else images = imageRepository.findAllByOrderByTitleAsc();
         return images;
     }
 
+    /**
+     * Passes each image selected by {@link #search(String)} to {@code consumer}, in the same order,
+     * without holding the full result in memory. Rows are read from a database cursor with a large
+     * JDBC fetch size (or, when the {@link ImageSearchIndex} is used, fetched in fixed-size batches of
+     * ids), and each image is detached from the persistence context as soon as {@code consumer}
+     * returns, so that memory use is independent of the number of images.
+     * <p>This must be invoked from outside this service, so that the read-only transaction required
+     * for the database cursor is in effect.</p>
+     *
+     * @param fragment Substring to search for (if {@code null}, all images are returned).
+     * @param consumer Recipient of each image.
+     */
+    @Transactional(readOnly = true)
+    public void stream(@Nullable String fragment, @NonNull Consumer<Image> consumer) {
+        Consumer<Image> detaching = (image) -> {
+            consumer.accept(image);
+            entityManager.detach(image);
+        };
+        if (fragment != null && searchIndex.isReady()) {
+            List<UUID> ids = searchIndex.search(fragment);
+            for (int start = 0; start < ids.size(); start += STREAM_BATCH_SIZE) {
+                List<UUID> batch = ids.subList(start, Math.min(start + STREAM_BATCH_SIZE, ids.size()));
+                Map<UUID, Image> found = imageRepository.findAllById(batch)
+                        .stream()
+                        .collect(Collectors.toMap(Image::getId, Function.identity()));
+                batch.stream()
+                        .map(found::get)
+                        .filter(Objects::nonNull)
+                        .forEach(detaching);
+            }
+        } else if (fragment != null) {
+            try (Stream<Image> images =
+                    imageRepository.streamAllByTitleContainsIgnoreCaseOrderByTitleAsc(fragment)) {
+                images.forEach(detaching);
+            }
+            try (Stream<Image> images =
+                    imageRepository.streamAllByDescriptionOnlyContainsIgnoreCase(fragment)) {
+                images.forEach(detaching);
+            }
+        } else {
+            try (Stream<Image> images = imageRepository.streamAllByOrderByTitleAsc()) {
+                images.forEach(detaching);
+            }
+        }
+    }
+
+    private static <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += BULK_CHUNK_SIZE) {
+            chunks.add(items.subList(start, Math.min(start + BULK_CHUNK_SIZE, items.size())));
+        }
+        return chunks;
+    }
+
+    private Image newImage(StoredContent content, String originalFilename, String contentType,
+                           String title, String description) {
+        Image image = new Image();
+        image.setTitle(title);
+        image.setDescription(description);
+        image.setName(originalFilename != null ? originalFilename : UNTITLED_FILENAME);
+        image.setContentType(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        image.setPath(content.getReference());
+        image.setContentLength(content.getLength());
+        image.setDigest(content.getDigest());
+        return image;
+    }
+
     /**
      * Convenience class extending {@link ResponseStatusException}, for the purpose of including a
      * default HTTP response status &amp; message when the no-parameter constructor is used.
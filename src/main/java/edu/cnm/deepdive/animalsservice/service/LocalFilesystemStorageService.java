@@ -1,30 +1,23 @@
 package edu.cnm.deepdive.animalsservice.service;
 
 import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
-import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.FilenameProperties;
-import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.FilenameProperties.TimestampProperties;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
-import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import javax.annotation.PostConstruct;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.system.ApplicationHome;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.MediaType;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
@@ -33,39 +26,30 @@ import org.springframework.web.multipart.MultipartFile;
 
 @Service
 @Profile("service")
+@ConditionalOnProperty(prefix = "upload", name = "storage", havingValue = "local", matchIfMissing = true)
 public class LocalFilesystemStorageService implements StorageService {
 
-  private final Random rng;
+  private final ReferenceGenerator referenceGenerator;
+  private final UploadLayout layout;
   private final Path uploadDirectory;
-  private final Pattern subdirectoryPattern;
   private final Set<String> whitelist;
-  private final DateFormat formatter;
-  private final String filenameFormat;
-  private final int randomizerLimit;
   private final List<MediaType> contentTypes;
+  private final long maxContentLength;
 
-  private static final String REFERENCE_PATH_DELIMITER = "/";
-  private static final String REFERENCE_PATH_FORMAT = "%s" + REFERENCE_PATH_DELIMITER + "%s";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
 
   public LocalFilesystemStorageService(
-      Random rng, UploadConfiguration uploadConfiguration, ApplicationHome applicationHome) {
-    this.rng = rng;
-    FilenameProperties filenameProperties = uploadConfiguration.getFilename();
-    TimestampProperties timestampProperties = filenameProperties.getTimestamp();
-    String uploadPath = uploadConfiguration.getDirectory();
-    uploadDirectory = uploadConfiguration.isApplicationHome()
-        ? applicationHome.getDir().toPath().resolve(uploadPath)
-        : Path.of(uploadPath);
+      ReferenceGenerator referenceGenerator, UploadConfiguration uploadConfiguration,
+      ApplicationHome applicationHome) {
+    this.referenceGenerator = referenceGenerator;
+    layout = new UploadLayout(uploadConfiguration, applicationHome);
+    uploadDirectory = layout.getDirectory();
     uploadDirectory.toFile().mkdirs();
-    subdirectoryPattern = uploadConfiguration.getSubdirectoryPattern();
     whitelist = uploadConfiguration.getWhitelist();
     contentTypes = whitelist.stream()
         .map(MediaType::valueOf)
         .collect(Collectors.toList());
-    filenameFormat = filenameProperties.getFormat();
-    randomizerLimit = filenameProperties.getRandomizerLimit();
-    formatter = new SimpleDateFormat(timestampProperties.getFormat());
-    formatter.setTimeZone(timestampProperties.getTimeZone());
+    maxContentLength = uploadConfiguration.getMaxContentLength().toBytes();
   }
 
   @PostConstruct
@@ -75,26 +59,53 @@ public class LocalFilesystemStorageService implements StorageService {
   }
 
   @Override
-  public String store(MultipartFile file)
+  public StoredContent store(MultipartFile file)
       throws IOException, HttpMediaTypeNotAcceptableException {
     if (!whitelist.contains(file.getContentType())) {
       throw new HttpMediaTypeNotAcceptableException(contentTypes);
     }
-    String originalFilename = file.getOriginalFilename();
-    String newFileName = String.format(filenameFormat,
-        formatter.format(new Date()), rng.nextInt(randomizerLimit),
-        getExtension(originalFilename != null ? originalFilename : ""));
-    String subdirectory = getSubdirectory(newFileName);
+    String newFileName = referenceGenerator.newFilename(file.getOriginalFilename());
+    String subdirectory = layout.getSubdirectory(newFileName);
     Path resolvePath = uploadDirectory.resolve(subdirectory);
     resolvePath.toFile().mkdirs();
-    Files.copy(file.getInputStream(), resolvePath.resolve(newFileName));
-    return String.format(REFERENCE_PATH_FORMAT, subdirectory, newFileName);
+    try (MeasuringInputStream measuringInput = new MeasuringInputStream(file.getInputStream(), -1)) {
+      Files.copy(measuringInput, resolvePath.resolve(newFileName));
+      return new StoredContent(layout.getReference(subdirectory, newFileName),
+          measuringInput.getCount(), measuringInput.getHexDigest());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>The content is written to a temporary file in its final subdirectory, and then atomically
+   * renamed, so that a partially written file is never visible under the returned reference.</p>
+   */
+  @Override
+  public StoredContent store(InputStream input, String contentType, String filename)
+      throws IOException, HttpMediaTypeNotAcceptableException {
+    if (!whitelist.contains(contentType)) {
+      throw new HttpMediaTypeNotAcceptableException(contentTypes);
+    }
+    String newFileName = referenceGenerator.newFilename(filename);
+    String subdirectory = layout.getSubdirectory(newFileName);
+    Path resolvePath = uploadDirectory.resolve(subdirectory);
+    Files.createDirectories(resolvePath);
+    Path temp = Files.createTempFile(resolvePath, newFileName, TEMP_FILE_SUFFIX);
+    try {
+      MeasuringInputStream measuringInput = new MeasuringInputStream(input, maxContentLength);
+      Files.copy(measuringInput, temp, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temp, resolvePath.resolve(newFileName), StandardCopyOption.ATOMIC_MOVE);
+      return new StoredContent(layout.getReference(subdirectory, newFileName),
+          measuringInput.getCount(), measuringInput.getHexDigest());
+    } finally {
+      Files.deleteIfExists(temp);
+    }
   }
 
   @Override
   public Resource retrieve(String reference) throws IOException {
     Path file = uploadDirectory.resolve(reference);
-    return new UrlResource(file.toUri());
+    return new FileSystemResource(file);
   }
 
   @Override
@@ -108,22 +119,48 @@ public class LocalFilesystemStorageService implements StorageService {
     }
   }
 
+  /**
+   * Returns the reference under which the file with the specified {@code reference} would be stored
+   * by the current sharding strategy. If the file is already stored according to that strategy, the
+   * returned value is equal to {@code reference}.
+   *
+   * @param reference Reference to a stored file.
+   * @return Reference to the same file under the current sharding strategy.
+   */
   @NonNull
-  private String getExtension(@NonNull String filename) {
-    int position;
-    return ((position = filename.lastIndexOf('.')) >= 0) ? filename.substring(position + 1) : "";
+  public String getShardedReference(@NonNull String reference) {
+    String filename = layout.getFilename(reference);
+    return layout.getReference(layout.getSubdirectory(filename), filename);
   }
 
-  private String getSubdirectory(@NonNull String filename) {
-    String path;
-    Matcher matcher = subdirectoryPattern.matcher(filename);
-    if (matcher.matches()) {
-      path = IntStream.rangeClosed(1, matcher.groupCount())
-          .mapToObj(matcher::group)
-          .collect(Collectors.joining(REFERENCE_PATH_DELIMITER));
-    } else {
-      path = "";
+  /**
+   * Makes the content of the file with reference {@code source} available under {@code target} as
+   * well, as a hard link if the file system supports it, or as a copy otherwise. The source file is
+   * left in place; if {@code target} already exists, it is assumed to be the result of a previous
+   * (interrupted) invocation, and is left as is.
+   *
+   * @param source Reference to a stored file.
+   * @param target New reference to the same content.
+   * @throws IOException If the file can't be linked or copied.
+   */
+  public void link(@NonNull String source, @NonNull String target) throws IOException {
+    Path sourcePath = uploadDirectory.resolve(source);
+    Path targetPath = uploadDirectory.resolve(target);
+    if (Files.exists(targetPath)) {
+      return;
+    }
+    Files.createDirectories(targetPath.getParent());
+    try {
+      Files.createLink(targetPath, sourcePath);
+    } catch (UnsupportedOperationException | IOException e) {
+      Path temp = Files.createTempFile(targetPath.getParent(),
+          targetPath.getFileName().toString(), TEMP_FILE_SUFFIX);
+      try {
+        Files.copy(sourcePath, temp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(temp, targetPath, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
     }
-    return path;
   }
 }
@@ -0,0 +1,86 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+/**
+ * Computes the length and SHA-256 digest of the content read through it, failing with a {@link
+ * MaxUploadSizeExceededException} as soon as the length exceeds a specified limit.
+ */
+class MeasuringInputStream extends DigestInputStream {
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+
+  private final long limit;
+
+  private long count;
+
+  /**
+   * Initializes this instance to measure the content read from {@code input}.
+   *
+   * @param input Source stream.
+   * @param limit Maximum permitted length, in bytes (negative for no limit).
+   */
+  MeasuringInputStream(InputStream input, long limit) {
+    super(input, newDigest());
+    this.limit = limit;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int value = super.read();
+    if (value >= 0) {
+      tally(1);
+    }
+    return value;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int bytesRead = super.read(buffer, offset, length);
+    if (bytesRead > 0) {
+      tally(bytesRead);
+    }
+    return bytesRead;
+  }
+
+  /**
+   * Returns the number of bytes read so far.
+   */
+  long getCount() {
+    return count;
+  }
+
+  /**
+   * Completes the digest computation, returning the digest as a lowercase hexadecimal string. This
+   * should be invoked only once, after all content has been read.
+   */
+  String getHexDigest() {
+    StringBuilder builder = new StringBuilder();
+    for (byte b : getMessageDigest().digest()) {
+      builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+      builder.append(Character.forDigit(b & 0xf, 16));
+    }
+    return builder.toString();
+  }
+
+  private void tally(int bytesRead) {
+    count += bytesRead;
+    if (limit >= 0 && count > limit) {
+      throw new MaxUploadSizeExceededException(limit);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import org.springframework.lang.NonNull;
+
+/**
+ * Fixed-size region of off-heap memory, allocated once as a single direct buffer, from which
+ * contiguous extents are handed out and returned. Free space is kept as maximal free extents,
+ * ordered by offset; allocation is first-fit, and a returned extent is coalesced with its free
+ * neighbors. Since the direct buffer is never released (until the arena itself is unreachable),
+ * its capacity bounds the memory used, however often extents are reused.
+ * <p>Allocation and release are synchronized; both are short, and are performed only when content
+ * is admitted to or evicted from a cache. Reading and writing an allocated extent (through {@link
+ * #slice(int, int)}) need no synchronization.</p>
+ */
+class OffHeapArena {
+
+  private final ByteBuffer slab;
+  private final NavigableMap<Integer, Integer> free = new TreeMap<>();
+  private int available;
+
+  /**
+   * Allocates a direct buffer of {@code capacity} bytes for this arena.
+   */
+  OffHeapArena(int capacity) {
+    slab = ByteBuffer.allocateDirect(capacity);
+    available = capacity;
+    if (capacity > 0) {
+      free.put(0, capacity);
+    }
+  }
+
+  /**
+   * Allocates a contiguous extent of {@code length} bytes, returning its offset, or {@code -1} if
+   * no free extent is large enough.
+   */
+  synchronized int allocate(int length) {
+    if (length == 0) {
+      return 0;
+    }
+    if (length <= available) {
+      for (Map.Entry<Integer, Integer> extent : free.entrySet()) {
+        int offset = extent.getKey();
+        int size = extent.getValue();
+        if (size >= length) {
+          free.remove(offset);
+          if (size > length) {
+            free.put(offset + length, size - length);
+          }
+          available -= length;
+          return offset;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the extent at {@code offset}, of {@code length} bytes, previously returned by {@link
+   * #allocate(int)}; it must no longer be read or written.
+   */
+  synchronized void release(int offset, int length) {
+    if (length == 0) {
+      return;
+    }
+    int start = offset;
+    int end = offset + length;
+    Map.Entry<Integer, Integer> previous = free.lowerEntry(offset);
+    if (previous != null && previous.getKey() + previous.getValue() == offset) {
+      start = previous.getKey();
+    }
+    Integer next = free.remove(end);
+    if (next != null) {
+      end += next;
+    }
+    free.put(start, end - start);
+    available += length;
+  }
+
+  /**
+   * Returns a buffer sharing the content of the extent at {@code offset}, of {@code length} bytes,
+   * positioned at its start.
+   */
+  @NonNull
+  ByteBuffer slice(int offset, int length) {
+    ByteBuffer view = slab.duplicate();
+    view.position(offset).limit(offset + length);
+    return view.slice();
+  }
+
+  /**
+   * Returns the total size (in bytes) of this arena.
+   */
+  int getCapacity() {
+    return slab.capacity();
+  }
+
+  /**
+   * Returns the total size (in bytes) of the free extents of this arena.
+   */
+  synchronized int getAvailable() {
+    return available;
+  }
+
+}
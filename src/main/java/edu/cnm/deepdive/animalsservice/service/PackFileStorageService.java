@@ -0,0 +1,700 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.PackProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Implements {@link StorageService} as an append-only log of records in large segment files, so
+ * that small uploads don't each consume a file (and an inode) of their own. Each record is either a
+ * blob (the content stored under a reference) or a tombstone (marking the deletion of a reference).
+ * An in-memory index maps each live reference to the segment, offset, and length of its content; it
+ * is rebuilt at startup by scanning the record headers of all segments, and a partially written
+ * record at the end of the last segment (e.g. after a crash) is discarded.
+ * <p>Appends go to a single active segment; when it reaches {@code upload.pack.segmentSize}, it is
+ * sealed (flushed to disk, and memory-mapped), and a new segment is started. Content in a sealed
+ * segment is served as a {@link BufferResource} over a slice of the mapping; content in the active
+ * segment is served with positional reads. A background compactor copies the live records of any
+ * sealed segment whose live fraction has fallen below {@code upload.pack.compactionThreshold} to
+ * the active segment, and then deletes the sealed segment. References don't change when content is
+ * moved, so no database updates are needed.</p>
+ * <p>A blob is forced to disk before its reference is returned (and so before any image referencing
+ * it can be committed), so that recovery never truncates content that a committed image references.
+ * Forcing is group-committed: appends are serialized, but a force covers every record appended
+ * before it began, so concurrent stores share a single {@link FileChannel#force(boolean)} rather
+ * than each waiting for its own. Tombstones aren't forced individually; one lost in a crash leaves
+ * content that no image references.</p>
+ * <p>References to files stored one per upload (by {@link LocalFilesystemStorageService}, in the
+ * same upload directory) remain readable and deletable; {@link PackMigration} moves such files into
+ * segments.</p>
+ */
+@Service
+@Profile("service")
+@ConditionalOnProperty(prefix = "upload", name = "storage", havingValue = "pack")
+public class PackFileStorageService implements StorageService {
+
+  private static final String PACK_ROOT = "packs";
+  private static final String REFERENCE_PREFIX = PACK_ROOT + "/";
+  private static final String SEGMENT_FORMAT = "segment-%010d.pack";
+  private static final Pattern SEGMENT_PATTERN = Pattern.compile("^segment-(\\d{10})\\.pack$");
+  private static final String TEMP_FILE_PREFIX = "upload-";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final int MAGIC = 0x414e4d50;
+  private static final byte BLOB = 1;
+  private static final byte TOMBSTONE = 2;
+  private static final int HEADER_LENGTH = Integer.BYTES + Byte.BYTES + Short.BYTES + Long.BYTES;
+  private static final int TYPE_OFFSET = Integer.BYTES;
+  private static final int REFERENCE_LENGTH_OFFSET = TYPE_OFFSET + Byte.BYTES;
+  private static final int LENGTH_OFFSET = REFERENCE_LENGTH_OFFSET + Short.BYTES;
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+  private static final String INVALID_SEGMENT_SIZE_MESSAGE =
+      "Pack segment size must be positive, and at most 1GB";
+  private static final String CORRUPT_SEGMENT_FORMAT = "Corrupt pack segment %s at offset %d";
+
+  private static final Logger logger = LoggerFactory.getLogger(PackFileStorageService.class);
+
+  private final ReferenceGenerator referenceGenerator;
+  private final Path uploadDirectory;
+  private final Path packDirectory;
+  private final Set<String> whitelist;
+  private final List<MediaType> contentTypes;
+  private final long maxContentLength;
+  private final long segmentSize;
+  private final int maxBufferedSize;
+  private final long compactionInterval;
+  private final double compactionThreshold;
+  private final Map<String, Location> index = new ConcurrentHashMap<>();
+  private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  private final Lock appendLock = new ReentrantLock();
+  private final Lock forceLock = new ReentrantLock();
+
+  private volatile Segment active;
+  private ScheduledExecutorService compactor;
+
+  public PackFileStorageService(ReferenceGenerator referenceGenerator,
+      UploadConfiguration uploadConfiguration, ApplicationHome applicationHome) {
+    this.referenceGenerator = referenceGenerator;
+    String uploadPath = uploadConfiguration.getDirectory();
+    uploadDirectory = uploadConfiguration.isApplicationHome()
+        ? applicationHome.getDir().toPath().resolve(uploadPath)
+        : Path.of(uploadPath);
+    packDirectory = uploadDirectory.resolve(PACK_ROOT);
+    whitelist = uploadConfiguration.getWhitelist();
+    contentTypes = whitelist.stream()
+        .map(MediaType::valueOf)
+        .collect(Collectors.toList());
+    maxContentLength = uploadConfiguration.getMaxContentLength().toBytes();
+    PackProperties packProperties = uploadConfiguration.getPack();
+    segmentSize = packProperties.getSegmentSize().toBytes();
+    if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+      throw new IllegalArgumentException(INVALID_SEGMENT_SIZE_MESSAGE);
+    }
+    maxBufferedSize = (int) Math.min(packProperties.getMaxBufferedSize().toBytes(), segmentSize);
+    compactionInterval = packProperties.getCompactionInterval().toMillis();
+    compactionThreshold = packProperties.getCompactionThreshold();
+  }
+
+  /**
+   * Opens the existing segments (if any), rebuilding the index from their contents, and starts the
+   * background compactor.
+   *
+   * @throws IOException If a segment can't be read, or a sealed segment is corrupt.
+   */
+  @PostConstruct
+  public void open() throws IOException {
+    Files.createDirectories(packDirectory);
+    List<Long> ids = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(packDirectory)) {
+      for (Path file : files) {
+        Matcher matcher = SEGMENT_PATTERN.matcher(file.getFileName().toString());
+        if (matcher.matches()) {
+          ids.add(Long.parseLong(matcher.group(1)));
+        }
+      }
+    }
+    ids.sort(null);
+    for (int i = 0; i < ids.size(); i++) {
+      Segment segment = new Segment(ids.get(i), segmentPath(ids.get(i)));
+      segments.put(segment.id, segment);
+      load(segment, i == ids.size() - 1);
+    }
+    for (Location location : index.values()) {
+      location.segment.live.addAndGet(location.length);
+    }
+    Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+    if (last == null) {
+      active = newSegment(1);
+    } else if (last.size >= segmentSize) {
+      active = newSegment(last.id + 1);
+    } else {
+      active = last;
+    }
+    for (Segment segment : segments.values()) {
+      if (segment != active) {
+        seal(segment);
+      }
+    }
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pack-compactor-");
+    threadFactory.setDaemon(true);
+    compactor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    compactor.scheduleWithFixedDelay(
+        this::compactQuietly, compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the background compactor, and closes all segments.
+   */
+  @PreDestroy
+  public void close() throws IOException {
+    if (compactor != null) {
+      compactor.shutdownNow();
+    }
+    appendLock.lock();
+    try {
+      for (Segment segment : segments.values()) {
+        segment.channel.close();
+      }
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  @Override
+  public StoredContent store(MultipartFile file)
+      throws IOException, HttpMediaTypeNotAcceptableException {
+    try (InputStream input = file.getInputStream()) {
+      return store(input, file.getContentType(), file.getOriginalFilename());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>Content up to {@code upload.pack.maxBufferedSize} is read into memory; larger content is
+   * spooled to a temporary file. In either case, the content is then appended to the active segment
+   * in a single write, so that a slow upload doesn't hold up others.</p>
+   */
+  @Override
+  public StoredContent store(InputStream input, String contentType, String filename)
+      throws IOException, HttpMediaTypeNotAcceptableException {
+    if (!whitelist.contains(contentType)) {
+      throw new HttpMediaTypeNotAcceptableException(contentTypes);
+    }
+    String reference = REFERENCE_PREFIX + referenceGenerator.newFilename(filename);
+    MeasuringInputStream measuringInput = new MeasuringInputStream(input, maxContentLength);
+    byte[] head = measuringInput.readNBytes(maxBufferedSize + 1);
+    if (head.length <= maxBufferedSize) {
+      add(reference, head.length,
+          (channel, position) -> writeFully(channel, ByteBuffer.wrap(head), position));
+    } else {
+      Path temp = Files.createTempFile(packDirectory, TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+      try {
+        try (OutputStream spool = Files.newOutputStream(temp)) {
+          spool.write(head);
+          measuringInput.transferTo(spool);
+        }
+        try (FileChannel spool = FileChannel.open(temp, StandardOpenOption.READ)) {
+          long length = spool.size();
+          add(reference, length,
+              (channel, position) -> transferFully(spool, 0, channel, position, length));
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+    return new StoredContent(reference, measuringInput.getCount(), measuringInput.getHexDigest());
+  }
+
+  @Override
+  public Resource retrieve(String reference) throws IOException {
+    Location location = isPacked(reference) ? index.get(reference) : null;
+    return (location != null)
+        ? location.toResource(reference)
+        : new FileSystemResource(uploadDirectory.resolve(reference));
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>Deleting packed content appends a tombstone to the active segment; the space held by the
+   * content is reclaimed when its segment is compacted.</p>
+   */
+  @Override
+  public boolean delete(String reference)
+      throws IOException, UnsupportedOperationException, SecurityException {
+    if (!isPacked(reference)) {
+      return Files.deleteIfExists(uploadDirectory.resolve(reference));
+    }
+    appendLock.lock();
+    try {
+      Location location = index.remove(reference);
+      if (location == null) {
+        return false;
+      }
+      location.segment.live.addAndGet(-location.length);
+      append(TOMBSTONE, reference, location.segment.id, null);
+      return true;
+    } finally {
+      appendLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a flag indicating whether {@code reference} refers to content stored in a segment (as
+   * opposed to a file stored one per upload).
+   */
+  public boolean isPacked(@NonNull String reference) {
+    return reference.startsWith(REFERENCE_PREFIX);
+  }
+
+  /**
+   * Appends the content of the file stored one per upload with the specified {@code reference} to
+   * the active segment, returning the new reference of the content. The original file is left in
+   * place.
+   *
+   * @param reference Reference to a file stored one per upload.
+   * @return Reference to the packed copy of the content.
+   * @throws IOException If the file can't be read, or the content can't be written.
+   */
+  @NonNull
+  public String pack(@NonNull String reference) throws IOException {
+    Path file = uploadDirectory.resolve(reference);
+    String packed = REFERENCE_PREFIX + referenceGenerator.newFilename(file.getFileName().toString());
+    try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+      long length = source.size();
+      add(packed, length, (channel, position) -> transferFully(source, 0, channel, position, length));
+    }
+    return packed;
+  }
+
+  /**
+   * Compacts every sealed segment whose live fraction is below {@code
+   * upload.pack.compactionThreshold}, copying its live records to the active segment and then
+   * deleting it.
+   *
+   * @return Number of segments compacted.
+   * @throws IOException If a segment can't be read, written, or deleted.
+   */
+  public int compact() throws IOException {
+    int compacted = 0;
+    for (Segment segment : segments.values()) {
+      if (segment != active && segment.mapped != null
+          && segment.live.get() < compactionThreshold * segment.size) {
+        compact(segment);
+        compacted++;
+      }
+    }
+    return compacted;
+  }
+
+  private void compactQuietly() {
+    try {
+      compact();
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Pack segment compaction failed; it will be retried", e);
+    }
+  }
+
+  private void compact(Segment segment) throws IOException {
+    ByteBuffer mapped = segment.mapped;
+    long position = 0;
+    while (position < segment.size) {
+      int offset = (int) position;
+      byte type = mapped.get(offset + TYPE_OFFSET);
+      int referenceLength = Short.toUnsignedInt(mapped.getShort(offset + REFERENCE_LENGTH_OFFSET));
+      long length = mapped.getLong(offset + LENGTH_OFFSET);
+      String reference = readReference(mapped, offset + HEADER_LENGTH, referenceLength);
+      int contentOffset = offset + HEADER_LENGTH + referenceLength;
+      appendLock.lock();
+      try {
+        if (type == BLOB) {
+          Location current = index.get(reference);
+          if (current != null && current.segment == segment && current.offset == contentOffset) {
+            ByteBuffer content = slice(mapped, contentOffset, length);
+            Location moved = append(BLOB, reference, length,
+                (channel, target) -> writeFully(channel, content, target));
+            index.put(reference, moved);
+            moved.segment.live.addAndGet(length);
+            segment.live.addAndGet(-length);
+          }
+        } else if (length != segment.id && segments.containsKey(length)) {
+          // The tombstone must outlive the segment holding the content it deletes.
+          append(TOMBSTONE, reference, length, null);
+        }
+      } finally {
+        appendLock.unlock();
+      }
+      position = contentOffset + ((type == BLOB) ? length : 0);
+    }
+    appendLock.lock();
+    try {
+      active.channel.force(false);
+      active.forced = active.size;
+      segments.remove(segment.id);
+    } finally {
+      appendLock.unlock();
+    }
+    segment.channel.close();
+    Files.delete(segment.path);
+  }
+
+  private void add(String reference, long length, BlobSource source) throws IOException {
+    Location location;
+    appendLock.lock();
+    try {
+      location = append(BLOB, reference, length, source);
+    } finally {
+      appendLock.unlock();
+    }
+    force(location.segment, location.offset + location.length);
+    index.put(reference, location);
+    location.segment.live.addAndGet(length);
+  }
+
+  /**
+   * Forces {@code segment} to disk at least up to {@code end}. If another thread's force already
+   * covered that position (including one that began while this thread waited), nothing is done.
+   */
+  private void force(Segment segment, long end) throws IOException {
+    if (segment.forced >= end) {
+      return;
+    }
+    forceLock.lock();
+    try {
+      if (segment.forced < end) {
+        long size = segment.size;
+        segment.channel.force(false);
+        segment.forced = Math.max(segment.forced, size);
+      }
+    } finally {
+      forceLock.unlock();
+    }
+  }
+
+  /**
+   * Appends a record to the active segment (starting a new one first, if necessary). The caller
+   * must hold {@link #appendLock}.
+   */
+  private Location append(byte type, String reference, long length, BlobSource source)
+      throws IOException {
+    byte[] referenceBytes = reference.getBytes(StandardCharsets.UTF_8);
+    long recordLength = HEADER_LENGTH + referenceBytes.length + ((type == BLOB) ? length : 0);
+    if (active.size > 0 && active.size + recordLength > segmentSize) {
+      Segment sealed = active;
+      active = newSegment(sealed.id + 1);
+      seal(sealed);
+    }
+    Segment segment = active;
+    long position = segment.size;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + referenceBytes.length)
+        .putInt(MAGIC)
+        .put(type)
+        .putShort((short) referenceBytes.length)
+        .putLong(length)
+        .put(referenceBytes)
+        .flip();
+    writeFully(segment.channel, header, position);
+    long contentOffset = position + header.capacity();
+    if (type == BLOB) {
+      source.writeTo(segment.channel, contentOffset);
+    }
+    segment.size = position + recordLength;
+    segment.modified = System.currentTimeMillis();
+    return new Location(segment, contentOffset, length);
+  }
+
+  private void load(Segment segment, boolean last) throws IOException {
+    FileChannel channel = segment.channel;
+    long size = channel.size();
+    long position = 0;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+    while (position < size) {
+      header.clear();
+      if (readFully(channel, header, position) < HEADER_LENGTH || header.getInt(0) != MAGIC) {
+        break;
+      }
+      byte type = header.get(TYPE_OFFSET);
+      int referenceLength = Short.toUnsignedInt(header.getShort(REFERENCE_LENGTH_OFFSET));
+      long length = header.getLong(LENGTH_OFFSET);
+      long contentOffset = position + HEADER_LENGTH + referenceLength;
+      long end = contentOffset + ((type == BLOB) ? length : 0);
+      ByteBuffer referenceBuffer = ByteBuffer.allocate(referenceLength);
+      if ((type != BLOB && type != TOMBSTONE) || length < 0 || end > size
+          || readFully(channel, referenceBuffer, position + HEADER_LENGTH) < referenceLength) {
+        break;
+      }
+      String reference = readReference(referenceBuffer, 0, referenceLength);
+      if (type == BLOB) {
+        index.put(reference, new Location(segment, contentOffset, length));
+      } else {
+        index.remove(reference);
+      }
+      position = end;
+    }
+    if (position < size) {
+      if (!last) {
+        throw new IOException(String.format(CORRUPT_SEGMENT_FORMAT, segment.path, position));
+      }
+      channel.truncate(position); // Incomplete final append.
+    }
+    segment.size = position;
+    segment.forced = position;
+  }
+
+  private Segment newSegment(long id) throws IOException {
+    Segment segment = new Segment(id, segmentPath(id));
+    segments.put(id, segment);
+    return segment;
+  }
+
+  private void seal(Segment segment) throws IOException {
+    segment.channel.force(false);
+    segment.forced = segment.size;
+    segment.modified = Files.getLastModifiedTime(segment.path).toMillis();
+    if (segment.size <= Integer.MAX_VALUE) {
+      segment.mapped = segment.channel.map(MapMode.READ_ONLY, 0, segment.size);
+    }
+  }
+
+  private Path segmentPath(long id) {
+    return packDirectory.resolve(String.format(SEGMENT_FORMAT, id));
+  }
+
+  private static String readReference(ByteBuffer buffer, int offset, int length) {
+    byte[] bytes = new byte[length];
+    buffer.duplicate().position(offset).get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, long offset, long length) {
+    return buffer.duplicate()
+        .position((int) offset)
+        .limit((int) (offset + length))
+        .slice();
+  }
+
+  private static int readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    int total = 0;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    for (long offset = position; buffer.hasRemaining(); ) {
+      offset += channel.write(buffer, offset);
+    }
+  }
+
+  private static void transferFully(FileChannel source, long sourcePosition, FileChannel target,
+      long targetPosition, long length) throws IOException {
+    for (long transferred = 0; transferred < length; ) {
+      long count = target.transferFrom(
+          source.position(sourcePosition + transferred), targetPosition + transferred,
+          length - transferred);
+      if (count <= 0) {
+        throw new IOException("Source content ended before the expected length");
+      }
+      transferred += count;
+    }
+  }
+
+  /**
+   * Writes the content of a blob to a segment at a specified position.
+   */
+  @FunctionalInterface
+  private interface BlobSource {
+
+    void writeTo(FileChannel channel, long position) throws IOException;
+
+  }
+
+  private static class Segment {
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final AtomicLong live = new AtomicLong();
+    private volatile long size;
+    private volatile MappedByteBuffer mapped;
+    /** Length of the prefix of this segment known to have been forced to disk. */
+    private volatile long forced;
+    /** Modification time (in milliseconds since the epoch), as of opening, sealing, or appending. */
+    private volatile long modified;
+
+    private Segment(long id, Path path) throws IOException {
+      this.id = id;
+      this.path = path;
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      modified = Files.getLastModifiedTime(path).toMillis();
+    }
+
+  }
+
+  private static class Location {
+
+    private final Segment segment;
+    private final long offset;
+    private final long length;
+
+    private Location(Segment segment, long offset, long length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    private Resource toResource(String reference) {
+      ByteBuffer mapped = segment.mapped;
+      String description = "Packed content [" + reference + "]";
+      long lastModified = segment.modified;
+      return (mapped != null)
+          ? new BufferResource(slice(mapped, offset, length), lastModified, description)
+          : new SegmentResource(this, lastModified, description);
+    }
+
+  }
+
+  /**
+   * {@link Resource} reading content from an unsealed segment with positional reads.
+   */
+  private static class SegmentResource extends AbstractResource {
+
+    private final Location location;
+    private final long lastModified;
+    private final String description;
+
+    private SegmentResource(Location location, long lastModified, String description) {
+      this.location = location;
+      this.lastModified = lastModified;
+      this.description = description;
+    }
+
+    @Override
+    public boolean exists() {
+      return true;
+    }
+
+    @Override
+    public long contentLength() {
+      return location.length;
+    }
+
+    @Override
+    public long lastModified() {
+      return lastModified;
+    }
+
+    @NonNull
+    @Override
+    public InputStream getInputStream() {
+      return Channels.newInputStream(readableChannel());
+    }
+
+    @NonNull
+    @Override
+    public ReadableByteChannel readableChannel() {
+      FileChannel channel = location.segment.channel;
+      long end = location.offset + location.length;
+      return new ReadableByteChannel() {
+
+        private long position = location.offset;
+        private boolean open = true;
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+          if (position >= end) {
+            return -1;
+          }
+          ByteBuffer bounded = target.slice();
+          bounded.limit((int) Math.min(bounded.remaining(), end - position));
+          int read = channel.read(bounded, position);
+          if (read > 0) {
+            position += read;
+            target.position(target.position() + read);
+          }
+          return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+          return open;
+        }
+
+        @Override
+        public void close() {
+          open = false;
+        }
+
+      };
+    }
+
+    @NonNull
+    @Override
+    public String getDescription() {
+      return description;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return this == other;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,79 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.PackProperties;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves files stored one per upload (by {@link LocalFilesystemStorageService}) into the segment
+ * files of {@link PackFileStorageService}, while the service continues to run. Images are processed
+ * in batches, in primary key order, exactly as by {@link ShardMigration}, except that the content of
+ * each file is appended to the active segment, under a new reference, rather than linked. The
+ * original files are deleted one metadata cache time to live after commit; if an image is deleted
+ * while its batch is in progress, its packed copy is deleted.
+ * <p>As with {@link ShardMigration}, this is an exception to the rule that the path of an image
+ * never changes: the new path always references the same bytes, and content entity tags (derived
+ * from the recorded digest) are unaffected.</p>
+ */
+@Component
+@Profile("service")
+@ConditionalOnProperty(prefix = "upload", name = "storage", havingValue = "pack")
+public class PackMigration {
+
+  private final PackFileStorageService storageService;
+  private final ExecutorService storageExecutor;
+  private final BatchMigration migration;
+  private final boolean enabled;
+
+  public PackMigration(PackFileStorageService storageService,
+      ImageRepository imageRepository, ImageService imageService,
+      TransactionTemplate transactionTemplate, UploadConfiguration uploadConfiguration,
+      @Qualifier("storageExecutor") ExecutorService storageExecutor) {
+    this.storageService = storageService;
+    this.storageExecutor = storageExecutor;
+    PackProperties properties = uploadConfiguration.getPack();
+    enabled = properties.isMigrate();
+    migration = new BatchMigration(imageRepository, imageService, transactionTemplate,
+        properties.getBatchSize(), imageService.getMetadataTimeToLive(), "pack-migration-");
+  }
+
+  /**
+   * Starts the migration in the background, if enabled by the {@code upload.pack.migrate}
+   * property.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (enabled) {
+      storageExecutor.execute(this::migrate);
+    }
+  }
+
+  /**
+   * Migrates all files not yet stored in segment files.
+   *
+   * @return Number of images whose content was packed.
+   */
+  public int migrate() {
+    return migration.move(storageService,
+        (source) -> storageService.isPacked(source) ? null : storageService.pack(source));
+  }
+
+  /**
+   * Deletes, without waiting any longer, the old files of images already moved; no requests are
+   * served once the application context is closing.
+   */
+  @PreDestroy
+  public void shutdown() {
+    migration.shutdown();
+  }
+
+}
@@ -0,0 +1,34 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.service.RequestPhases.Phase;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.lang.NonNull;
+
+/**
+ * Records the time spent in each advised method invocation as a {@link Phase} of the current
+ * request, when the current request is being timed (see {@link RequestPhases}).
+ */
+public class PhaseInterceptor implements MethodInterceptor {
+
+  private final Phase phase;
+
+  public PhaseInterceptor(@NonNull Phase phase) {
+    this.phase = phase;
+  }
+
+  @Override
+  public Object invoke(@NonNull MethodInvocation invocation) throws Throwable {
+    RequestPhases phases = RequestPhases.current();
+    if (phases == null) {
+      return invocation.proceed();
+    }
+    long start = System.nanoTime();
+    try {
+      return invocation.proceed();
+    } finally {
+      phases.record(phase, System.nanoTime() - start);
+    }
+  }
+
+}
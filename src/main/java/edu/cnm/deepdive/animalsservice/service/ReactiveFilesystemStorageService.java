@@ -0,0 +1,236 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking counterpart of {@link LocalFilesystemStorageService}, used by the {@code reactive}
+ * profile. Files are laid out exactly as by {@link LocalFilesystemStorageService} (see {@link
+ * UploadLayout}), so the two profiles can share an upload directory; however, content is streamed
+ * as {@link DataBuffer}s, written to and read from {@link AsynchronousFileChannel}s, rather than
+ * copied through {@link java.io.InputStream}s and {@link org.springframework.core.io.Resource}s.
+ * <p>Reads are driven by downstream demand, so a slow client holds at most the buffers its
+ * connection has requested. Directory creation, renames, and deletes run on the bounded elastic
+ * scheduler; opening a file and reading its attributes are done on the calling thread, as in
+ * WebFlux's own static resource handling.</p>
+ */
+@Service
+@Profile("reactive")
+public class ReactiveFilesystemStorageService {
+
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final int READ_BUFFER_SIZE = 16_384;
+
+  private final ReferenceGenerator referenceGenerator;
+  private final UploadLayout layout;
+  private final Path uploadDirectory;
+  private final Set<String> whitelist;
+  private final List<MediaType> contentTypes;
+  private final long maxContentLength;
+
+  public ReactiveFilesystemStorageService(
+      ReferenceGenerator referenceGenerator, UploadConfiguration uploadConfiguration,
+      ApplicationHome applicationHome) {
+    this.referenceGenerator = referenceGenerator;
+    layout = new UploadLayout(uploadConfiguration, applicationHome);
+    uploadDirectory = layout.getDirectory();
+    whitelist = uploadConfiguration.getWhitelist();
+    contentTypes = whitelist.stream()
+        .map(MediaType::valueOf)
+        .collect(Collectors.toList());
+    maxContentLength = uploadConfiguration.getMaxContentLength().toBytes();
+  }
+
+  /**
+   * Writes {@code content} to a new file in the store, computing its length and digest as it is
+   * written. The content is written to a temporary file in its final subdirectory, and then
+   * atomically renamed, so that a partially written file is never visible under the returned
+   * reference; if writing fails (or is cancelled), the temporary file is deleted.
+   *
+   * @param content     Content to be stored.
+   * @param contentType MIME type of the content.
+   * @param filename    Original filename of the content (may be {@code null}).
+   * @return {@link StoredContent} describing the stored content, or an error signal with {@link
+   * HttpMediaTypeNotAcceptableException} (if {@code contentType} isn't whitelisted), {@link
+   * MaxUploadSizeExceededException} (if the content is larger than {@code
+   * upload.maxContentLength}), or an {@link java.io.IOException}.
+   */
+  public Mono<StoredContent> store(@NonNull Flux<DataBuffer> content, @Nullable String contentType,
+      @Nullable String filename) {
+    if (!whitelist.contains(contentType)) {
+      return Mono.error(new HttpMediaTypeNotAcceptableException(contentTypes));
+    }
+    String newFileName = referenceGenerator.newFilename(filename);
+    String subdirectory = layout.getSubdirectory(newFileName);
+    Path resolvePath = uploadDirectory.resolve(subdirectory);
+    return Mono.usingWhen(
+        Mono
+            .fromCallable(() -> {
+              Files.createDirectories(resolvePath);
+              return Files.createTempFile(resolvePath, newFileName, TEMP_FILE_SUFFIX);
+            })
+            .subscribeOn(Schedulers.boundedElastic()),
+        (temp) -> {
+          Measure measure = new Measure(maxContentLength);
+          return DataBufferUtils
+              .write(content.doOnNext(measure::tally), temp, StandardOpenOption.WRITE)
+              .then(Mono
+                  .fromCallable(() -> {
+                    Files.move(temp, resolvePath.resolve(newFileName), StandardCopyOption.ATOMIC_MOVE);
+                    return new StoredContent(layout.getReference(subdirectory, newFileName),
+                        measure.getCount(), measure.getHexDigest());
+                  })
+                  .subscribeOn(Schedulers.boundedElastic()));
+        },
+        (temp) -> Mono
+            .fromCallable(() -> Files.deleteIfExists(temp))
+            .subscribeOn(Schedulers.boundedElastic())
+    );
+  }
+
+  /**
+   * Returns a {@link StoredFile} giving access to the content of the file with the specified
+   * {@code reference}.
+   *
+   * @param reference Opaque reference to the file, as returned by {@link #store(Flux, String,
+   *                  String)}.
+   * @return {@link StoredFile}, or an error signal with an {@link java.io.IOException} if the file
+   * doesn't exist, or can't be read.
+   */
+  public Mono<StoredFile> retrieve(@NonNull String reference) {
+    return Mono.fromCallable(() -> {
+      Path file = uploadDirectory.resolve(reference);
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return new StoredFile(file, attributes.size());
+    });
+  }
+
+  /**
+   * Returns a {@link StoredFile} giving access to the content of the file with the specified
+   * {@code reference} and (previously recorded) {@code length}, without accessing the file system;
+   * if the file doesn't exist, or can't be read, the error is signalled only when it is read.
+   *
+   * @param reference Opaque reference to the file, as returned by {@link #store(Flux, String,
+   *                  String)}.
+   * @param length    Length of the file content, in bytes, as returned by {@link #store(Flux,
+   *                  String, String)}.
+   * @return {@link StoredFile}.
+   */
+  @NonNull
+  public StoredFile locate(@NonNull String reference, long length) {
+    return new StoredFile(uploadDirectory.resolve(reference), length);
+  }
+
+  /**
+   * Deletes the file with the specified {@code reference}.
+   *
+   * @param reference Opaque reference to the file.
+   * @return {@code true} if the file was deleted; {@code false} if it didn't exist.
+   */
+  public Mono<Boolean> delete(@NonNull String reference) {
+    return Mono
+        .fromCallable(() -> Files.deleteIfExists(uploadDirectory.resolve(reference)))
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  /**
+   * Stored content, along with the attributes needed to write it in a response.
+   */
+  public static class StoredFile {
+
+    private final Path path;
+    private final long length;
+
+    private StoredFile(Path path, long length) {
+      this.path = path;
+      this.length = length;
+    }
+
+    /**
+     * Returns the length of the content, in bytes.
+     */
+    public long getLength() {
+      return length;
+    }
+
+    /**
+     * Returns {@code count} bytes of the content, starting at {@code position}, read from a new
+     * {@link AsynchronousFileChannel} (which is closed when the returned {@link Flux} terminates, or
+     * is cancelled) into buffers allocated by {@code bufferFactory}.
+     */
+    public Flux<DataBuffer> read(
+        @NonNull DataBufferFactory bufferFactory, long position, long count) {
+      return DataBufferUtils.takeUntilByteCount(
+          DataBufferUtils.readAsynchronousFileChannel(
+              () -> AsynchronousFileChannel.open(path, StandardOpenOption.READ),
+              position, bufferFactory, READ_BUFFER_SIZE),
+          count);
+    }
+
+  }
+
+  private static class Measure {
+
+    private final MessageDigest digest;
+    private final long limit;
+
+    private long count;
+
+    private Measure(long limit) {
+      try {
+        digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+      this.limit = limit;
+    }
+
+    private void tally(DataBuffer buffer) {
+      count += buffer.readableByteCount();
+      if (limit >= 0 && count > limit) {
+        throw new MaxUploadSizeExceededException(limit);
+      }
+      digest.update(buffer.asByteBuffer());
+    }
+
+    private long getCount() {
+      return count;
+    }
+
+    private String getHexDigest() {
+      StringBuilder builder = new StringBuilder();
+      for (byte b : digest.digest()) {
+        builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+        builder.append(Character.forDigit(b & 0xf, 16));
+      }
+      return builder.toString();
+    }
+
+  }
+
+}
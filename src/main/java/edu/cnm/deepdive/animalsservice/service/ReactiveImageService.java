@@ -0,0 +1,300 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.cnm.deepdive.animalsservice.configuration.CacheConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.CacheConfiguration.MetadataProperties;
+import edu.cnm.deepdive.animalsservice.model.dao.ReactiveImageRepository;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.ImagePage.Cursor;
+import edu.cnm.deepdive.animalsservice.service.ImagePage.Order;
+import edu.cnm.deepdive.animalsservice.service.ReactiveFilesystemStorageService.StoredFile;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link ImageService}, used by the {@code reactive} profile: implements
+ * the same operations on {@link Image} instances, reading metadata through {@link
+ * ReactiveImageRepository}, and content through {@link ReactiveFilesystemStorageService}. No
+ * operation blocks the calling thread.
+ * <p>Search always queries the database, since the {@link ImageSearchIndex} is built (and kept up to
+ * date) only by the servlet profile. Scaled derivatives, batch uploads, and bulk operations aren't
+ * implemented here.</p>
+ */
+@Service
+@Profile("reactive")
+public class ReactiveImageService {
+
+    private final ReactiveImageRepository imageRepository;
+    private final ReactiveFilesystemStorageService storageService;
+    private final AsyncCache<UUID, Image> metadataCache;
+
+    private static final String UNTITLED_FILENAME = "untitled";
+
+    public ReactiveImageService(ReactiveImageRepository imageRepository,
+                                ReactiveFilesystemStorageService storageService,
+                                CacheConfiguration cacheConfiguration) {
+        this.imageRepository = imageRepository;
+        this.storageService = storageService;
+        MetadataProperties metadataProperties = cacheConfiguration.getMetadata();
+        metadataCache = Caffeine.newBuilder()
+                .maximumSize(metadataProperties.getMaxSize())
+                .expireAfterWrite(metadataProperties.getTimeToLive())
+                .buildAsync();
+    }
+
+    /**
+     * Selects and returns the {@link Image} with the specified {@code key}, or completes empty if no
+     * such image exists. As in {@link ImageService#get(UUID)}, images are read through a bounded
+     * metadata cache, and a cached image is shared between callers, so it must not be modified; a
+     * miss is read by a single query, whose result is shared by concurrent callers for the same key.
+     *
+     * @param key Unique identifier of the {@link Image}.
+     * @return {@link Mono} emitting the selected image.
+     */
+    public Mono<Image> get(UUID key) {
+        return Mono.fromFuture(
+                metadataCache.get(key, (k, executor) -> imageRepository.findByExternalKey(k).toFuture()));
+    }
+
+    /**
+     * Resolves the specified external keys to {@link Image} instances, using the metadata cache
+     * where possible, and a single query (on the unique external key column) for the remainder.
+     *
+     * @param keys External keys of the images.
+     * @return {@link Mono} emitting an {@link ImageLookup} containing the images found and the keys
+     * not found, each in the order of {@code keys}.
+     */
+    public Mono<ImageLookup> get(@NonNull List<UUID> keys) {
+        return Mono
+                .fromFuture(metadataCache.getAll(keys, (uncached, executor) -> {
+                    List<UUID> query = new ArrayList<>();
+                    uncached.forEach(query::add);
+                    return imageRepository.findAllByExternalKeyIn(query)
+                            .collectMap(Image::getExternalKey, Function.identity())
+                            .toFuture();
+                }))
+                .map((found) -> {
+                    List<Image> images = new ArrayList<>(keys.size());
+                    List<UUID> missing = new ArrayList<>();
+                    for (UUID key : keys) {
+                        Image image = found.get(key);
+                        if (image != null) {
+                            images.add(image);
+                        } else {
+                            missing.add(key);
+                        }
+                    }
+                    return new ImageLookup(images, missing);
+                });
+    }
+
+    /**
+     * Discards the cached metadata (if any) of the image with the specified external key.
+     */
+    public void evict(@NonNull UUID externalKey) {
+        metadataCache.synchronous().invalidate(externalKey);
+    }
+
+    /**
+     * Updates the description of the image with the specified external key, completing empty if no
+     * such image exists (or if the new description is {@code null}).
+     *
+     * @param externalKey Unique identifier of the {@link Image}.
+     * @param description New description (may be {@code null}).
+     * @return {@link Mono} emitting the new description.
+     */
+    public Mono<String> updateDescription(UUID externalKey, String description) {
+        return imageRepository.updateDescription(externalKey, description, LocalDateTime.now())
+                .filter((updated) -> updated > 0)
+                .doOnNext((updated) -> evict(externalKey))
+                .flatMap((updated) -> Mono.justOrEmpty(description));
+    }
+
+    /**
+     * Deletes the specified {@link Image} instance from the database and the file store. The row is
+     * deleted first, and the file only afterwards, so that no request can find an image whose content
+     * is already gone; if the file can't be deleted, it is merely orphaned.
+     *
+     * @param image Previously persisted {@link Image} instance to be deleted.
+     * @return {@link Mono} completing when both deletes are done, or with an error signal (with an
+     * {@link java.io.IOException}) if the file can't be deleted (after the row has been).
+     */
+    public Mono<Void> delete(Image image) {
+        return imageRepository.deleteByExternalKey(image.getExternalKey())
+                .doOnSuccess((deleted) -> evict(image.getExternalKey()))
+                .then(Mono.defer(() -> storageService.delete(image.getPath())))
+                .then();
+    }
+
+    /**
+     * Streams {@code content} into the file store, and persists a new {@link Image} referencing it.
+     * If the image can't be persisted, the stored content is deleted.
+     *
+     * @param content     Image content.
+     * @param contentType MIME type of the image content.
+     * @param filename    Original filename of the image content (may be {@code null}).
+     * @param title       Title of the image.
+     * @param description Description of the image (may be {@code null}).
+     * @return {@link Mono} emitting the persisted {@link Image}, or an error signal as described for
+     * {@link ReactiveFilesystemStorageService#store(Flux, String, String)}.
+     */
+    public Mono<Image> store(@NonNull Flux<DataBuffer> content, @Nullable String contentType,
+                             @Nullable String filename, String title, String description) {
+        return storageService.store(content, contentType, filename)
+                .flatMap((stored) -> imageRepository
+                        .save(newImage(stored, filename, contentType, title, description))
+                        .onErrorResume((e) -> storageService.delete(stored.getReference())
+                                .onErrorResume((ignored) -> Mono.empty())
+                                .then(Mono.error(e))));
+    }
+
+    /**
+     * Returns a {@link StoredFile} giving access to the content of {@code image}. If the length of
+     * the content was recorded at ingest, the file store isn't accessed until the content is read.
+     */
+    public Mono<StoredFile> retrieve(Image image) {
+        Long length = image.getContentLength();
+        return (length != null)
+                ? Mono.just(storageService.locate(image.getPath(), length))
+                : storageService.retrieve(image.getPath());
+    }
+
+    /**
+     * Selects and returns all images, ordered by title.
+     */
+    public Flux<Image> list() {
+        return imageRepository.findAllByOrderByTitleAsc();
+    }
+
+    /**
+     * Selects and returns one page of images, using the same keyset pagination (and cursors) as
+     * {@link ImageService#list(Order, int, String)}, including its separate phase for untitled images
+     * when ordering by title.
+     *
+     * @param order  Listing order; ignored if {@code cursor} is specified.
+     * @param limit  Maximum number of images in the page.
+     * @param cursor Opaque cursor selecting the page; {@code null} for the first page.
+     * @return {@link Mono} emitting the selected page of images.
+     * @throws edu.cnm.deepdive.animalsservice.exception.InvalidQueryException If {@code cursor} is
+     *                                                                          invalid.
+     */
+    public Mono<ImagePage> list(@NonNull Order order, int limit, @Nullable String cursor) {
+        Cursor position = (cursor != null) ? Cursor.decode(cursor) : null;
+        Order effectiveOrder = (position != null) ? position.getOrder() : order;
+        boolean forward = (position == null || position.isForward());
+        Flux<Image> selected;
+        if (effectiveOrder == Order.TITLE) {
+            selected = selectByTitle(position, forward, limit + 1);
+        } else if (position == null) {
+            selected = imageRepository.findFirstByCreated(limit + 1);
+        } else if (forward) {
+            selected = imageRepository.findAfterByCreated(
+                    toLocalDateTime(position), position.getId(), limit + 1);
+        } else {
+            selected = imageRepository.findBeforeByCreated(
+                    toLocalDateTime(position), position.getId(), limit + 1);
+        }
+        return selected
+                .collectList()
+                .map((images) -> {
+                    boolean more = images.size() > limit;
+                    List<Image> page = new ArrayList<>(more ? images.subList(0, limit) : images);
+                    if (!forward) {
+                        Collections.reverse(page);
+                    }
+                    String next = null;
+                    String previous = null;
+                    if (!page.isEmpty()) {
+                        Image first = page.get(0);
+                        Image last = page.get(page.size() - 1);
+                        if (forward ? more : position != null) {
+                            next = Cursor.after(effectiveOrder, last).encode();
+                        }
+                        if (forward ? position != null : more) {
+                            previous = Cursor.before(effectiveOrder, first).encode();
+                        }
+                    }
+                    return new ImagePage(page, next, previous);
+                });
+    }
+
+    /**
+     * Selects and returns all images with a title or description containing {@code fragment}:
+     * first those with matching titles, then those matching only on description, each ordered by
+     * title. Rows are emitted as they are read, so memory use is independent of the number of
+     * images.
+     *
+     * @param fragment Substring to search for (if {@code null}, all images are returned).
+     * @return Matching images.
+     */
+    public Flux<Image> search(@Nullable String fragment) {
+        return (fragment != null)
+                ? imageRepository.findAllByTitleContainsIgnoreCaseOrderByTitleAsc(fragment)
+                .concatWith(imageRepository.findAllByDescriptionOnlyContainsIgnoreCase(fragment))
+                : imageRepository.findAllByOrderByTitleAsc();
+    }
+
+    private Flux<Image> selectByTitle(@Nullable Cursor position, boolean forward, int count) {
+        Flux<Image> selected;
+        if (position == null) {
+            selected = continueWith(imageRepository.findFirstByTitle(count), count,
+                    imageRepository::findFirstUntitled);
+        } else if (forward && position.getTitle() != null) {
+            selected = continueWith(
+                    imageRepository.findAfterByTitle(position.getTitle(), position.getId(), count), count,
+                    imageRepository::findFirstUntitled);
+        } else if (forward) {
+            selected = imageRepository.findAfterUntitled(position.getId(), count);
+        } else if (position.getTitle() != null) {
+            selected = imageRepository.findBeforeByTitle(position.getTitle(), position.getId(), count);
+        } else {
+            selected = continueWith(imageRepository.findBeforeUntitled(position.getId(), count), count,
+                    imageRepository::findLastByTitle);
+        }
+        return selected;
+    }
+
+    private static Flux<Image> continueWith(
+            Flux<Image> phase, int count, IntFunction<Flux<Image>> nextPhase) {
+        return phase
+                .collectList()
+                .flatMapMany((images) -> (images.size() < count)
+                        ? Flux.fromIterable(images).concatWith(nextPhase.apply(count - images.size()))
+                        : Flux.fromIterable(images));
+    }
+
+    private static LocalDateTime toLocalDateTime(Cursor position) {
+        return LocalDateTime.ofInstant(position.getCreated().toInstant(), ZoneId.systemDefault());
+    }
+
+    private Image newImage(StoredContent content, String originalFilename, String contentType,
+                           String title, String description) {
+        Image image = new Image();
+        image.setTitle(title);
+        image.setDescription(description);
+        image.setName(originalFilename != null ? originalFilename : UNTITLED_FILENAME);
+        image.setContentType(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        image.setPath(content.getReference());
+        image.setContentLength(content.getLength());
+        image.setDigest(content.getDigest());
+        return image;
+    }
+
+}
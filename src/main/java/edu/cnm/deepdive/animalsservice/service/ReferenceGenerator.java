@@ -0,0 +1,22 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Generates the filenames under which uploaded content is written by {@link
+ * LocalFilesystemStorageService}. Implementations must be safe for concurrent use, and must never
+ * return the same filename twice (within the lifetime of the instance).
+ */
+public interface ReferenceGenerator {
+
+  /**
+   * Returns a new filename, preserving the extension (if any) of {@code originalFilename}.
+   *
+   * @param originalFilename Filename supplied by the client (may be {@code null}).
+   * @return Unique filename.
+   */
+  @NonNull
+  String newFilename(@Nullable String originalFilename);
+
+}
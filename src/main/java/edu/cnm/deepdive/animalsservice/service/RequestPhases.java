@@ -0,0 +1,110 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import java.util.Locale;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Accumulates the time spent in each {@link Phase} of processing a single request. An instance is
+ * bound to the current thread by {@link #start()}, and unbound by {@link #clear()}; code that
+ * measures a phase records into the instance returned by {@link #current()}, if any. When no
+ * request is being timed, recording costs a single thread-local read.
+ */
+public class RequestPhases {
+
+  private static final ThreadLocal<RequestPhases> CURRENT = new ThreadLocal<>();
+
+  private final long start = System.nanoTime();
+  private final long[] durations = new long[Phase.values().length];
+  private final int[] counts = new int[Phase.values().length];
+  private long end;
+
+  private RequestPhases() {
+  }
+
+  /**
+   * Creates an instance, starting its clock, and binds it to the current thread.
+   */
+  @NonNull
+  public static RequestPhases start() {
+    RequestPhases phases = new RequestPhases();
+    CURRENT.set(phases);
+    return phases;
+  }
+
+  /**
+   * Returns the instance bound to the current thread, or {@code null} if the current request isn't
+   * being timed.
+   */
+  @Nullable
+  public static RequestPhases current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Unbinds any instance from the current thread.
+   */
+  public static void clear() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Adds {@code nanos} to the time spent in {@code phase}.
+   */
+  public void record(@NonNull Phase phase, long nanos) {
+    durations[phase.ordinal()] += nanos;
+    counts[phase.ordinal()]++;
+  }
+
+  /**
+   * Returns the total time, in nanoseconds, recorded for {@code phase}.
+   */
+  public long getDuration(@NonNull Phase phase) {
+    return durations[phase.ordinal()];
+  }
+
+  /**
+   * Returns the number of times {@code phase} was recorded.
+   */
+  public int getCount(@NonNull Phase phase) {
+    return counts[phase.ordinal()];
+  }
+
+  /**
+   * Returns the time, in nanoseconds, since this instance was created; after {@link #stop()}, the
+   * time between creation and stopping.
+   */
+  public long getElapsed() {
+    return ((end != 0) ? end : System.nanoTime()) - start;
+  }
+
+  /**
+   * Stops the clock of this instance.
+   */
+  public void stop() {
+    end = System.nanoTime();
+  }
+
+  /**
+   * Phases of request processing that are timed separately.
+   */
+  public enum Phase {
+
+    /** Invocations of repository methods. */
+    DB,
+    /** Invocations of {@link StorageService} methods. */
+    STORAGE,
+    /** Writing the response body, including serialization, and reading of streamed content. */
+    WRITE;
+
+    /**
+     * Returns the metric name of this phase, as used in {@code Server-Timing} headers.
+     */
+    @NonNull
+    public String getMetricName() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+
+  }
+
+}
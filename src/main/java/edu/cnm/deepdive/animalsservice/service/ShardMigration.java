@@ -0,0 +1,90 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.ShardingProperties;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import java.util.concurrent.ExecutorService;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves files stored by {@link LocalFilesystemStorageService} under a previous sharding layout to
+ * the layout given by the current sharding strategy, while the service continues to run. Images are
+ * processed in batches, in primary key order: each file is hard-linked (or copied) to its new
+ * location, and the paths of the batch are then updated in a single transaction, each conditional
+ * on the path being unchanged. Until commit, requests read the old files; afterwards, they read the
+ * new ones. The old files are deleted only once the metadata cache of {@link ImageService} can no
+ * longer hold their paths (one time to live after commit), so that a request that resolved an old
+ * path shortly before commit can still read it. If an image is deleted while its batch is in
+ * progress, its new link is removed. An interrupted migration can simply be restarted.
+ * <p>This is one of the two exceptions (with {@link PackMigration}) to the rule that the path of an
+ * image never changes: the path is rewritten by {@link ImageRepository#updatePath(java.util.UUID,
+ * String, String)}, but always to a reference to the same bytes. Content entity tags are derived
+ * from the recorded digest rather than the path, so they are unaffected (except for images whose
+ * digest hasn't been backfilled yet).</p>
+ */
+@Component
+@Profile("service")
+@ConditionalOnProperty(prefix = "upload", name = "storage", havingValue = "local", matchIfMissing = true)
+public class ShardMigration {
+
+  private final LocalFilesystemStorageService storageService;
+  private final ExecutorService storageExecutor;
+  private final BatchMigration migration;
+  private final boolean enabled;
+
+  public ShardMigration(LocalFilesystemStorageService storageService,
+      ImageRepository imageRepository, ImageService imageService,
+      TransactionTemplate transactionTemplate, UploadConfiguration uploadConfiguration,
+      @Qualifier("storageExecutor") ExecutorService storageExecutor) {
+    this.storageService = storageService;
+    this.storageExecutor = storageExecutor;
+    ShardingProperties properties = uploadConfiguration.getSharding();
+    enabled = properties.isMigrate();
+    migration = new BatchMigration(imageRepository, imageService, transactionTemplate,
+        properties.getBatchSize(), imageService.getMetadataTimeToLive(), "shard-migration-");
+  }
+
+  /**
+   * Starts the migration in the background, if enabled by the {@code upload.sharding.migrate}
+   * property.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (enabled) {
+      storageExecutor.execute(this::migrate);
+    }
+  }
+
+  /**
+   * Migrates all files not stored according to the current sharding strategy.
+   *
+   * @return Number of images whose files were moved.
+   */
+  public int migrate() {
+    return migration.move(storageService, (source) -> {
+      String target = storageService.getShardedReference(source);
+      if (target.equals(source)) {
+        return null;
+      }
+      storageService.link(source, target);
+      return target;
+    });
+  }
+
+  /**
+   * Deletes, without waiting any longer, the old files of images already moved; no requests are
+   * served once the application context is closing.
+   */
+  @PreDestroy
+  public void shutdown() {
+    migration.shutdown();
+  }
+
+}
@@ -0,0 +1,157 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Records the latency and outcome of the {@code store}, {@code retrieve}, and {@code delete}
+ * operations of a {@link StorageService}, along with the number of bytes stored and retrieved, and
+ * the distribution of stored content sizes. Applied as advice to a proxy of the {@link
+ * StorageService}, so that implementations need no instrumentation of their own. Meters are created
+ * once, when this instance is bound to the meter registry, so the per-operation cost is a clock read
+ * and a few atomic updates.
+ * <ul>
+ *   <li>{@code storage.operations} (timer): tagged with {@code operation} and {@code outcome}
+ *   ({@code success} or {@code error}).</li>
+ *   <li>{@code storage.bytes} (counter): tagged with {@code operation} ({@code store} or {@code
+ *   retrieve}). Retrieved bytes are counted as the length of each retrieved resource, whether or not
+ *   all of it is subsequently read.</li>
+ *   <li>{@code upload.size} (distribution summary): size of each stored item.</li>
+ * </ul>
+ */
+public class StorageMetrics implements MethodInterceptor, MeterBinder {
+
+  private static final String OPERATIONS_METER = "storage.operations";
+  private static final String BYTES_METER = "storage.bytes";
+  private static final String UPLOAD_SIZE_METER = "upload.size";
+  private static final String OPERATION_TAG = "operation";
+  private static final String OUTCOME_TAG = "outcome";
+  private static final String SUCCESS = "success";
+  private static final String ERROR = "error";
+  private static final String STORE = "store";
+  private static final String RETRIEVE = "retrieve";
+  private static final String DELETE = "delete";
+  private static final Set<String> OPERATIONS = Set.of(STORE, RETRIEVE, DELETE);
+  private static final double MIN_EXPECTED_UPLOAD_SIZE = 1024;
+
+  private final long maxExpectedUploadSize;
+
+  private volatile Meters meters;
+
+  /**
+   * Initializes this instance with the upper bound of the histogram buckets published for {@code
+   * upload.size}. No meters are created until {@link #bindTo(MeterRegistry)} is invoked; until then,
+   * operations pass through unrecorded.
+   *
+   * @param maxExpectedUploadSize Largest expected size of stored content, in bytes.
+   */
+  public StorageMetrics(long maxExpectedUploadSize) {
+    this.maxExpectedUploadSize = maxExpectedUploadSize;
+  }
+
+  @Override
+  public void bindTo(@NonNull MeterRegistry registry) {
+    meters = new Meters(registry, maxExpectedUploadSize);
+  }
+
+  @Override
+  public Object invoke(@NonNull MethodInvocation invocation) throws Throwable {
+    Meters meters = this.meters;
+    String operation = invocation.getMethod().getName();
+    if (meters == null || !OPERATIONS.contains(operation)) {
+      return invocation.proceed();
+    }
+    long start = System.nanoTime();
+    Object result;
+    try {
+      result = invocation.proceed();
+    } catch (Throwable e) {
+      meters.errors.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      throw e;
+    }
+    meters.successes.get(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    if (result instanceof StoredContent) {
+      meters.recordStored(((StoredContent) result).getLength());
+    } else if (STORE.equals(operation) && invocation.getArguments()[0] instanceof MultipartFile) {
+      meters.recordStored(((MultipartFile) invocation.getArguments()[0]).getSize());
+    } else if (result instanceof Resource) {
+      meters.recordRetrieved((Resource) result);
+    }
+    return result;
+  }
+
+  private static class Meters {
+
+    private final Map<String, Timer> successes;
+    private final Map<String, Timer> errors;
+    private final Counter storedBytes;
+    private final Counter retrievedBytes;
+    private final DistributionSummary uploadSizes;
+
+    private Meters(MeterRegistry registry, long maxExpectedUploadSize) {
+      successes = timers(registry, SUCCESS);
+      errors = timers(registry, ERROR);
+      storedBytes = bytesCounter(registry, STORE);
+      retrievedBytes = bytesCounter(registry, RETRIEVE);
+      uploadSizes = DistributionSummary.builder(UPLOAD_SIZE_METER)
+          .description("Size of content stored in the file store")
+          .baseUnit(BaseUnits.BYTES)
+          .publishPercentileHistogram()
+          .minimumExpectedValue(MIN_EXPECTED_UPLOAD_SIZE)
+          .maximumExpectedValue(Math.max((double) maxExpectedUploadSize, 2 * MIN_EXPECTED_UPLOAD_SIZE))
+          .register(registry);
+    }
+
+    private void recordStored(long length) {
+      storedBytes.increment(length);
+      uploadSizes.record(length);
+    }
+
+    private void recordRetrieved(Resource resource) {
+      try {
+        retrievedBytes.increment(resource.contentLength());
+      } catch (IOException e) {
+        // Nothing to count; the caller will find out for itself that the resource can't be read.
+      }
+    }
+
+    private static Map<String, Timer> timers(MeterRegistry registry, String outcome) {
+      return Map.of(
+          STORE, timer(registry, STORE, outcome),
+          RETRIEVE, timer(registry, RETRIEVE, outcome),
+          DELETE, timer(registry, DELETE, outcome)
+      );
+    }
+
+    private static Timer timer(MeterRegistry registry, String operation, String outcome) {
+      return Timer.builder(OPERATIONS_METER)
+          .description("Latency of file store operations")
+          .tag(OPERATION_TAG, operation)
+          .tag(OUTCOME_TAG, outcome)
+          .register(registry);
+    }
+
+    private static Counter bytesCounter(MeterRegistry registry, String operation) {
+      return Counter.builder(BYTES_METER)
+          .description("Bytes written to or read from the file store")
+          .baseUnit(BaseUnits.BYTES)
+          .tag(OPERATION_TAG, operation)
+          .register(registry);
+    }
+
+  }
+
+}
@@ -1,6 +1,7 @@
 package edu.cnm.deepdive.animalsservice.service;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 
 import org.springframework.context.annotation.Profile;
@@ -16,9 +17,13 @@ import org.springframework.web.multipart.MultipartFile;
  * <ul>
  *   <li>Files will not be updated or versioned; updates must be saved as distinct files.</li>
  *   <li>Filenames will not be respected by the file store itself; instead, an opaque {@link String}
- *   reference, presumed unique, will be returned when a file is stored, and the same reference must
- *   be provided when retrieving or deleting a file. On the other hand, this means that a consumer
- *   of a service implementing this interface need not be concerned with filename collisions.</li>
+ *   reference will be returned when a file is stored, and the same reference must be provided when
+ *   retrieving or deleting a file. On the other hand, this means that a consumer of a service
+ *   implementing this interface need not be concerned with filename collisions.</li>
+ *   <li>An implementation may return the same reference for files with identical content. In that
+ *   case, each {@link #store(MultipartFile)} invocation must be balanced by a {@link
+ *   #delete(String)} invocation; the content is removed only when the last such reference is
+ *   deleted.</li>
  * </ul>
  */
 @Service
@@ -26,15 +31,35 @@ import org.springframework.web.multipart.MultipartFile;
 public interface StorageService {
 
   /**
-   * Stores the specified file, returning an opaque reference to the file as a {@link String}.
+   * Stores the specified file, returning the opaque reference to the stored file, along with its
+   * length and digest.
    *
    * @param file Uploaded file.
-   * @return Opaque reference, to be used when retrieving or deleting the file from the store.
+   * @return {@link StoredContent} containing the opaque reference (to be used when retrieving or
+   * deleting the file from the store), length, and digest of the stored file.
    * @throws IOException                         If the file cannot be written for any reason.
    * @throws HttpMediaTypeNotAcceptableException If the content-type of {@code file} is not
    *                                             allowed.
    */
-  String store(MultipartFile file) throws IOException, HttpMediaTypeNotAcceptableException;
+  StoredContent store(MultipartFile file) throws IOException, HttpMediaTypeNotAcceptableException;
+
+  /**
+   * Stores the content read from {@code input}, returning the opaque reference to the stored
+   * content, along with its length and digest. The content is written to the store in a single pass:
+   * implementations must compute the length and digest as the content is written, and must not make
+   * the content visible under the returned reference until it has been completely written.
+   *
+   * @param input       Source of content; this stream is read to its end, but not closed.
+   * @param contentType MIME type of the content.
+   * @param filename    Original filename of the content (may be {@code null}).
+   * @return {@link StoredContent} describing the stored content.
+   * @throws IOException                         If the content cannot be written for any reason.
+   * @throws HttpMediaTypeNotAcceptableException If {@code contentType} is not allowed.
+   * @throws org.springframework.web.multipart.MaxUploadSizeExceededException If the content is
+   *                                             larger than the configured limit.
+   */
+  StoredContent store(InputStream input, String contentType, String filename)
+      throws IOException, HttpMediaTypeNotAcceptableException;
 
   /**
    * Retrieves a file from a reference (as returned by {@link #store(MultipartFile)}), returning a
@@ -61,4 +86,15 @@ public interface StorageService {
    */
   boolean delete(String reference) throws IOException, UnsupportedOperationException, SecurityException;
 
+  /**
+   * Records that the content with the specified {@code reference} was requested, even if it wasn't
+   * retrieved from this service (e.g. because it was served from a cache, or the client's copy was
+   * still current). Implementations that place content according to how recently it was read use
+   * this to keep popular content in place; by default, this does nothing.
+   *
+   * @param reference Opaque reference {@link String} returned from {@link #store(MultipartFile)}.
+   */
+  default void recordAccess(String reference) {
+  }
+
 }
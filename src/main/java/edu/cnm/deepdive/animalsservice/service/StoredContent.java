@@ -0,0 +1,52 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import org.springframework.lang.NonNull;
+
+/**
+ * Describes content written to a {@link StorageService}: the opaque reference to the stored
+ * content, along with its length in bytes and its SHA-256 digest, both computed while the content
+ * was written.
+ */
+public class StoredContent {
+
+  private final String reference;
+  private final long length;
+  private final String digest;
+
+  /**
+   * Initializes this instance with the specified reference, length, and digest.
+   *
+   * @param reference Opaque reference to the stored content.
+   * @param length    Length of the stored content, in bytes.
+   * @param digest    Lowercase hexadecimal SHA-256 digest of the stored content.
+   */
+  public StoredContent(@NonNull String reference, long length, @NonNull String digest) {
+    this.reference = reference;
+    this.length = length;
+    this.digest = digest;
+  }
+
+  /**
+   * Returns the opaque reference to the stored content.
+   */
+  @NonNull
+  public String getReference() {
+    return reference;
+  }
+
+  /**
+   * Returns the length of the stored content, in bytes.
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Returns the lowercase hexadecimal SHA-256 digest of the stored content.
+   */
+  @NonNull
+  public String getDigest() {
+    return digest;
+  }
+
+}
@@ -0,0 +1,108 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.TieringProperties;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository.ImageReference;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically demotes the files of images created more than {@code upload.tiering.demoteAfter}
+ * ago, and not read within {@code upload.tiering.idleAfter}, to the cold tier of {@link
+ * TieredStorageService}. Images are read in batches, in primary key order; since demotion doesn't
+ * change references, no database updates are needed, and an interrupted scan is simply resumed from
+ * the start at the next interval.
+ */
+@Component
+@Profile("service")
+@ConditionalOnProperty(prefix = "upload.tiering", name = "enabled", havingValue = "true")
+public class TierDemotion {
+
+  private static final Logger logger = LoggerFactory.getLogger(TierDemotion.class);
+
+  private final TieredStorageService storageService;
+  private final ImageRepository imageRepository;
+  private final long demoteAfter;
+  private final long idleAfter;
+  private final long scanInterval;
+  private final int batchSize;
+  private final ScheduledExecutorService scanner;
+
+  public TierDemotion(TieredStorageService storageService, ImageRepository imageRepository,
+      UploadConfiguration uploadConfiguration) {
+    this.storageService = storageService;
+    this.imageRepository = imageRepository;
+    TieringProperties properties = uploadConfiguration.getTiering();
+    demoteAfter = properties.getDemoteAfter().toMillis();
+    idleAfter = properties.getIdleAfter().toMillis();
+    scanInterval = properties.getScanInterval().toMillis();
+    batchSize = properties.getBatchSize();
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tier-demotion-");
+    threadFactory.setDaemon(true);
+    scanner = Executors.newSingleThreadScheduledExecutor(threadFactory);
+  }
+
+  /**
+   * Schedules demotion scans at the interval given by {@code upload.tiering.scanInterval}.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    scanner.scheduleWithFixedDelay(() -> {
+      try {
+        demote(System.currentTimeMillis());
+      } catch (RuntimeException e) {
+        logger.warn("Demotion scan failed; it will be retried", e);
+      }
+    }, scanInterval, scanInterval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    scanner.shutdownNow();
+  }
+
+  /**
+   * Demotes all files eligible for demotion as of the specified time.
+   *
+   * @param now Time (in milliseconds since the epoch) used as the basis of the eligibility criteria.
+   * @return Number of files demoted.
+   */
+  public int demote(long now) {
+    Date cutoff = new Date(now - demoteAfter);
+    long idleCutoff = now - idleAfter;
+    Pageable pageable = PageRequest.of(0, batchSize);
+    int demoted = 0;
+    List<ImageReference> batch = imageRepository.findFirstReferencesCreatedBefore(cutoff, pageable);
+    while (!batch.isEmpty()) {
+      for (ImageReference reference : batch) {
+        try {
+          if (storageService.demote(reference.getPath(), idleCutoff)) {
+            demoted++;
+          }
+        } catch (IOException e) {
+          // Leave the file in the hot tier; it will be retried at the next scan.
+        }
+      }
+      ImageReference last = batch.get(batch.size() - 1);
+      batch = imageRepository.findReferencesCreatedBeforeAfter(cutoff, last.getId(), pageable);
+    }
+    return demoted;
+  }
+
+}
@@ -0,0 +1,248 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.TieringProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Decorates {@link LocalFilesystemStorageService} with a cold tier: a second directory, to which
+ * files that are rarely read are demoted (compressed with gzip, if {@code
+ * upload.tiering.compress}), freeing space on the volume holding the upload directory (the hot
+ * tier). References are unchanged by demotion, so no database updates are needed; when a demoted
+ * file is retrieved, it is first promoted back to the hot tier.
+ * <p>Demotion is driven by {@link TierDemotion}, which selects files by the creation timestamps of
+ * their images; this class additionally skips any file read (or promoted) more recently than {@code
+ * upload.tiering.idleAfter}. The time of the last read of each file since startup is tracked in
+ * memory, along with requests answered without reading it (from the {@link ContentCache}, or with
+ * {@code 304 Not Modified}), which {@link ImageService} records through {@link
+ * #recordAccess(String)}; the modification time of the file (which is reset by promotion) stands in
+ * for reads before startup.</p>
+ */
+@Service
+@Primary
+@Profile("service")
+@ConditionalOnProperty(prefix = "upload.tiering", name = "enabled", havingValue = "true")
+public class TieredStorageService implements StorageService, MeterBinder {
+
+  private static final String COMPRESSED_SUFFIX = ".gz";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final int LOCK_STRIPES = 64;
+
+  private final LocalFilesystemStorageService hotStorage;
+  private final Path hotDirectory;
+  private final Path coldDirectory;
+  private final boolean compress;
+  private final Map<String, Long> lastReads = new ConcurrentHashMap<>();
+  private final Lock[] locks = new Lock[LOCK_STRIPES];
+  private final AtomicLong promotions = new AtomicLong();
+  private final AtomicLong demotions = new AtomicLong();
+
+  public TieredStorageService(LocalFilesystemStorageService hotStorage,
+      UploadConfiguration uploadConfiguration, ApplicationHome applicationHome) {
+    this.hotStorage = hotStorage;
+    TieringProperties properties = uploadConfiguration.getTiering();
+    Path home = applicationHome.getDir().toPath();
+    hotDirectory = uploadConfiguration.isApplicationHome()
+        ? home.resolve(uploadConfiguration.getDirectory())
+        : Path.of(uploadConfiguration.getDirectory());
+    coldDirectory = uploadConfiguration.isApplicationHome()
+        ? home.resolve(properties.getDirectory())
+        : Path.of(properties.getDirectory());
+    compress = properties.isCompress();
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  @Override
+  public void bindTo(@NonNull MeterRegistry registry) {
+    FunctionCounter.builder("storage.tier.promotions", promotions, AtomicLong::get)
+        .description("Number of files promoted from the cold tier on retrieval")
+        .register(registry);
+    FunctionCounter.builder("storage.tier.demotions", demotions, AtomicLong::get)
+        .description("Number of files demoted to the cold tier")
+        .register(registry);
+  }
+
+  @Override
+  public StoredContent store(MultipartFile file)
+      throws IOException, HttpMediaTypeNotAcceptableException {
+    return hotStorage.store(file);
+  }
+
+  @Override
+  public StoredContent store(InputStream input, String contentType, String filename)
+      throws IOException, HttpMediaTypeNotAcceptableException {
+    return hotStorage.store(input, contentType, filename);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>If the file has been demoted, it is promoted back to the hot tier before this method
+   * returns. The read is recorded under the same lock that {@link #demote(String, long)} holds
+   * while deleting the hot copy, so the file can't be demoted again before the caller reads it
+   * (unless it stays idle for {@code upload.tiering.idleAfter}).</p>
+   */
+  @Override
+  public Resource retrieve(String reference) throws IOException {
+    Lock lock = lock(reference);
+    lock.lock();
+    try {
+      lastReads.put(reference, System.currentTimeMillis());
+      if (!Files.exists(hotDirectory.resolve(reference)) && Files.exists(coldPath(reference))) {
+        promote(reference);
+      }
+    } finally {
+      lock.unlock();
+    }
+    return hotStorage.retrieve(reference);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>A recorded access defers demotion exactly as a read does.</p>
+   */
+  @Override
+  public void recordAccess(String reference) {
+    lastReads.put(reference, System.currentTimeMillis());
+  }
+
+  @Override
+  public boolean delete(String reference)
+      throws IOException, UnsupportedOperationException, SecurityException {
+    Lock lock = lock(reference);
+    lock.lock();
+    try {
+      lastReads.remove(reference);
+      boolean deleted = hotStorage.delete(reference);
+      return Files.deleteIfExists(coldPath(reference)) || deleted;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Moves the file with the specified {@code reference} from the hot tier to the cold tier, unless
+   * it has been read more recently than {@code idleCutoff}. The file is copied to the cold tier
+   * without holding the lock of its reference, so that reads aren't held up by the copy; the lock is
+   * held only to check once more that the file hasn't been read in the meantime, and to replace the
+   * hot copy with the cold one.
+   *
+   * @param reference  Opaque reference to a stored file.
+   * @param idleCutoff Time (in milliseconds since the epoch) after which a read of the file makes it
+   *                   ineligible for demotion.
+   * @return {@code true} if the file was demoted; {@code false} if it was ineligible, or wasn't in
+   * the hot tier.
+   * @throws IOException If the file can't be copied to the cold tier.
+   */
+  public boolean demote(@NonNull String reference, long idleCutoff) throws IOException {
+    Path hot = hotDirectory.resolve(reference);
+    if (!isIdle(reference, hot, idleCutoff)) {
+      return false;
+    }
+    Path cold = coldPath(reference);
+    Files.createDirectories(cold.getParent());
+    Path temp = Files.createTempFile(
+        cold.getParent(), cold.getFileName().toString(), TEMP_FILE_SUFFIX);
+    try {
+      try (OutputStream output = compress
+          ? new GZIPOutputStream(Files.newOutputStream(temp))
+          : Files.newOutputStream(temp)) {
+        Files.copy(hot, output);
+      } catch (NoSuchFileException e) {
+        return false; // Deleted while being copied.
+      }
+      Lock lock = lock(reference);
+      lock.lock();
+      try {
+        if (!isIdle(reference, hot, idleCutoff)) {
+          return false;
+        }
+        Files.move(temp, cold, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(hot);
+        lastReads.remove(reference);
+      } finally {
+        lock.unlock();
+      }
+      demotions.incrementAndGet();
+      return true;
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Returns a flag indicating whether the file with the specified {@code reference} is currently in
+   * the cold tier.
+   */
+  public boolean isDemoted(@NonNull String reference) {
+    return Files.exists(coldPath(reference));
+  }
+
+  private boolean isIdle(String reference, Path hot, long idleCutoff) throws IOException {
+    try {
+      return Files.isRegularFile(hot)
+          && lastReads.getOrDefault(reference, Long.MIN_VALUE) <= idleCutoff
+          && Files.getLastModifiedTime(hot).toMillis() <= idleCutoff;
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+  }
+
+  private void promote(String reference) throws IOException {
+    Path cold = coldPath(reference);
+    Path hot = hotDirectory.resolve(reference);
+    if (Files.exists(hot) || !Files.exists(cold)) {
+      return; // Promoted (or deleted) while waiting for the lock.
+    }
+    Files.createDirectories(hot.getParent());
+    Path temp = Files.createTempFile(
+        hot.getParent(), hot.getFileName().toString(), TEMP_FILE_SUFFIX);
+    try {
+      try (InputStream input = compress
+          ? new GZIPInputStream(Files.newInputStream(cold))
+          : Files.newInputStream(cold)) {
+        Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+      }
+      Files.move(temp, hot, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    Files.delete(cold);
+    promotions.incrementAndGet();
+  }
+
+  private Path coldPath(String reference) {
+    return coldDirectory.resolve(compress ? reference + COMPRESSED_SUFFIX : reference);
+  }
+
+  private Lock lock(String reference) {
+    return locks[Math.floorMod(reference.hashCode(), LOCK_STRIPES)];
+  }
+
+}
@@ -0,0 +1,62 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.FilenameProperties;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.FilenameProperties.TimestampProperties;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.context.annotation.Profile;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Implements {@link ReferenceGenerator} by composing a timestamp, a random value, and the original
+ * extension, as specified by the {@code upload.filename} properties. Timestamps are issued from a
+ * strictly increasing millisecond counter (which runs ahead of the clock when more than one name per
+ * millisecond is requested), so that no two names generated by one instance share a timestamp, as
+ * long as the timestamp format includes milliseconds. The random value, drawn from a per-thread
+ * source, makes collisions between instances (e.g. several processes sharing a file store)
+ * improbable. Formatting uses an immutable {@link DateTimeFormatter}; no locks are taken.
+ */
+@Component
+@Profile({"service", "reactive"})
+public class TimestampReferenceGenerator implements ReferenceGenerator {
+
+  private final Clock clock = Clock.systemUTC();
+  private final DateTimeFormatter formatter;
+  private final String filenameFormat;
+  private final int randomizerLimit;
+  private final AtomicLong lastTimestamp = new AtomicLong();
+
+  public TimestampReferenceGenerator(UploadConfiguration uploadConfiguration) {
+    FilenameProperties filenameProperties = uploadConfiguration.getFilename();
+    TimestampProperties timestampProperties = filenameProperties.getTimestamp();
+    formatter = DateTimeFormatter
+        .ofPattern(timestampProperties.getFormat())
+        .withZone(timestampProperties.getTimeZone().toZoneId());
+    filenameFormat = filenameProperties.getFormat();
+    randomizerLimit = filenameProperties.getRandomizerLimit();
+  }
+
+  @NonNull
+  @Override
+  public String newFilename(@Nullable String originalFilename) {
+    long now = clock.millis();
+    long timestamp = lastTimestamp.accumulateAndGet(now, (last, current) -> Math.max(last + 1, current));
+    return String.format(filenameFormat,
+        formatter.format(Instant.ofEpochMilli(timestamp)),
+        ThreadLocalRandom.current().nextInt(randomizerLimit),
+        getExtension(originalFilename != null ? originalFilename : ""));
+  }
+
+  @NonNull
+  private String getExtension(@NonNull String filename) {
+    int position;
+    return ((position = filename.lastIndexOf('.')) >= 0) ? filename.substring(position + 1) : "";
+  }
+
+}
@@ -0,0 +1,108 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.system.DiskSpaceMetrics;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.context.annotation.Profile;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes gauges of the usage of the upload directory: the number and total size of the files it
+ * contains ({@code upload.directory.files} and {@code upload.directory.size}), and the free and
+ * total space of the file system holding it ({@code disk.free} and {@code disk.total}, tagged with
+ * the directory path). Since walking a large directory tree is expensive, the file count and size
+ * are measured by a background scan, repeated at the interval given by {@code
+ * upload.usageScanInterval}, and not when the gauges are read.
+ */
+@Component
+@Profile("service")
+public class UploadDirectoryMetrics implements MeterBinder {
+
+  private final Path uploadDirectory;
+  private final long scanInterval;
+  private final AtomicLong files = new AtomicLong();
+  private final AtomicLong size = new AtomicLong();
+  private final ScheduledExecutorService scanner;
+
+  public UploadDirectoryMetrics(
+      UploadConfiguration uploadConfiguration, ApplicationHome applicationHome) {
+    String uploadPath = uploadConfiguration.getDirectory();
+    uploadDirectory = uploadConfiguration.isApplicationHome()
+        ? applicationHome.getDir().toPath().resolve(uploadPath)
+        : Path.of(uploadPath);
+    scanInterval = uploadConfiguration.getUsageScanInterval().toMillis();
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("upload-scan-");
+    threadFactory.setDaemon(true);
+    scanner = Executors.newSingleThreadScheduledExecutor(threadFactory);
+  }
+
+  @Override
+  public void bindTo(@NonNull MeterRegistry registry) {
+    Gauge.builder("upload.directory.files", files, AtomicLong::get)
+        .description("Number of files in the upload directory, as of the last scan")
+        .baseUnit(BaseUnits.FILES)
+        .register(registry);
+    Gauge.builder("upload.directory.size", size, AtomicLong::get)
+        .description("Total size of the files in the upload directory, as of the last scan")
+        .baseUnit(BaseUnits.BYTES)
+        .register(registry);
+    new DiskSpaceMetrics(uploadDirectory.toFile()).bindTo(registry);
+    scanner.scheduleWithFixedDelay(this::scan, 0, scanInterval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    scanner.shutdownNow();
+  }
+
+  /**
+   * Walks the upload directory, updating the file count and total size. Files that vanish during
+   * the walk (e.g. deleted concurrently) are skipped.
+   */
+  void scan() {
+    long[] totals = new long[2];
+    try {
+      if (Files.isDirectory(uploadDirectory)) {
+        Files.walkFileTree(uploadDirectory, new SimpleFileVisitor<>() {
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+            if (attributes.isRegularFile()) {
+              totals[0]++;
+              totals[1] += attributes.size();
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException e) {
+            return FileVisitResult.CONTINUE;
+          }
+
+        });
+      }
+      files.set(totals[0]);
+      size.set(totals[1]);
+    } catch (IOException e) {
+      // Leave the previous measurements in place; the next scan may succeed.
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.ShardingProperties;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.lang.NonNull;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Places files in the one-file-per-upload file store, as configured by the {@code upload}
+ * properties: resolves the upload directory, and composes the reference of each file from the
+ * subdirectory selected by the sharding strategy and the filename. Shared by {@link
+ * LocalFilesystemStorageService} and {@link ReactiveFilesystemStorageService}, so that both read and
+ * write the same files under the same references.
+ */
+final class UploadLayout {
+
+  private static final String HASH_SHARDING_STRATEGY = "hash";
+  private static final int MAX_SHARD_DIGITS = 32;
+  private static final String INVALID_SHARDING_MESSAGE =
+      "Hash sharding requires a positive depth and width, with a product of at most "
+          + MAX_SHARD_DIGITS;
+  private static final String REFERENCE_PATH_DELIMITER = "/";
+  private static final String REFERENCE_PATH_FORMAT = "%s" + REFERENCE_PATH_DELIMITER + "%s";
+
+  private final Path directory;
+  private final Pattern subdirectoryPattern;
+  private final boolean hashSharding;
+  private final int shardDepth;
+  private final int shardWidth;
+
+  UploadLayout(UploadConfiguration uploadConfiguration, ApplicationHome applicationHome) {
+    String uploadPath = uploadConfiguration.getDirectory();
+    directory = uploadConfiguration.isApplicationHome()
+        ? applicationHome.getDir().toPath().resolve(uploadPath)
+        : Path.of(uploadPath);
+    subdirectoryPattern = uploadConfiguration.getSubdirectoryPattern();
+    ShardingProperties shardingProperties = uploadConfiguration.getSharding();
+    hashSharding = HASH_SHARDING_STRATEGY.equalsIgnoreCase(shardingProperties.getStrategy());
+    shardDepth = shardingProperties.getDepth();
+    shardWidth = shardingProperties.getWidth();
+    if (hashSharding
+        && (shardDepth <= 0 || shardWidth <= 0 || shardDepth * shardWidth > MAX_SHARD_DIGITS)) {
+      throw new IllegalArgumentException(INVALID_SHARDING_MESSAGE);
+    }
+  }
+
+  /**
+   * Returns the upload directory.
+   */
+  @NonNull
+  Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the subdirectory (relative to the upload directory) in which a file named {@code
+   * filename} is placed by the current sharding strategy.
+   */
+  @NonNull
+  String getSubdirectory(@NonNull String filename) {
+    if (hashSharding) {
+      String hash = DigestUtils.md5DigestAsHex(filename.getBytes(StandardCharsets.UTF_8));
+      return IntStream.range(0, shardDepth)
+          .mapToObj((level) -> hash.substring(level * shardWidth, (level + 1) * shardWidth))
+          .collect(Collectors.joining(REFERENCE_PATH_DELIMITER));
+    }
+    String path;
+    Matcher matcher = subdirectoryPattern.matcher(filename);
+    if (matcher.matches()) {
+      path = IntStream.rangeClosed(1, matcher.groupCount())
+          .mapToObj(matcher::group)
+          .collect(Collectors.joining(REFERENCE_PATH_DELIMITER));
+    } else {
+      path = "";
+    }
+    return path;
+  }
+
+  /**
+   * Returns the reference to a file named {@code filename} in {@code subdirectory}.
+   */
+  @NonNull
+  String getReference(@NonNull String subdirectory, @NonNull String filename) {
+    return String.format(REFERENCE_PATH_FORMAT, subdirectory, filename);
+  }
+
+  /**
+   * Returns the filename component of {@code reference}.
+   */
+  @NonNull
+  String getFilename(@NonNull String reference) {
+    return reference.substring(reference.lastIndexOf(REFERENCE_PATH_DELIMITER) + 1);
+  }
+
+}
@@ -0,0 +1,72 @@
+package edu.cnm.deepdive.animalsservice.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonView;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.view.ImageView;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Outcome of storing one item of a batch upload: the position of the item in the batch, an HTTP
+ * status code summarizing the outcome, and either the persisted {@link Image} or an error message.
+ */
+@JsonView(ImageView.Partial.class)
+@JsonInclude(Include.NON_NULL)
+@JsonPropertyOrder({"index", "status", "message", "image"})
+public class UploadResult {
+
+  private final int index;
+  private final HttpStatus status;
+  private final String message;
+  private final Image image;
+
+  private UploadResult(int index, HttpStatus status, String message, Image image) {
+    this.index = index;
+    this.status = status;
+    this.message = message;
+    this.image = image;
+  }
+
+  static UploadResult created(int index, @NonNull Image image) {
+    return new UploadResult(index, HttpStatus.CREATED, null, image);
+  }
+
+  static UploadResult failed(int index, @NonNull HttpStatus status, @NonNull String message) {
+    return new UploadResult(index, status, message, null);
+  }
+
+  /**
+   * Returns the zero-based position of the item in the batch.
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the HTTP status code summarizing the outcome for the item.
+   */
+  public int getStatus() {
+    return status.value();
+  }
+
+  /**
+   * Returns a description of the failure to store the item, or {@code null} if it was stored.
+   */
+  @Nullable
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * Returns the persisted {@link Image}, or {@code null} if the item wasn't stored.
+   */
+  @Nullable
+  public Image getImage() {
+    return image;
+  }
+
+}
@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS image (image_id UUID NOT NULL, content_type VARCHAR(255) NOT NULL, created TIMESTAMP NOT NULL, description VARCHAR(1024), external_key UUID NOT NULL, name VARCHAR(255) NOT NULL, path VARCHAR(255) NOT NULL, title VARCHAR(100), updated TIMESTAMP NOT NULL, PRIMARY KEY (image_id));
+CREATE INDEX IF NOT EXISTS IDX_image_created_id ON image (created, image_id);
+CREATE INDEX IF NOT EXISTS IDX_image_created_id_desc ON image (created DESC, image_id DESC);
+CREATE INDEX IF NOT EXISTS IDX_image_title_id ON image (title, image_id);
+CREATE INDEX IF NOT EXISTS IDX_image_title_id_desc ON image (title DESC, image_id DESC);
+ALTER TABLE image ADD CONSTRAINT IF NOT EXISTS UK_pp0xqpammqlvtj3u3j09fml4v UNIQUE (external_key);
+ALTER TABLE image ADD COLUMN IF NOT EXISTS content_length BIGINT;
+ALTER TABLE image ADD COLUMN IF NOT EXISTS digest VARCHAR(64);
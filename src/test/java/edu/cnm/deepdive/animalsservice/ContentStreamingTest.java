@@ -0,0 +1,171 @@
+package edu.cnm.deepdive.animalsservice;
+
+import com.zaxxer.hikari.HikariDataSource;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.ImageService;
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that content downloads don't hold a database connection while the content is written,
+ * by running with a connection pool of size 1, stalling several downloads mid-body (their clients
+ * stop reading), and issuing metadata requests (which need the connection) in the meantime.
+ * Sendfile is disabled, so that the content is written (and stalls) on the request thread.
+ */
+@SpringBootTest(classes = AnimalsServiceApplication.class, webEnvironment = WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:streaming",
+                "spring.datasource.hikari.maximum-pool-size=1",
+                "spring.datasource.hikari.connection-timeout=1000"
+        })
+class ContentStreamingTest {
+
+    private static final int DOWNLOADS = 4;
+    private static final int METADATA_REQUESTS = 16;
+    private static final int RECEIVE_BUFFER_SIZE = 1024;
+    private static final String HEADER_DELIMITER = "\r\n\r\n";
+    private static final String CONTENT_LENGTH_HEADER = "content-length:";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @TestConfiguration
+    static class BlockingWrites {
+
+        @Bean
+        public WebServerFactoryCustomizer<TomcatServletWebServerFactory> noSendfile() {
+            return (factory) -> factory.addConnectorCustomizers((connector) ->
+                    ((AbstractHttp11Protocol<?>) connector.getProtocolHandler()).setUseSendfile(false));
+        }
+
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Image image : imageService.list()) {
+            imageService.delete(image);
+        }
+    }
+
+    @Test
+    void getContent_connectionReleased() throws Exception {
+        byte[] content;
+        try (InputStream input = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg")
+                .getInputStream()) {
+            content = input.readAllBytes();
+        }
+        Image donkey;
+        try (InputStream input = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg")
+                .getInputStream()) {
+            donkey = imageService.store(input, MediaType.IMAGE_JPEG_VALUE, "donkey.jpg", "Donkey", null);
+        }
+        String path = String.format("/animals/images/%s/content", donkey.getExternalKey());
+
+        List<Socket> downloads = new ArrayList<>();
+        try {
+            for (int i = 0; i < DOWNLOADS; i++) {
+                imageService.evict(donkey.getExternalKey()); // Force a database read.
+                Socket socket = new Socket();
+                socket.setReceiveBufferSize(RECEIVE_BUFFER_SIZE);
+                socket.connect(new InetSocketAddress("localhost", port));
+                OutputStream output = socket.getOutputStream();
+                output.write(String.format(
+                        "GET %s HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n", path)
+                        .getBytes(StandardCharsets.US_ASCII));
+                output.flush();
+                assertTrue(socket.getInputStream().read() >= 0);
+                downloads.add(socket);
+            }
+            assertEquals(0, dataSource.getHikariPoolMXBean().getActiveConnections());
+
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            HttpRequest list = HttpRequest.newBuilder(
+                            URI.create(String.format("http://localhost:%d/animals/images", port)))
+                    .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                    .timeout(Duration.ofSeconds(10))
+                    .build();
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < METADATA_REQUESTS; i++) {
+                responses.add(client.sendAsync(list, BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals(200, response.get().statusCode());
+                assertTrue(response.get().body().contains(donkey.getExternalKey().toString()));
+            }
+
+            for (Socket socket : downloads) {
+                assertEquals(content.length, readBody(socket.getInputStream()));
+            }
+        } finally {
+            for (Socket socket : downloads) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the remainder of a response (whose first byte has already been consumed) to its end,
+     * returning the length of the body, after checking it against the {@code Content-Length}
+     * header.
+     */
+    private long readBody(InputStream input) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        input.transferTo(buffer);
+        byte[] response = buffer.toByteArray();
+        String text = new String(response, StandardCharsets.ISO_8859_1);
+        int delimiter = text.indexOf(HEADER_DELIMITER);
+        assertTrue(delimiter >= 0);
+        long declaredLength = -1;
+        for (String header : text.substring(0, delimiter).split("\r\n")) {
+            if (header.toLowerCase(Locale.ROOT).startsWith(CONTENT_LENGTH_HEADER)) {
+                declaredLength = Long.parseLong(header.substring(CONTENT_LENGTH_HEADER.length()).trim());
+            }
+        }
+        long length = response.length - delimiter - HEADER_DELIMITER.length();
+        assertEquals(declaredLength, length);
+        return length;
+    }
+
+}
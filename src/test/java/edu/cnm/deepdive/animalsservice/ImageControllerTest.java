@@ -1,8 +1,11 @@
 package edu.cnm.deepdive.animalsservice;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.cnm.deepdive.animalsservice.configuration.ServerTimingConfiguration;
+import edu.cnm.deepdive.animalsservice.controller.ServerTimingFilter;
 import edu.cnm.deepdive.animalsservice.model.entity.Image;
 import edu.cnm.deepdive.animalsservice.service.ImageService;
+import edu.cnm.deepdive.animalsservice.service.StorageService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,19 +35,31 @@ import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.*;
+import javax.imageio.ImageIO;
 
 import static com.fasterxml.jackson.databind.type.LogicalType.Map;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.hamcrest.core.StringStartsWith.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.restdocs.headers.HeaderDocumentation.headerWithName;
+import static org.springframework.restdocs.headers.HeaderDocumentation.requestHeaders;
+import static org.springframework.restdocs.headers.HeaderDocumentation.responseHeaders;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.documentationConfiguration;
 import static org.springframework.restdocs.mockmvc.RestDocumentationRequestBuilders.*;
@@ -97,7 +112,10 @@ class ImageControllerTest {
 
     @AfterEach
     void tearDown(WebApplicationContext webApplicationContext,
-                  RestDocumentationContextProvider restDocumentation) {
+                  RestDocumentationContextProvider restDocumentation) throws IOException {
+        for (Image image : imageService.list()) {
+            imageService.delete(image);
+        }
     }
 
 
@@ -173,6 +191,110 @@ class ImageControllerTest {
 
     }
 
+    @Test
+    public void postAnimal_streamed() throws Exception {
+
+        byte[] content = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg")
+                .getInputStream()
+                .readAllBytes();
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.set("title", "Donkey");
+        mockMvc
+                .perform(
+                        post("/images")
+                                .contentType(MediaType.IMAGE_JPEG)
+                                .header("Content-Disposition", "inline; filename=\"donkey.jpg\"")
+                                .params(params)
+                                .content(content)
+                )
+                .andExpect(status().isCreated())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.title", is("Donkey")))
+                .andExpect(jsonPath("$.contentType", is(MediaType.IMAGE_JPEG_VALUE)))
+                .andDo(
+                        document(
+                                "images/post-streamed",
+                                preprocessResponse(prettyPrint()),
+                                relaxedRequestParameters(getPostParameters()),
+                                relaxedResponseFields(getImageFields())
+                        )
+                );
+        mockMvc
+                .perform(
+                        post("/images")
+                                .contentType(MediaType.IMAGE_JPEG)
+                                .params(params)
+                                .content(content)
+                )
+                .andExpect(status().isCreated());
+        mockMvc
+                .perform(
+                        post("/images")
+                                .contentType("image/svg+xml")
+                                .params(params)
+                                .content(content)
+                )
+                .andExpect(status().isUnsupportedMediaType());
+
+    }
+
+    @Test
+    public void postAnimals_batch() throws Exception {
+
+        List<MockMultipartFile> files = new ArrayList<>();
+        for (String contentType : List.of(MediaType.IMAGE_JPEG_VALUE, "image/svg+xml", MediaType.IMAGE_JPEG_VALUE)) {
+            InputStream input = new DefaultResourceLoader()
+                    .getResource("images/green-frog.jpg")
+                    .getInputStream();
+            files.add(new MockMultipartFile("file", "green-frog.jpg", contentType, input));
+        }
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.addAll("title", List.of("Green Frog", "Vector Frog", "Another Green Frog"));
+        mockMvc
+                .perform(
+                        multipart("/images/batch")
+                                .file(files.get(0))
+                                .file(files.get(1))
+                                .file(files.get(2))
+                                .contentType(MediaType.MULTIPART_FORM_DATA)
+                                .params(params)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].status", is(201)))
+                .andExpect(jsonPath("$[0].image.title", is("Green Frog")))
+                .andExpect(jsonPath("$[1].status", is(415)))
+                .andExpect(jsonPath("$[1].image").doesNotExist())
+                .andExpect(jsonPath("$[2].status", is(201)))
+                .andExpect(jsonPath("$[2].image.title", is("Another Green Frog")))
+                .andDo(
+                        document(
+                                "images/post-batch",
+                                preprocessResponse(prettyPrint()),
+                                relaxedResponseFields(
+                                        fieldWithPath("[].index").description("Position of the item in the batch"),
+                                        fieldWithPath("[].status").description("HTTP status code for the item"),
+                                        fieldWithPath("[].message").optional().description("Reason the item wasn't stored"),
+                                        fieldWithPath("[].image").optional().description("Stored image")
+                                )
+                        )
+                );
+        assertEquals(2, imageService.search("Frog").stream().count());
+
+        params.set("title", "Only One");
+        mockMvc
+                .perform(
+                        multipart("/images/batch")
+                                .file(files.get(0))
+                                .file(files.get(2))
+                                .contentType(MediaType.MULTIPART_FORM_DATA)
+                                .params(params)
+                )
+                .andExpect(status().isBadRequest());
+
+    }
+
     @Test
     void getAnimal_valid() throws Exception {
         InputStream input = new DefaultResourceLoader()
@@ -203,6 +325,180 @@ class ImageControllerTest {
                 );
     }
 
+    @Test
+    void lookupAnimals_valid() throws Exception {
+        InputStream input = new DefaultResourceLoader()
+                .getResource("images/green-frog.jpg")
+                .getInputStream();
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "green-frog.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                input
+        );
+        Image frog = imageService.store(file, "Green Frog", "A green frog commonly found in Virginia.");
+        input = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg")
+                .getInputStream();
+        file = new MockMultipartFile(
+                "file",
+                "donkey.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                input
+        );
+        Image donkey = imageService.store(file, "Donkey", "A domesticated ass.");
+        UUID unknown = UUID.randomUUID();
+        List<UUID> keys = List.of(frog.getExternalKey(), unknown, donkey.getExternalKey());
+
+        mockMvc.perform(
+                        post("/{contextPathPart}/images/lookup", contextPathPart)
+                                .contextPath(contextPath)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(keys))
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.images.length()").value(2))
+                .andExpect(jsonPath("$.images[0].title", is("Green Frog")))
+                .andExpect(jsonPath("$.images[0].description").doesNotExist())
+                .andExpect(jsonPath("$.images[1].title", is("Donkey")))
+                .andExpect(jsonPath("$.missing[0]", is(unknown.toString())));
+
+        mockMvc.perform(
+                        post("/{contextPathPart}/images/lookup", contextPathPart)
+                                .contextPath(contextPath)
+                                .param("view", "full")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(keys))
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.images[1].description", is("A domesticated ass.")))
+                .andDo(
+                        document(
+                                "images/lookup-valid",
+                                preprocessRequest(prettyPrint()),
+                                preprocessResponse(prettyPrint()),
+                                relaxedRequestParameters(
+                                        parameterWithName("view").description("JSON view: `partial` (default) or `full`")
+                                ),
+                                relaxedResponseFields(
+                                        fieldWithPath("images").description("Images found, in request order"),
+                                        fieldWithPath("missing").description("Requested keys with no image")
+                                )
+                        )
+                );
+
+        mockMvc.perform(
+                        post("/{contextPathPart}/images/lookup", contextPathPart)
+                                .contextPath(contextPath)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("[]")
+                )
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void bulkAnimals_valid() throws Exception {
+        List<Image> images = new ArrayList<>();
+        for (String title : List.of("Donkey", "Green Frog", "Newt")) {
+            InputStream input = new DefaultResourceLoader()
+                    .getResource("images/green-frog.jpg")
+                    .getInputStream();
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "green-frog.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            images.add(imageService.store(file, title, null));
+        }
+        UUID unknown = UUID.randomUUID();
+        Map<String, Object> request = java.util.Map.of(
+                "updates", List.of(
+                        java.util.Map.of("id", images.get(0).getExternalKey(), "description", "Found in Virginia."),
+                        java.util.Map.of("id", images.get(1).getExternalKey(), "description", "Found in Virginia."),
+                        java.util.Map.of("id", unknown, "description", "Nowhere.")
+                ),
+                "deletes", List.of(images.get(2).getExternalKey(), unknown)
+        );
+
+        mockMvc.perform(
+                        post("/{contextPathPart}/images/bulk", contextPathPart)
+                                .contextPath(contextPath)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(request))
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[0].status", is(200)))
+                .andExpect(jsonPath("$[1].status", is(200)))
+                .andExpect(jsonPath("$[2].status", is(404)))
+                .andExpect(jsonPath("$[3].operation", is("DELETE")))
+                .andExpect(jsonPath("$[3].status", is(204)))
+                .andExpect(jsonPath("$[4].status", is(404)))
+                .andDo(
+                        document(
+                                "images/bulk-valid",
+                                preprocessRequest(prettyPrint()),
+                                preprocessResponse(prettyPrint()),
+                                relaxedResponseFields(
+                                        fieldWithPath("[].operation").description("`UPDATE` or `DELETE`"),
+                                        fieldWithPath("[].id").description("External key of the targeted image"),
+                                        fieldWithPath("[].status").description("HTTP status code for the item")
+                                )
+                        )
+                );
+
+        assertEquals("Found in Virginia.",
+                imageService.get(images.get(1).getExternalKey()).orElseThrow().getDescription());
+        assertTrue(imageService.get(images.get(2).getExternalKey()).isEmpty());
+        assertEquals(2, imageService.search("virginia").stream().count());
+    }
+
+    @Test
+    void getAnimal_conditional() throws Exception {
+        InputStream input = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg")
+                .getInputStream();
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "donkey.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                input
+        );
+        Image image = imageService.store(file, "Donkey", "A domesticated ass.");
+        MvcResult result = mockMvc.perform(
+                        get("/{contextPathPart}/images/{id}", contextPathPart, image.getExternalKey())
+                                .contextPath(contextPath)
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn();
+        String etag = result.getResponse().getHeader("ETag");
+        mockMvc.perform(
+                        get("/{contextPathPart}/images/{id}", contextPathPart, image.getExternalKey())
+                                .contextPath(contextPath)
+                                .header("If-None-Match", etag)
+                )
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+        mockMvc.perform(
+                        put("/{contextPathPart}/images/{id}/description", contextPathPart,
+                                image.getExternalKey())
+                                .contextPath(contextPath)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("\"A stubborn ass.\"")
+                )
+                .andExpect(status().isOk());
+        mockMvc.perform(
+                        get("/{contextPathPart}/images/{id}", contextPathPart, image.getExternalKey())
+                                .contextPath(contextPath)
+                                .header("If-None-Match", etag)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description", is("A stubborn ass.")));
+    }
+
     @Test
     void getAnimal_invalid() throws Exception {
 
@@ -262,6 +558,119 @@ class ImageControllerTest {
                 );
     }
 
+    @Test
+    void listAnimals_paged() throws Exception {
+
+        for (String title : List.of("Donkey", "Green Frog", "Newt")) {
+            InputStream input = new DefaultResourceLoader()
+                    .getResource("images/green-frog.jpg")
+                    .getInputStream();
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "green-frog.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            imageService.store(file, title, null);
+        }
+
+        String link = mockMvc.perform(
+                        get("/{contextPathPart}/images", contextPathPart)
+                                .contextPath(contextPath)
+                                .param("limit", "2")
+                                .param("sort", "title")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].title", is("Donkey")))
+                .andExpect(jsonPath("$[1].title", is("Green Frog")))
+                .andExpect(header().string("Link", containsString("rel=\"next\"")))
+                .andDo(
+                        document(
+                                "images/list-paged",
+                                preprocessResponse(prettyPrint()),
+                                relaxedRequestParameters(
+                                        parameterWithName("limit").description("Maximum number of images in the page"),
+                                        parameterWithName("sort").description("Listing order: `title` or `created`")
+                                )
+                        )
+                )
+                .andReturn()
+                .getResponse()
+                .getHeader("Link");
+        String cursor = link.replaceAll(".*[?&]cursor=([^&>]*).*", "$1");
+
+        mockMvc.perform(
+                        get("/{contextPathPart}/images", contextPathPart)
+                                .contextPath(contextPath)
+                                .param("cursor", cursor)
+                                .param("limit", "2")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].title", is("Newt")))
+                .andExpect(header().string("Link", containsString("rel=\"prev\"")));
+
+        mockMvc.perform(
+                        get("/{contextPathPart}/images", contextPathPart)
+                                .contextPath(contextPath)
+                                .param("cursor", "not-a-cursor")
+                )
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void listAnimals_streamed() throws Exception {
+
+        for (String title : List.of("Green Frog", "Donkey", "Green Toad")) {
+            InputStream input = new DefaultResourceLoader()
+                    .getResource("images/green-frog.jpg")
+                    .getInputStream();
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "green-frog.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            imageService.store(file, title, null);
+        }
+
+        mockMvc.perform(
+                        get("/{contextPathPart}/images", contextPathPart)
+                                .contextPath(contextPath)
+                                .param("stream", "true")
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].title", is("Donkey")))
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+
+        String body = mockMvc.perform(
+                        get("/{contextPathPart}/images", contextPathPart)
+                                .contextPath(contextPath)
+                                .param("q", "green")
+                                .accept(MediaType.APPLICATION_NDJSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andDo(
+                        document(
+                                "images/list-streamed",
+                                relaxedRequestParameters(
+                                        parameterWithName("q").description("Optional search fragment")
+                                )
+                        )
+                )
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("Green Frog", objectMapper.readTree(lines[0]).get("title").asText());
+        assertEquals("Green Toad", objectMapper.readTree(lines[1]).get("title").asText());
+    }
+
     @Test
     void listAnimals_invalid() throws Exception {
 
@@ -482,6 +891,281 @@ class ImageControllerTest {
         }
     }
 
+    @Test
+    void getContent_range() throws Exception {
+
+        Resource resource = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg");
+        try (InputStream input = resource.getInputStream()) {
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "donkey.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            Image image = imageService.store(file, "Donkey", "A domesticated ass.");
+            byte[] checkContents = file.getBytes();
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                                    .header("Range", "bytes=100-199")
+                    )
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string("Content-Range",
+                            String.format("bytes 100-199/%d", checkContents.length)))
+                    .andExpect(content().contentType(MediaType.IMAGE_JPEG_VALUE))
+                    .andExpect(content().bytes(Arrays.copyOfRange(checkContents, 100, 200)))
+                    .andDo(
+                            document(
+                                    "images/content-range",
+                                    pathParameters(getPathVariables()),
+                                    requestHeaders(headerWithName("Range")
+                                            .description("Byte range(s) of content to retrieve."))
+                            )
+                    );
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                                    .header("Range", "bytes=0-9,-10")
+                    )
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string("Content-Type", startsWith("multipart/byteranges")));
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                                    .header("Range", String.format("bytes=%d-", checkContents.length))
+                    )
+                    .andExpect(status().isRequestedRangeNotSatisfiable());
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                                    .header("Range", String.format("bytes=0-9,%d-", checkContents.length))
+                    )
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string("Content-Range",
+                            String.format("bytes 0-9/%d", checkContents.length)))
+                    .andExpect(content().bytes(Arrays.copyOfRange(checkContents, 0, 10)));
+        }
+    }
+
+    @Test
+    void getContent_invalidRangeIgnored() throws Exception {
+
+        Resource resource = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg");
+        try (InputStream input = resource.getInputStream()) {
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "donkey.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            Image image = imageService.store(file, "Donkey", "A domesticated ass.");
+            byte[] checkContents = file.getBytes();
+            for (String range : List.of("bytes=abc", "bytes=199-100", "lines=0-9")) {
+                mockMvc.perform(
+                                get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                        .contextPath(contextPath)
+                                        .header("Range", range)
+                        )
+                        .andExpect(status().isOk())
+                        .andExpect(header().doesNotExist("Content-Range"))
+                        .andExpect(content().bytes(checkContents));
+            }
+        }
+    }
+
+    @Test
+    void getContent_conditional() throws Exception {
+
+        Resource resource = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg");
+        try (InputStream input = resource.getInputStream()) {
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "donkey.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            Image image = imageService.store(file, "Donkey", "A domesticated ass.");
+            byte[] checkContents = file.getBytes();
+            MvcResult result = mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                    )
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Cache-Control", containsString("immutable")))
+                    .andExpect(header().exists("Last-Modified"))
+                    .andReturn();
+            String etag = result.getResponse().getHeader("ETag");
+            assertTrue(etag != null && etag.startsWith("\""));
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                                    .header("If-None-Match", etag)
+                    )
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string("ETag", etag))
+                    .andExpect(content().bytes(new byte[0]))
+                    .andDo(
+                            document(
+                                    "images/content-conditional",
+                                    pathParameters(getPathVariables()),
+                                    requestHeaders(headerWithName("If-None-Match")
+                                            .description("Entity tag of a previously retrieved copy."))
+                            )
+                    );
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                                    .header("If-Modified-Since", result.getResponse().getHeader("Last-Modified"))
+                    )
+                    .andExpect(status().isNotModified());
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                                    .header("Range", "bytes=100-199")
+                                    .header("If-Range", etag)
+                    )
+                    .andExpect(status().isPartialContent())
+                    .andExpect(content().bytes(Arrays.copyOfRange(checkContents, 100, 200)));
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                                    .header("Range", "bytes=100-199")
+                                    .header("If-Range", "\"stale\"")
+                    )
+                    .andExpect(status().isOk())
+                    .andExpect(content().bytes(checkContents));
+        }
+    }
+
+    @Test
+    void headContent_fromMetadata(WebApplicationContext webApplicationContext) throws Exception {
+
+        Resource resource = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg");
+        try (InputStream input = resource.getInputStream()) {
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "donkey.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            Image image = imageService.store(file, "Donkey", "A domesticated ass.");
+            byte[] checkContents = file.getBytes();
+            String digest = "sha-256=" + Base64.getEncoder()
+                    .encodeToString(MessageDigest.getInstance("SHA-256").digest(checkContents));
+            mockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                    )
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Digest", digest))
+                    .andExpect(header().string("ETag", "\"" + image.getDigest() + "\""))
+                    .andExpect(content().bytes(checkContents));
+            // With the stored content gone, HEAD is still answered from the recorded length and digest.
+            webApplicationContext.getBean(StorageService.class).delete(image.getPath());
+            mockMvc.perform(
+                            head("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                    )
+                    .andExpect(status().isOk())
+                    .andExpect(header().longValue("Content-Length", checkContents.length))
+                    .andExpect(header().string("Digest", digest))
+                    .andExpect(content().bytes(new byte[0]))
+                    .andDo(
+                            document(
+                                    "images/content-head",
+                                    pathParameters(getPathVariables()),
+                                    responseHeaders(headerWithName("Digest")
+                                            .description("SHA-256 digest of the content, in base64."))
+                            )
+                    );
+        }
+    }
+
+    @Test
+    void getContent_timed(WebApplicationContext webApplicationContext) throws Exception {
+        ServerTimingConfiguration configuration = new ServerTimingConfiguration();
+        configuration.setEnabled(true);
+        configuration.setSampleRate(1);
+        MockMvc timedMockMvc = MockMvcBuilders
+                .webAppContextSetup(webApplicationContext)
+                .addFilters(new ServerTimingFilter(configuration))
+                .build();
+        try (InputStream input = new DefaultResourceLoader()
+                .getResource("images/donkey.jpg")
+                .getInputStream()) {
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "donkey.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            Image image = imageService.store(file, "Donkey", "A domesticated ass.");
+            timedMockMvc.perform(
+                            get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                    .contextPath(contextPath)
+                    )
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Server-Timing",
+                            matchesPattern("^db;dur=[0-9.]+, storage;dur=[0-9.]+, app;dur=[0-9.]+$")));
+        }
+    }
+
+    @Test
+    void getContent_scaled() throws Exception {
+
+        InputStream input = new DefaultResourceLoader()
+                .getResource("images/green-frog.jpg")
+                .getInputStream();
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "green-frog.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                input
+        );
+        Image image = imageService.store(file, "Green Frog", "A green frog commonly found in Virginia.");
+        MvcResult result = mockMvc.perform(
+                        get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                .contextPath(contextPath)
+                                .param("width", "64")
+                                .param("height", "64")
+                                .param("fit", "cover")
+                )
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG_VALUE))
+                .andDo(
+                        document(
+                                "images/content-scaled",
+                                pathParameters(getPathVariables()),
+                                requestParameters(
+                                        parameterWithName("width")
+                                                .description("Maximum width (in pixels) of scaled image.")
+                                                .optional(),
+                                        parameterWithName("height")
+                                                .description("Maximum height (in pixels) of scaled image.")
+                                                .optional(),
+                                        parameterWithName("fit")
+                                                .description("Scaling policy: `contain` (default), `cover`, or `fill`.")
+                                                .optional()
+                                )
+                        )
+                )
+                .andReturn();
+        BufferedImage scaled = ImageIO.read(
+                new ByteArrayInputStream(result.getResponse().getContentAsByteArray()));
+        assertEquals(64, scaled.getWidth());
+        assertEquals(64, scaled.getHeight());
+        mockMvc.perform(
+                        get("/{contextPathPart}/images/{id}/content", contextPathPart, image.getExternalKey())
+                                .contextPath(contextPath)
+                                .param("width", "0")
+                )
+                .andExpect(status().isBadRequest());
+    }
+
     private List<ParameterDescriptor> getPathVariables() {
         return List.of(
                 parameterWithName("id")
@@ -0,0 +1,747 @@
+package edu.cnm.deepdive.animalsservice;
+
+import edu.cnm.deepdive.animalsservice.configuration.CacheConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.CacheConfiguration.ContentProperties;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.PackProperties;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.ShardingProperties;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.TieringProperties;
+import edu.cnm.deepdive.animalsservice.model.dao.ImageRepository;
+import edu.cnm.deepdive.animalsservice.model.dao.ReactiveImageRepository;
+import edu.cnm.deepdive.animalsservice.model.entity.Image;
+import edu.cnm.deepdive.animalsservice.service.BufferResource;
+import edu.cnm.deepdive.animalsservice.service.BulkRequest;
+import edu.cnm.deepdive.animalsservice.service.BulkRequest.DescriptionUpdate;
+import edu.cnm.deepdive.animalsservice.service.ContentAddressedStorageService;
+import edu.cnm.deepdive.animalsservice.service.ContentBackfill;
+import edu.cnm.deepdive.animalsservice.service.ContentCache;
+import edu.cnm.deepdive.animalsservice.service.DerivativeService.Fit;
+import edu.cnm.deepdive.animalsservice.service.ImagePage;
+import edu.cnm.deepdive.animalsservice.service.ImagePage.Order;
+import edu.cnm.deepdive.animalsservice.service.ImageService;
+import edu.cnm.deepdive.animalsservice.service.LocalFilesystemStorageService;
+import edu.cnm.deepdive.animalsservice.service.PackFileStorageService;
+import edu.cnm.deepdive.animalsservice.service.PackMigration;
+import edu.cnm.deepdive.animalsservice.service.ReferenceGenerator;
+import edu.cnm.deepdive.animalsservice.service.ShardMigration;
+import edu.cnm.deepdive.animalsservice.service.StoredContent;
+import edu.cnm.deepdive.animalsservice.service.TierDemotion;
+import edu.cnm.deepdive.animalsservice.service.TieredStorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.system.ApplicationHome;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(classes = AnimalsServiceApplication.class,
+        properties = "cache.content.enabled=true")
+class ImageServiceTest {
+
+    private final ImageService imageService;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private UploadConfiguration uploadConfiguration;
+
+    @Autowired
+    private ApplicationHome applicationHome;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ExecutorService storageExecutor;
+
+    @Autowired
+    private ReferenceGenerator referenceGenerator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LocalFilesystemStorageService localStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    ImageServiceTest(ImageService imageService) {
+        this.imageService = imageService;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Image image : imageService.list()) {
+            imageService.delete(image);
+        }
+    }
+
+    @Test
+    void search_ranked() throws Exception {
+        Image frog = store("Green Frog", "A green frog commonly found in Virginia.");
+        Image donkey = store("Donkey", "A domesticated ass, greener than most.");
+        Image toad = store("Another Green Toad", null);
+
+        assertEquals(List.of(toad, frog, donkey), search("GREEN"));
+        assertEquals(List.of(frog), search("virginia"));
+        assertEquals(List.of(toad, donkey), search("an"));
+
+        imageService.updateDescription(toad.getExternalKey(), "Found in Virginia.");
+        assertEquals(List.of(toad, frog), search("virginia"));
+
+        imageService.delete(frog);
+        assertEquals(List.of(toad), search("virginia"));
+        assertTrue(search("zebra").isEmpty());
+    }
+
+    @Test
+    void search_fallbackIgnoresCase() throws Exception {
+        Image frog = store("Green Frog", "A green frog commonly found in Virginia.");
+        Image donkey = store("Donkey", "A domesticated ass, greener than most.");
+
+        assertEquals(List.of(frog), imageRepository
+                .findAllByTitleContainsIgnoreCaseOrderByTitleAsc("GREEN").toList());
+        assertEquals(List.of(donkey, frog), imageRepository
+                .findAllByDescriptionContainsIgnoreCaseOrderByTitleAsc("GREEN").toList());
+        transactionTemplate.executeWithoutResult((status) -> {
+            try (Stream<Image> images =
+                    imageRepository.streamAllByDescriptionOnlyContainsIgnoreCase("GREEN")) {
+                assertEquals(List.of(donkey.getId()),
+                        images.map(Image::getId).collect(Collectors.toList()));
+            }
+        });
+    }
+
+    @Test
+    void list_untitledLast() throws Exception {
+        Image newt = store("Newt", null);
+        Image first = store(null, null);
+        Image donkey = store("Donkey", null);
+        Image second = store(null, null);
+
+        List<UUID> forward = new ArrayList<>();
+        ImagePage page = imageService.list(Order.TITLE, 1, null);
+        forward.add(page.getImages().get(0).getId());
+        while (page.getNext() != null) {
+            page = imageService.list(Order.TITLE, 1, page.getNext());
+            forward.add(page.getImages().get(0).getId());
+        }
+        assertEquals(List.of(donkey.getId(), newt.getId()), forward.subList(0, 2));
+        assertEquals(Set.of(first.getId(), second.getId()), Set.copyOf(forward.subList(2, 4)));
+        assertEquals(4, forward.size());
+
+        List<UUID> backward = new ArrayList<>(page.getImages().stream()
+                .map(Image::getId)
+                .collect(Collectors.toList()));
+        while (page.getPrevious() != null) {
+            page = imageService.list(Order.TITLE, 1, page.getPrevious());
+            backward.add(0, page.getImages().get(0).getId());
+        }
+        assertEquals(forward, backward);
+    }
+
+    @Test
+    void list_seeks() throws Exception {
+        int rows = 2000;
+        int limit = 11;
+        List<Object[]> inserted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows; i++) {
+            inserted.add(new Object[]{UUID.randomUUID(), UUID.randomUUID(), new Date(now - 1000L * i),
+                    "seek/" + i, (i % 10 == 0) ? null : String.format("Title %04d", i % 500)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO image (image_id, external_key, created, updated, path, "
+                + "name, title, content_type) VALUES (?, ?, ?, CURRENT_TIMESTAMP, ?, 'seek.png', ?, "
+                + "'image/png')", inserted);
+        try {
+            Object[] titled = inserted.get(rows / 2 + 1);
+            Object[] untitled = inserted.get(rows / 2);
+            Map<String, Map<String, Object>> queries = Map.of(
+                    "findFirstByTitle", Map.of(),
+                    "findAfterByTitle", Map.of("title", titled[4], "id", titled[0]),
+                    "findBeforeByTitle", Map.of("title", titled[4], "id", titled[0]),
+                    "findLastByTitle", Map.of(),
+                    "findFirstUntitled", Map.of(),
+                    "findAfterUntitled", Map.of("id", untitled[0]),
+                    "findBeforeUntitled", Map.of("id", untitled[0]),
+                    "findFirstByCreated", Map.of(),
+                    "findAfterByCreated", Map.of("created", titled[2], "id", titled[0]),
+                    "findBeforeByCreated", Map.of("created", titled[2], "id", titled[0])
+            );
+            SessionFactoryImplementor sessionFactory =
+                    entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+            for (Map.Entry<String, Map<String, Object>> query : queries.entrySet()) {
+                Map<String, Object> values = new HashMap<>(query.getValue());
+                values.put("limit", limit);
+                String jpql = queryAnnotation(ImageRepository.class, query.getKey(), Query.class).value();
+                String sql = sessionFactory.getQueryPlanCache()
+                        .getHQLQueryPlan(jpql, false, Map.of())
+                        .getSqlStrings()[0];
+                assertSeeks(query.getKey(), sql + " LIMIT :limit", jpql + " LIMIT :limit", values);
+                String reactiveSql = queryAnnotation(ReactiveImageRepository.class, query.getKey(),
+                        org.springframework.data.r2dbc.repository.Query.class).value();
+                assertSeeks(query.getKey(), reactiveSql, reactiveSql, values);
+            }
+        } finally {
+            jdbcTemplate.update("DELETE FROM image WHERE path LIKE 'seek/%'");
+        }
+    }
+
+    @Test
+    void get_cached() throws Exception {
+        Image frog = store("Green Frog", "A green frog commonly found in Virginia.");
+        UUID key = frog.getExternalKey();
+
+        long misses = imageService.getMetadataCacheStats().missCount();
+        long hits = imageService.getMetadataCacheStats().hitCount();
+        Image cached = imageService.get(key).orElseThrow();
+        assertSame(cached, imageService.get(key).orElseThrow());
+        assertEquals(misses + 1, imageService.getMetadataCacheStats().missCount());
+        assertEquals(hits + 1, imageService.getMetadataCacheStats().hitCount());
+
+        imageService.updateDescription(key, "Found in Virginia.");
+        assertEquals("Found in Virginia.", imageService.get(key).orElseThrow().getDescription());
+
+        imageService.delete(imageService.get(key).orElseThrow());
+        assertTrue(imageService.get(key).isEmpty());
+    }
+
+    @Test
+    void apply_oneStatementPerChunk() throws Exception {
+        List<Image> images = new ArrayList<>();
+        List<DescriptionUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Image image = store("Frog " + i, null);
+            images.add(image);
+            DescriptionUpdate update = new DescriptionUpdate();
+            update.setId(image.getExternalKey());
+            update.setDescription((i < 4) ? "Found in pond " + i + "." : null);
+            updates.add(update);
+        }
+        BulkRequest request = new BulkRequest();
+        request.setUpdates(updates);
+        request.setDeletes(List.of());
+        Statistics statistics =
+                entityManagerFactory.unwrap(SessionFactoryImplementor.class).getStatistics();
+        statistics.clear();
+        statistics.setStatisticsEnabled(true);
+        try {
+            imageService.apply(request);
+            // One query for the existing references, and one update for all descriptions.
+            assertEquals(2, statistics.getPrepareStatementCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(updates.get(i).getDescription(),
+                    imageService.get(images.get(i).getExternalKey()).orElseThrow().getDescription());
+        }
+    }
+
+    @Test
+    void retrieve_cached() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB), "png", output);
+        byte[] expected = output.toByteArray();
+        Image dot = imageService.store(
+                new ByteArrayInputStream(expected), MediaType.IMAGE_PNG_VALUE, "dot.png", "Dot", null);
+
+        Resource first = imageService.retrieve(dot);
+        assertFalse(first instanceof BufferResource);
+        Resource second = imageService.retrieve(dot);
+        assertTrue(second instanceof BufferResource);
+        assertSame(second, imageService.retrieve(dot));
+        try (InputStream input = second.getInputStream()) {
+            assertArrayEquals(expected, input.readAllBytes());
+        }
+        assertEquals(expected.length, second.contentLength());
+    }
+
+    @Test
+    void contentCache_boundedOffHeap() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB), "png", output);
+        byte[] expected = output.toByteArray();
+        List<String> references = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            references.add(localStorage.store(new ByteArrayInputStream(expected),
+                    MediaType.IMAGE_PNG_VALUE, "dot.png").getReference());
+        }
+        CacheConfiguration configuration = new CacheConfiguration();
+        ContentProperties properties = new ContentProperties();
+        properties.setEnabled(true);
+        properties.setMaxSize(DataSize.ofBytes(2L * expected.length));
+        properties.setAdmissionThreshold(1);
+        configuration.setContent(properties);
+        ContentCache cache = new ContentCache(configuration);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        Gauge available = registry.get("cache.arena.available").gauge();
+
+        Resource held = cache.get(references.get(0), localStorage);
+        assertTrue(held instanceof BufferResource);
+        try (InputStream input = held.getInputStream()) {
+            assertTrue(cache.get(references.get(1), localStorage) instanceof BufferResource);
+            assertEquals(0, available.value());
+            // Admitting a third item evicts the first two; only the slice not being read is reused.
+            Resource admitted = cache.get(references.get(2), localStorage);
+            assertTrue(admitted instanceof BufferResource);
+            assertEquals(0, available.value());
+            assertArrayEquals(expected, read(admitted));
+            assertArrayEquals(expected, input.readAllBytes());
+            assertArrayEquals(expected, read(held));
+        }
+        assertEquals(expected.length, available.value());
+    }
+
+    @Test
+    void derivative_guarded() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB), "png", output);
+        byte[] bomb = output.toByteArray();
+        // Declare a 50000x50000 raster in the IHDR chunk, and fix up its CRC.
+        ByteBuffer header = ByteBuffer.wrap(bomb);
+        header.putInt(16, 50_000).putInt(20, 50_000);
+        CRC32 crc = new CRC32();
+        crc.update(bomb, 12, 17);
+        header.putInt(29, (int) crc.getValue());
+        Image large = imageService.store(
+                new ByteArrayInputStream(bomb), MediaType.IMAGE_PNG_VALUE, "bomb.png", "Bomb", null);
+        assertTrue(imageService.retrieve(large, 64, null, Fit.CONTAIN).isEmpty());
+
+        Image frog = store("Green Frog", null);
+        int requesters = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(requesters);
+        List<Future<Optional<Resource>>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < requesters; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return imageService.retrieve(frog, 64, 64, Fit.CONTAIN);
+                }));
+            }
+            start.countDown();
+            Set<String> files = new HashSet<>();
+            for (Future<Optional<Resource>> future : futures) {
+                files.add(future.get().orElseThrow().getFile().getPath());
+            }
+            assertEquals(1, files.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void store_concurrent() throws Exception {
+        int uploaders = 64;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", output);
+        byte[] content = output.toByteArray();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(uploaders);
+        List<Future<Image>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < uploaders; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return imageService.store(new ByteArrayInputStream(content),
+                            MediaType.IMAGE_PNG_VALUE, "dot.png", "Dot", null);
+                }));
+            }
+            start.countDown();
+            Set<String> paths = new HashSet<>();
+            for (Future<Image> future : futures) {
+                paths.add(future.get().getPath());
+            }
+            assertEquals(uploaders, paths.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void migrate_hashSharded() throws Exception {
+        Image frog = store("Green Frog", null);
+        Image toad = store("Green Toad", null);
+        UploadConfiguration configuration = newUploadConfiguration();
+        ShardingProperties hash = new ShardingProperties();
+        hash.setStrategy("hash");
+        configuration.setSharding(hash);
+        LocalFilesystemStorageService hashStorage = new LocalFilesystemStorageService(
+                referenceGenerator, configuration, applicationHome);
+        ShardMigration migration = new ShardMigration(hashStorage, imageRepository, imageService,
+                transactionTemplate, configuration, storageExecutor);
+
+        assertEquals(2, migration.migrate());
+        assertEquals(0, migration.migrate());
+        for (Image image : List.of(frog, toad)) {
+            Image migrated = imageService.get(image.getExternalKey()).orElseThrow();
+            assertTrue(migrated.getPath().matches("^[0-9a-f]{2}/[0-9a-f]{2}/[^/]+$"));
+            assertTrue(imageService.retrieve(migrated).exists());
+            assertTrue(imageService.retrieve(image).exists());
+        }
+        migration.shutdown();
+        for (Image image : List.of(frog, toad)) {
+            assertFalse(imageService.retrieve(image).exists());
+        }
+    }
+
+    @Test
+    void store_metered() throws Exception {
+        Timer stores = meterRegistry.get("storage.operations")
+                .tags("operation", "store", "outcome", "success")
+                .timer();
+        DistributionSummary sizes = meterRegistry.get("upload.size").summary();
+        Counter retrieved = meterRegistry.get("storage.bytes").tag("operation", "retrieve").counter();
+        long storeCount = stores.count();
+        long sizeCount = sizes.count();
+        double retrievedBytes = retrieved.count();
+
+        Image frog = store("Green Frog", null);
+        assertEquals(storeCount + 1, stores.count());
+        assertEquals(sizeCount + 1, sizes.count());
+        Resource content = imageService.retrieve(imageService.get(frog.getExternalKey()).orElseThrow());
+        assertEquals(retrievedBytes + content.contentLength(), retrieved.count());
+        assertTrue(meterRegistry.get("cache.gets").tags("cache", "image-metadata", "result", "miss")
+                .functionCounter().count() > 0);
+        assertTrue(meterRegistry.get("spring.data.repository.invocations")
+                .tag("method", "findByExternalKey")
+                .timer().count() > 0);
+    }
+
+    @Test
+    void pack_compactedAndMigrated() throws Exception {
+        Image frog = store("Green Frog", null);
+        Image toad = store("Green Toad", null);
+        byte[] expected = read(imageService.retrieve(frog));
+        UploadConfiguration configuration = newUploadConfiguration();
+        PackProperties small = new PackProperties();
+        small.setSegmentSize(DataSize.ofMegabytes(1));
+        small.setMaxBufferedSize(DataSize.ofKilobytes(64));
+        small.setCompactionThreshold(0.6);
+        configuration.setPack(small);
+        PackFileStorageService packStorage = newPackStorage(configuration);
+        try {
+            PackMigration migration = new PackMigration(packStorage, imageRepository, imageService,
+                    transactionTemplate, configuration, storageExecutor);
+            assertEquals(2, migration.migrate());
+            assertEquals(0, migration.migrate());
+            assertTrue(imageService.retrieve(frog).exists());
+            migration.shutdown();
+            List<String> references = new ArrayList<>();
+            for (Image image : List.of(frog, toad)) {
+                String reference = imageService.get(image.getExternalKey()).orElseThrow().getPath();
+                assertTrue(packStorage.isPacked(reference));
+                assertArrayEquals(expected, read(packStorage.retrieve(reference)));
+                assertFalse(imageService.retrieve(image).exists());
+                references.add(reference);
+            }
+            byte[] dot = {1, 2, 3, 4};
+            StoredContent tiny = packStorage.store(
+                    new ByteArrayInputStream(dot), MediaType.IMAGE_PNG_VALUE, "dot.png");
+            StoredContent copy = packStorage.store(
+                    new ByteArrayInputStream(expected), MediaType.IMAGE_JPEG_VALUE, "green-frog.jpg");
+            assertTrue(packStorage.retrieve(references.get(0)) instanceof BufferResource);
+
+            assertEquals(0, packStorage.compact());
+            assertTrue(packStorage.delete(references.get(0)));
+            assertFalse(packStorage.delete(references.get(0)));
+            assertFalse(packStorage.retrieve(references.get(0)).exists());
+            assertEquals(1, packStorage.compact());
+            assertArrayEquals(expected, read(packStorage.retrieve(references.get(1))));
+            assertArrayEquals(dot, read(packStorage.retrieve(tiny.getReference())));
+
+            packStorage.close();
+            packStorage = newPackStorage(configuration);
+            assertFalse(packStorage.retrieve(references.get(0)).exists());
+            assertArrayEquals(expected, read(packStorage.retrieve(references.get(1))));
+            assertArrayEquals(dot, read(packStorage.retrieve(tiny.getReference())));
+            assertArrayEquals(expected, read(packStorage.retrieve(copy.getReference())));
+        } finally {
+            packStorage.close();
+            FileSystemUtils.deleteRecursively(applicationHome.getDir().toPath()
+                    .resolve(configuration.getDirectory())
+                    .resolve("packs"));
+        }
+    }
+
+    @Test
+    void tier_demotedAndPromoted() throws Exception {
+        Image frog = store("Green Frog", null);
+        String reference = frog.getPath();
+        byte[] expected = read(localStorage.retrieve(reference));
+        Path cold = Files.createTempDirectory("cold");
+        UploadConfiguration configuration = newUploadConfiguration();
+        TieringProperties tiering = new TieringProperties();
+        tiering.setDirectory(cold.toString());
+        configuration.setTiering(tiering);
+        TieredStorageService tieredStorage =
+                new TieredStorageService(localStorage, configuration, applicationHome);
+        TierDemotion demotion = new TierDemotion(tieredStorage, imageRepository, configuration);
+        try {
+            long now = System.currentTimeMillis();
+            assertEquals(0, demotion.demote(now));
+            assertEquals(1, demotion.demote(now + Duration.ofDays(91).toMillis()));
+            assertTrue(tieredStorage.isDemoted(reference));
+            assertFalse(localStorage.retrieve(reference).exists());
+
+            assertArrayEquals(expected, read(tieredStorage.retrieve(reference)));
+            assertFalse(tieredStorage.isDemoted(reference));
+            assertTrue(localStorage.retrieve(reference).exists());
+            assertFalse(tieredStorage.demote(reference, now - 1));
+            Thread.sleep(2);
+            long cutoff = System.currentTimeMillis();
+            Thread.sleep(2);
+            tieredStorage.recordAccess(reference);
+            assertFalse(tieredStorage.demote(reference, cutoff));
+
+            assertTrue(tieredStorage.demote(reference, System.currentTimeMillis() + 1));
+            assertTrue(tieredStorage.delete(reference));
+            assertFalse(tieredStorage.isDemoted(reference));
+            assertFalse(tieredStorage.retrieve(reference).exists());
+        } finally {
+            FileSystemUtils.deleteRecursively(cold);
+        }
+    }
+
+    @Test
+    void backfill_measured() throws Exception {
+        Image frog = store("Green Frog", null);
+        byte[] content = read(imageService.retrieve(frog));
+        String digest = String.format("%064x",
+                new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+        assertEquals(Long.valueOf(content.length), frog.getContentLength());
+        assertEquals(digest, frog.getDigest());
+
+        Image unmeasured = imageRepository.findById(frog.getId()).orElseThrow();
+        unmeasured.setContentLength(null);
+        unmeasured.setDigest(null);
+        imageService.save(unmeasured);
+        ContentBackfill backfill = new ContentBackfill(localStorage, imageRepository, imageService,
+                transactionTemplate, uploadConfiguration);
+
+        assertEquals(1, backfill.backfill());
+        assertEquals(0, backfill.backfill());
+        Image measured = imageService.get(frog.getExternalKey()).orElseThrow();
+        assertEquals(Long.valueOf(content.length), measured.getContentLength());
+        assertEquals(digest, measured.getDigest());
+    }
+
+    @Test
+    void contentAddressed_deduplicated() throws Exception {
+        byte[] content = read(new DefaultResourceLoader().getResource("images/green-frog.jpg"));
+        Path root = applicationHome.getDir().toPath().resolve(uploadConfiguration.getDirectory());
+        Files.createDirectories(root.resolve("sha256"));
+        ContentAddressedStorageService storage =
+                new ContentAddressedStorageService(uploadConfiguration, applicationHome);
+
+        StoredContent uploaded = storage.store(new MockMultipartFile(
+                "file", "green-frog.jpg", MediaType.IMAGE_JPEG_VALUE, content));
+        StoredContent streamed = storage.store(
+                new ByteArrayInputStream(content), MediaType.IMAGE_JPEG_VALUE, "green-frog.jpg");
+        assertEquals(uploaded.getReference(), streamed.getReference());
+        assertEquals(uploaded.getDigest(), streamed.getDigest());
+        assertEquals(content.length, uploaded.getLength());
+        assertEquals(content.length, streamed.getLength());
+        Path blob = root.resolve(uploaded.getReference());
+        Path count = blob.resolveSibling(blob.getFileName() + ".refs");
+        assertEquals("2", Files.readString(count));
+        assertArrayEquals(content, read(storage.retrieve(uploaded.getReference())));
+
+        AtomicInteger transfers = new AtomicInteger();
+        MockMultipartFile repeated = new MockMultipartFile(
+                "file", "green-frog.jpg", MediaType.IMAGE_JPEG_VALUE, content) {
+            @Override
+            public void transferTo(File dest) throws IOException, IllegalStateException {
+                transfers.incrementAndGet();
+                super.transferTo(dest);
+            }
+        };
+        assertEquals(uploaded.getReference(), storage.store(repeated).getReference());
+        assertEquals(0, transfers.get());
+        assertEquals("3", Files.readString(count));
+        assertTrue(storage.delete(uploaded.getReference()));
+
+        assertTrue(storage.delete(uploaded.getReference()));
+        assertTrue(Files.exists(blob));
+        assertEquals("1", Files.readString(count));
+        assertTrue(storage.delete(streamed.getReference()));
+        assertFalse(Files.exists(blob));
+        assertFalse(Files.exists(count));
+        assertFalse(storage.delete(streamed.getReference()));
+
+        String legacy = localStorage.store(new MockMultipartFile(
+                "file", "green-frog.jpg", MediaType.IMAGE_JPEG_VALUE, content)).getReference();
+        assertArrayEquals(content, read(storage.retrieve(legacy)));
+        assertTrue(storage.delete(legacy));
+        assertFalse(localStorage.retrieve(legacy).exists());
+    }
+
+    @Test
+    void store_releasedOnFailure() throws Exception {
+        Path root = applicationHome.getDir().toPath().resolve(uploadConfiguration.getDirectory());
+        Set<Path> before;
+        try (Stream<Path> files = Files.walk(root)) {
+            before = files.filter(Files::isRegularFile).collect(Collectors.toSet());
+        }
+        assertThrows(RuntimeException.class, () -> store("x".repeat(101), null));
+        try (Stream<Path> files = Files.walk(root)) {
+            assertEquals(before, files.filter(Files::isRegularFile).collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    void contentAddressed_invalidCountRejected() throws Exception {
+        byte[] content = read(new DefaultResourceLoader().getResource("images/green-frog.jpg"));
+        Path root = applicationHome.getDir().toPath().resolve(uploadConfiguration.getDirectory());
+        Files.createDirectories(root.resolve("sha256"));
+        ContentAddressedStorageService storage =
+                new ContentAddressedStorageService(uploadConfiguration, applicationHome);
+        String reference = storage.store(
+                new ByteArrayInputStream(content), MediaType.IMAGE_JPEG_VALUE, "green-frog.jpg")
+                .getReference();
+        Path blob = root.resolve(reference);
+        Path count = blob.resolveSibling(blob.getFileName() + ".refs");
+        Files.writeString(count, "");
+
+        assertThrows(IOException.class, () -> storage.store(
+                new ByteArrayInputStream(content), MediaType.IMAGE_JPEG_VALUE, "green-frog.jpg"));
+        assertThrows(IOException.class, () -> storage.delete(reference));
+        assertTrue(Files.exists(blob));
+
+        Files.writeString(count, "1");
+        assertTrue(storage.delete(reference));
+        assertFalse(Files.exists(blob));
+    }
+
+    private UploadConfiguration newUploadConfiguration() {
+        return Binder.get(environment).bind("upload", UploadConfiguration.class).get();
+    }
+
+    private PackFileStorageService newPackStorage(UploadConfiguration configuration)
+            throws IOException {
+        PackFileStorageService packStorage =
+                new PackFileStorageService(referenceGenerator, configuration, applicationHome);
+        packStorage.open();
+        return packStorage;
+    }
+
+    private <A extends Annotation> A queryAnnotation(
+            Class<?> repository, String method, Class<A> annotationType) {
+        return Arrays.stream(repository.getMethods())
+                .filter((candidate) -> candidate.getName().equals(method))
+                .findFirst()
+                .orElseThrow()
+                .getAnnotation(annotationType);
+    }
+
+    private void assertSeeks(String method, String sql, String named, Map<String, Object> values) {
+        Object[] arguments = Pattern.compile(":(\\w+)")
+                .matcher(named)
+                .results()
+                .map((match) -> values.get(match.group(1)))
+                .toArray();
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN ANALYZE " + sql.replaceAll(":\\w+", "?"), String.class, arguments);
+        Matcher scanCount = Pattern.compile("scanCount: (\\d+)").matcher(plan);
+        assertTrue(scanCount.find(), plan);
+        int limit = (Integer) values.get("limit");
+        assertTrue(Integer.parseInt(scanCount.group(1)) <= 2 * limit, () -> method + ": " + plan);
+    }
+
+    private byte[] read(Resource resource) throws IOException {
+        try (InputStream input = resource.getInputStream()) {
+            return input.readAllBytes();
+        }
+    }
+
+    private List<Image> search(String fragment) {
+        return imageService.search(fragment).stream().collect(Collectors.toList());
+    }
+
+    private Image store(String title, String description) throws Exception {
+        try (InputStream input = new DefaultResourceLoader()
+                .getResource("images/green-frog.jpg")
+                .getInputStream()) {
+            MockMultipartFile file = new MockMultipartFile(
+                    "file",
+                    "green-frog.jpg",
+                    MediaType.IMAGE_JPEG_VALUE,
+                    input
+            );
+            return imageService.store(file, title, description);
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+package edu.cnm.deepdive.animalsservice;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises the image API as served by the {@code reactive} profile (WebFlux on Reactor Netty, with
+ * R2DBC), checking that uploads, metadata reads, ranged content reads, and deletes behave as they
+ * do in the {@code service} profile.
+ */
+@SpringBootTest(classes = AnimalsServiceApplication.class, webEnvironment = WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.profiles.active=reactive",
+                "spring.main.web-application-type=reactive",
+                "spring.r2dbc.url=r2dbc:h2:mem:///reactive;DB_CLOSE_DELAY=-1",
+                "upload.directory=test-uploads"
+        })
+class ReactiveImageControllerTest {
+
+    private static final String IMAGES_PATH = "/images";
+    private static final String IMAGE_HREF_PREFIX = "/animals/images/";
+    private static final int MAX_CONTENT_SIZE = 4 * 1024 * 1024;
+
+    private WebTestClient client;
+
+    @Autowired
+    void setClient(WebTestClient client) {
+        this.client = client.mutate()
+                .codecs((configurer) -> configurer.defaultCodecs().maxInMemorySize(MAX_CONTENT_SIZE))
+                .build();
+    }
+
+    @Test
+    void storeReadAndDelete() throws IOException {
+        byte[] content;
+        try (InputStream input = new ClassPathResource("images/donkey.jpg").getInputStream()) {
+            content = input.readAllBytes();
+        }
+        JsonNode image = upload();
+        assertEquals("Donkey", image.get("title").asText());
+        assertTrue(image.get("href").asText().startsWith(IMAGE_HREF_PREFIX));
+        String path = IMAGES_PATH + "/" + image.get("id").asText();
+
+        client.get()
+                .uri(path)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.description").isEqualTo("Reactive upload")
+                .jsonPath("$.contentType").isEqualTo(MediaType.IMAGE_JPEG_VALUE);
+
+        client.get()
+                .uri(IMAGES_PATH + "?limit=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].title").isEqualTo("Donkey")
+                .jsonPath("$[0].description").doesNotExist();
+
+        byte[] whole = client.get()
+                .uri(path + "/content")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(content.length)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        assertArrayEquals(content, whole);
+
+        byte[] range = client.get()
+                .uri(path + "/content")
+                .header(HttpHeaders.RANGE, "bytes=100-199")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE,
+                        String.format("bytes 100-199/%d", content.length))
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), range);
+
+        client.get()
+                .uri(path + "/content")
+                .header(HttpHeaders.RANGE, String.format("bytes=%d-", content.length))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+
+        client.delete()
+                .uri(path)
+                .exchange()
+                .expectStatus().isNoContent();
+        client.get()
+                .uri(path)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void conditionalRequests() {
+        String path = IMAGES_PATH + "/" + upload().get("id").asText();
+        String contentTag = client.get()
+                .uri(path + "/content")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.CACHE_CONTROL, containsString("immutable"))
+                .returnResult(byte[].class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(contentTag);
+        client.get()
+                .uri(path + "/content")
+                .header(HttpHeaders.IF_NONE_MATCH, contentTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        client.head()
+                .uri(path + "/content")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value("Digest", startsWith("sha-256="))
+                .expectHeader().exists(HttpHeaders.CONTENT_LENGTH)
+                .expectBody().isEmpty();
+        String metadataTag = client.get()
+                .uri(path)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+                .returnResult(byte[].class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(metadataTag);
+        client.get()
+                .uri(path)
+                .header(HttpHeaders.IF_NONE_MATCH, metadataTag)
+                .exchange()
+                .expectStatus().isNotModified();
+        client.delete()
+                .uri(path)
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    void searchIgnoresCase() {
+        JsonNode image = upload();
+        String href = image.get("href").asText();
+        for (String fragment : new String[]{"dONKEY", "REACTIVE"}) {
+            client.get()
+                    .uri(IMAGES_PATH + "?stream=true&q={fragment}", fragment)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$[*].href").value(hasItem(href));
+        }
+        client.delete()
+                .uri(IMAGES_PATH + "/" + image.get("id").asText())
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    void rejectNonWhitelisted() {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("file", "not an image".getBytes(), MediaType.TEXT_PLAIN).filename("note.txt");
+        builder.part("title", "Note");
+        client.post()
+                .uri(IMAGES_PATH)
+                .body(BodyInserters.fromMultipartData(builder.build()))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    private JsonNode upload() {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("file", new ClassPathResource("images/donkey.jpg"), MediaType.IMAGE_JPEG);
+        builder.part("title", "Donkey");
+        builder.part("description", "Reactive upload");
+        JsonNode image = client.post()
+                .uri(IMAGES_PATH)
+                .body(BodyInserters.fromMultipartData(builder.build()))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().exists(HttpHeaders.LOCATION)
+                .expectBody(JsonNode.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(image);
+        return image;
+    }
+
+}
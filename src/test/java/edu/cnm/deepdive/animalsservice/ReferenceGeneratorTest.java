@@ -0,0 +1,69 @@
+package edu.cnm.deepdive.animalsservice;
+
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.FilenameProperties;
+import edu.cnm.deepdive.animalsservice.configuration.UploadConfiguration.FilenameProperties.TimestampProperties;
+import edu.cnm.deepdive.animalsservice.service.ReferenceGenerator;
+import edu.cnm.deepdive.animalsservice.service.TimestampReferenceGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReferenceGeneratorTest {
+
+    private static final int THREADS = 64;
+    private static final int NAMES_PER_THREAD = 2_000;
+
+    @Test
+    void newFilename_format() {
+        ReferenceGenerator generator = new TimestampReferenceGenerator(configuration());
+        assertTrue(generator.newFilename("donkey.jpg").matches("^\\d{17}-\\d{1,6}\\.jpg$"));
+        assertTrue(generator.newFilename(null).matches("^\\d{17}-\\d{1,6}\\.$"));
+    }
+
+    @Test
+    void newFilename_concurrent() throws Exception {
+        ReferenceGenerator generator = new TimestampReferenceGenerator(configuration());
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < NAMES_PER_THREAD; j++) {
+                        names.add(generator.newFilename("image.png"));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(THREADS * NAMES_PER_THREAD, names.size());
+    }
+
+    private UploadConfiguration configuration() {
+        FilenameProperties filenameProperties = new FilenameProperties();
+        filenameProperties.setTimestamp(new TimestampProperties());
+        UploadConfiguration configuration = new UploadConfiguration();
+        configuration.setFilename(filenameProperties);
+        return configuration;
+    }
+
+}